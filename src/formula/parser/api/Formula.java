@@ -1,5 +1,9 @@
 package formula.parser.api;
 
+import formula.parser.program.FormulaEngine;
+import formula.parser.program.ImmutableFormula;
+
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -10,6 +14,10 @@ import java.util.Set;
  * before calculation each variable should have it's value.
  * To set variable use {@link #setVariableValue(char, double)} method.
  * For calculation of formula value {@link #calculate()} method need invoke.
+ * In case if formula calculated many times, it could be compiled using {@link #compile()} method.
+ * Formula stores variable values, so it's not thread safe. To calculate formula by many threads
+ * use {@link #toImmutableFormula()}. Formula, where some variables are fixed for many calculations, could be
+ * specialized for their values by {@link #specialize(Map)}.
  */
 public interface Formula {
 
@@ -21,6 +29,14 @@ public interface Formula {
      */
     public Set<Character> getVariables();
 
+    /**
+     * Return variables of formula in slot order - order of variable values in arrays accepted by
+     * {@link #calculate(double[])} and {@link #calculate(double[][], double[])}. Variables are ordered by names.
+     *
+     * @return copy of variable names array, where index of variable is it's slot.
+     */
+    public char[] getVariableOrder();
+
     /**
      * Set given variable value for given variable name.
      * In case if variable name is absent in variables {@link IllegalArgumentException} will thrown.
@@ -42,4 +58,72 @@ public interface Formula {
      * @throws IllegalArgumentException if arguments not contains all of present variables in formula
      */
     public double calculate();
+
+    /**
+     * Sets values of all variables from given array and calculates value of formula. Value of each variable
+     * should be placed to array by it's slot (see {@link #getVariableOrder()}), so values are set without
+     * lookup by variable name.
+     *
+     * @param variableValues values of variables in slot order.
+     * @return calculated value of formula
+     * @throws IllegalArgumentException if array contains less values than count of variables.
+     */
+    public double calculate(double[] variableValues);
+
+    /**
+     * Calculates value of formula for each row of given variable columns. Columns should be in slot order
+     * (see {@link #getVariableOrder()}), so value of variable with slot 'i' in row 'j' should be placed
+     * to variableColumns[i][j].
+     * Values of variables set by {@link #setVariableValue(char, double)} are not used and not changed.
+     * In case if formula not contains variable, columns array should be empty.
+     *
+     * @param variableColumns columns of variable values in slot order, each column should contain
+     *                        not less values than size of results array.
+     * @param results array for calculated values, count of calculated rows is defined by it's size.
+     * @throws IllegalArgumentException if count or size of columns is not enough.
+     */
+    public void calculate(double[][] variableColumns, double[] results);
+
+    /**
+     * Compiles formula to flat program, that calculates formula value in single loop without recursion and
+     * allocation. Returned formula contains same variables, but their values are not shared with current
+     * instance, so each variable should be set for compiled formula separately.
+     *
+     * @return compiled formula.
+     * @see formula.parser.program.FormulaProgram
+     */
+    public Formula compile();
+
+    /**
+     * Compiles formula to flat program and turns it into executable function by given engine.
+     * Returned formula contains same variables, but their values are not shared with current
+     * instance, so each variable should be set for compiled formula separately.
+     *
+     * @param engine engine that produces executable function from compiled program.
+     * @return compiled formula.
+     * @see formula.parser.program.FormulaEngines
+     */
+    public Formula compile(FormulaEngine engine);
+
+    /**
+     * Compiles formula to immutable formula, that could be shared between threads. Values of variables are bound
+     * to immutable formula by {@link formula.parser.program.EvaluationContext} created per thread, so current
+     * variable values are not used. Compiled formula keeps it's engine, otherwise formula is compiled
+     * by {@link formula.parser.program.FormulaEngines#INTERPRETER}.
+     *
+     * @return immutable formula.
+     */
+    public ImmutableFormula toImmutableFormula();
+
+    /**
+     * Substitutes given values of variables into formula and returns new compiled formula over remaining variables.
+     * Subexpressions, which depend only on bound variables, are calculated once by specialization, so formula
+     * with variables fixed for many calculations is calculated faster. Current instance is not changed, values
+     * of remaining variables are not shared with returned formula.
+     *
+     * @param variableBindings values of bound variables by names.
+     * @return compiled formula without bound variables.
+     * @throws IllegalArgumentException in case if bound variable is absent in formula.
+     */
+    public Formula specialize(Map<Character, Double> variableBindings);
 }
@@ -0,0 +1,299 @@
+package formula.parser.api;
+
+import formula.parser.program.ImmutableFormula;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <H1>General</H1>
+ * Bounded cache of formulas parsed by {@link FormulaParser#parseImmutable(String)}. Key of cached formula is formula
+ * string or canonical form of formula (see {@link FormulaCacheKeyType}) and configuration of parser (constants,
+ * operations, simplification rules, strict IEEE mode and engine), so single cache could be shared by parsers with
+ * different configurations. Cached formulas are {@link ImmutableFormula}, so the same instance is returned to all
+ * callers.
+ *
+ * <H1>Eviction</H1>
+ * Each formula has weight calculated by {@link FormulaWeigher} (one by default), and total weight of cached formulas
+ * doesn't exceed maximum weight. Cache is split to segments by hash of key, each segment has own part of maximum
+ * weight and evicts least recently used formulas, so eviction order is least recently used within segment.
+ *
+ * <H1>Concurrency</H1>
+ * Cache is thread safe. Each segment is guarded by own lock, which is held only for lookup or insertion, while
+ * formula is parsed without lock, so threads, that access different segments, don't block each other. Two threads,
+ * that miss the same formula at once, both parse it, but only first parsed instance is cached and returned to both.
+ */
+public final class FormulaCache {
+
+    /**
+     * Count of segments by default, so up to this count of threads could access cache without contention.
+     */
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private static final int MAXIMUM_SEGMENTS_COUNT = 1 << 16;
+
+    private final FormulaWeigher weigher;
+    private final Segment[] segments;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Creates cache of given maximum count of formulas.
+     *
+     * @param maximumSize maximum count of cached formulas.
+     * @throws IllegalArgumentException in case if maximum size is negative.
+     */
+    public FormulaCache(int maximumSize) {
+        this(maximumSize, FormulaWeighers.SINGLE);
+    }
+
+    /**
+     * Creates cache of given maximum total weight of formulas with {@link #DEFAULT_CONCURRENCY_LEVEL}.
+     *
+     * @param maximumWeight maximum total weight of cached formulas.
+     * @param weigher       weigher of formulas.
+     * @throws IllegalArgumentException in case if maximum weight is negative.
+     */
+    public FormulaCache(long maximumWeight, FormulaWeigher weigher) {
+        this(maximumWeight, weigher, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates cache of given maximum total weight of formulas, split to segments for given count of concurrently
+     * accessing threads. Count of segments is power of two not less than concurrency level, but it's not greater
+     * than maximum weight, so concurrency level one gives exact least recently used order.
+     *
+     * @param maximumWeight    maximum total weight of cached formulas.
+     * @param weigher          weigher of formulas.
+     * @param concurrencyLevel expected count of concurrently accessing threads.
+     * @throws IllegalArgumentException in case if maximum weight is negative or concurrency level is not positive.
+     */
+    public FormulaCache(long maximumWeight, FormulaWeigher weigher, int concurrencyLevel) {
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("Maximum weight is negative : " + maximumWeight);
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Concurrency level is not positive : " + concurrencyLevel);
+        }
+        this.weigher = weigher;
+
+        int segmentsCount = 1;
+        while (segmentsCount < concurrencyLevel && segmentsCount < MAXIMUM_SEGMENTS_COUNT &&
+                2 * segmentsCount <= maximumWeight) {
+            segmentsCount *= 2;
+        }
+        segments = new Segment[segmentsCount];
+        for (int i = 0; i < segmentsCount; i++) {
+            segments[i] = new Segment(maximumWeight / segmentsCount + (i < maximumWeight % segmentsCount ? 1 : 0));
+        }
+    }
+
+    /**
+     * Return count of parsed formulas, that were served by cached program. Each call of
+     * {@link FormulaParser#parseImmutable(String)} is counted once, even in case if it looks up several keys.
+     *
+     * @return count of hits.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Return count of parsed formulas, that were not served by cached program, so new program was compiled.
+     *
+     * @return count of misses.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Return count of formulas evicted to keep total weight not greater than maximum weight. Formula, which weight
+     * is greater than maximum weight of segment, is evicted right after parsing.
+     *
+     * @return count of evictions.
+     */
+    public long getEvictionCount() {
+        long evictionCount = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                evictionCount += segment.evictionCount;
+            }
+        }
+        return evictionCount;
+    }
+
+    /**
+     * Return count of cached formulas.
+     *
+     * @return size of cache.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Return total weight of cached formulas.
+     *
+     * @return weight of cache.
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                weight += segment.weight;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Removes all cached formulas. Statistics are kept.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    /**
+     * Return cached formula for given key or 'null' in case if formula is not cached. Lookup is not counted
+     * in statistics, since single parsing could look up several keys, see {@link #recordHit()}.
+     */
+    /*package*/ ImmutableFormula get(Key key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            Entry entry = segment.entries.get(key);
+            return entry != null ? entry.formula : null;
+        }
+    }
+
+    /**
+     * Counts parsing served by cached program.
+     */
+    /*package*/ void recordHit() {
+        hitCount.incrementAndGet();
+    }
+
+    /**
+     * Counts parsing, that compiled new program.
+     */
+    /*package*/ void recordMiss() {
+        missCount.incrementAndGet();
+    }
+
+    /**
+     * Caches formula for given key, unless other formula was cached for the same key by concurrent thread.
+     * Return formula, that is cached for given key.
+     */
+    /*package*/ ImmutableFormula put(Key key, ImmutableFormula formula) {
+        int weight = weigher.weigh(key.keyString, formula);
+        if (weight < 0) {
+            throw new IllegalStateException("Weight of formula is negative : " + weight);
+        }
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            Entry entry = segment.entries.get(key);
+            if (entry != null) {
+                return entry.formula;
+            }
+            if (weight > segment.maximumWeight) {
+                segment.evictionCount++;
+                return formula;
+            }
+            segment.entries.put(key, new Entry(formula, weight));
+            segment.weight += weight;
+            segment.evict();
+            return formula;
+        }
+    }
+
+    private Segment segmentFor(Key key) {
+        // high bits of spread hash, since low bits are used by hash map of segment
+        int hash = key.hashCode() * 0x9E3779B9;
+        return segments[(hash >>> 16) & (segments.length - 1)];
+    }
+
+    /**
+     * Key of cached formula : formula string or canonical form, type of key and configuration of parser.
+     */
+    /*package*/ static final class Key {
+
+        private final String keyString;
+        private final FormulaCacheKeyType keyType;
+        private final FormulaParserConfiguration configuration;
+        private final int hashCode;
+
+        /*package*/ Key(String keyString, FormulaCacheKeyType keyType, FormulaParserConfiguration configuration) {
+            this.keyString = keyString;
+            this.keyType = keyType;
+            this.configuration = configuration;
+            hashCode = 31 * (31 * keyString.hashCode() + keyType.ordinal()) + configuration.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+
+            Key another = (Key) object;
+            return  hashCode == another.hashCode &&
+                    keyType == another.keyType &&
+                    keyString.equals(another.keyString) &&
+                    configuration.equals(another.configuration);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class Entry {
+
+        private final ImmutableFormula formula;
+        private final int weight;
+
+        Entry(ImmutableFormula formula, int weight) {
+            this.formula = formula;
+            this.weight = weight;
+        }
+    }
+
+    /*
+     * Entries are kept in access order, so iteration starts from least recently used formula. All fields are
+     * guarded by segment itself.
+     */
+    private static final class Segment {
+
+        private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+        private final long maximumWeight;
+        private long weight;
+        private long evictionCount;
+
+        Segment(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+        }
+
+        void evict() {
+            Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+            while (weight > maximumWeight && iterator.hasNext()) {
+                weight -= iterator.next().getValue().weight;
+                iterator.remove();
+                evictionCount++;
+            }
+        }
+    }
+}
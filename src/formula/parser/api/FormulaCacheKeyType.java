@@ -0,0 +1,41 @@
+package formula.parser.api;
+
+import formula.parser.tree.FormulaTree;
+
+/**
+ * Enum of keys, that {@link FormulaParser#parseImmutable(String)} uses to find formula in {@link FormulaCache}.
+ *
+ * @see FormulaParser#setCacheKeyType(FormulaCacheKeyType)
+ */
+public enum FormulaCacheKeyType {
+
+    /**
+     * Formula is cached by formula string, so formulas, that differ only by spaces or brackets, are parsed
+     * and cached separately.
+     */
+    FORMULA_STRING,
+
+    /**
+     * Formula is cached by {@link FormulaTree#getCanonicalForm(boolean)} without renaming of variables, so
+     * structurally identical formulas share one compiled program. Formula string is still parsed to tree once,
+     * then it's cached as alias of shared formula.
+     */
+    CANONICAL_FORM,
+
+    /**
+     * Formula is cached by {@link FormulaTree#getCanonicalForm(boolean)} with renaming of variables, so formulas,
+     * that differ also by names of variables (keeping their order), share one compiled function. Formula string
+     * is parsed to tree once, then it's cached as alias of shared formula with own names of variables.
+     */
+    RENAMED_CANONICAL_FORM,
+
+    /**
+     * Formula is cached by skeleton of it's tokens, where digit literals and constants are left out, so formulas,
+     * that differ only by numbers (for example "0.35*x + 12.5" and "0.4*x + 7"), share one program. Program of
+     * skeleton keeps each literal as own constant, so formula string is only split to tokens and it's literals
+     * replace constants of shared program without preprocessing, validation and tree building. Since values of
+     * literals are unknown for shared program, subexpressions of literals are calculated by each calculation
+     * and simplification rules, that depend on values of literals, are not applied.
+     */
+    SKELETON
+}
@@ -1,17 +1,29 @@
 package formula.parser.api;
 
 import formula.parser.constants.ConstantResolver;
+import formula.parser.operation.FastMathOperations;
 import formula.parser.operation.OperationResolver;
+import formula.parser.program.FormulaEngine;
+import formula.parser.program.FormulaEngines;
+import formula.parser.program.FormulaProgram;
+import formula.parser.program.ImmutableFormula;
+import formula.parser.tree.FormulaItem;
 import formula.parser.tree.FormulaTree;
+import formula.parser.tree.SimplificationRule;
+import formula.parser.tree.SimplificationRules;
 import formula.parser.operation.Operation;
 import formula.parser.preprocessor.FormulaPrerprocessor;
 import formula.parser.token.FormulaToken;
 import formula.parser.token.FormulaTokenizer;
 import formula.parser.validation.FormulaValidator;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Parser for formula in string presentation.
@@ -38,12 +50,28 @@ public class FormulaParser {
         return OperationResolver.getSupportedOperations();
     }
 
+    /*
+     * Literals of skeleton are replaced by chars of private use area, which are not letters, so they never clash
+     * with variables.
+     */
+    private static final char FIRST_LITERAL_PLACEHOLDER = '\uE000';
+    private static final int MAXIMUM_SKELETON_LITERALS = '\uF8FF' - FIRST_LITERAL_PLACEHOLDER + 1;
+
     private ConstantResolver constantResolver;
     private OperationResolver operationResolver;
+    private FormulaEngine formulaEngine;
+    private List<SimplificationRule> simplificationRules;
+    private boolean strictIeee = true;
+    private boolean incrementalEvaluation;
+    private final AtomicInteger eliminatedNodesCount = new AtomicInteger();
+    private FormulaCache formulaCache;
+    private FormulaCacheKeyType cacheKeyType = FormulaCacheKeyType.FORMULA_STRING;
+    private volatile FormulaParserConfiguration configuration;
 
     public FormulaParser() {
         constantResolver = new ConstantResolver();
         operationResolver = new OperationResolver();
+        simplificationRules = new ArrayList<SimplificationRule>(Arrays.asList(SimplificationRules.values()));
     }
 
     /**
@@ -56,6 +84,7 @@ public class FormulaParser {
      */
     public FormulaParser addConstant(String constantName, double constantValue) {
         constantResolver.addConstant(constantName, constantValue);
+        configuration = null;
         return this;
     }
 
@@ -71,9 +100,127 @@ public class FormulaParser {
      */
     public FormulaParser addOperation(Operation operation) {
         operationResolver.addOperation(operation);
+        configuration = null;
+        return this;
+    }
+
+    /**
+     * Set {@link FormulaEngine} that will be using to compile formulas during {@link #parse(String)} operation.
+     * By default engine is not set and parsed formulas are not compiled.
+     *
+     * @param formulaEngine engine for compilation of parsed formulas or 'null' to disable compilation.
+     * @return current instance.
+     * @see formula.parser.program.FormulaEngines
+     */
+    public FormulaParser setFormulaEngine(FormulaEngine formulaEngine) {
+        this.formulaEngine = formulaEngine;
+        configuration = null;
+        return this;
+    }
+
+    /**
+     * Add custom {@link SimplificationRule} that will be using to simplify formulas during {@link #parse(String)}
+     * operation. Custom rules are applied after built-in {@link SimplificationRules} in order of addition, so
+     * they could contribute identities of custom operations.
+     *
+     * @param simplificationRule custom simplification rule.
+     * @return current instance.
+     * @see formula.parser.tree.FormulaExpressions
+     */
+    public FormulaParser addSimplificationRule(SimplificationRule simplificationRule) {
+        simplificationRules.add(simplificationRule);
+        configuration = null;
+        return this;
+    }
+
+    /**
+     * Set strict IEEE mode of simplification. In strict mode only rewrites that keep result of formula for
+     * NaN, infinite values and sign of zero are applied (for example "0 * x" is not replaced by "0").
+     * By default strict mode is enabled, so parsed formula calculates the same result as it's string for all
+     * values. Disabling of mode allows rewrites, that keep result only for finite values.
+     *
+     * @param strictIeee 'false' to allow rewrites, that change result for NaN, infinite values or sign of zero.
+     * @return current instance.
+     */
+    public FormulaParser setStrictIeee(boolean strictIeee) {
+        this.strictIeee = strictIeee;
+        configuration = null;
         return this;
     }
 
+    /**
+     * Set fast math mode of parsing. In fast math mode signs of transcendental operations (sin, cos, tan, ln, lg and
+     * arc functions) are resolved to {@link FastMathOperations}, which are calculated by polynomial approximations
+     * with small documented error instead of {@link Math} functions. Disabling of mode resolves these signs to
+     * built-in operations again, so custom operation with the same sign should be added after mode is set.
+     * By default fast math mode is disabled.
+     *
+     * @param fastMath 'true' to enable fast math mode.
+     * @return current instance.
+     * @see FastMathOperations#getMaximumError()
+     */
+    public FormulaParser setFastMath(boolean fastMath) {
+        for (FastMathOperations operation : FastMathOperations.values()) {
+            operationResolver.addOperation(fastMath ? operation : operation.getPreciseOperation());
+        }
+        configuration = null;
+        return this;
+    }
+
+    /**
+     * Set incremental evaluation mode of parsed formulas. In incremental mode parsed formula recalculates only
+     * subexpressions, that depend on variables changed after previous calculation. Has no effect in case if
+     * formula engine is set, since compiled formula is returned.
+     *
+     * @param incrementalEvaluation 'true' to enable incremental evaluation.
+     * @return current instance.
+     * @see FormulaTree#setIncrementalEvaluation(boolean)
+     */
+    public FormulaParser setIncrementalEvaluation(boolean incrementalEvaluation) {
+        this.incrementalEvaluation = incrementalEvaluation;
+        return this;
+    }
+
+    /**
+     * Set {@link FormulaCache} that will be using by {@link #parseImmutable(String)} operation. Cache could be
+     * shared by any count of parsers, since formulas are cached by formula string or canonical form and
+     * configuration of parser.
+     * By default cache is not set and each formula is parsed.
+     *
+     * @param formulaCache cache of parsed formulas or 'null' to disable caching.
+     * @return current instance.
+     */
+    public FormulaParser setFormulaCache(FormulaCache formulaCache) {
+        this.formulaCache = formulaCache;
+        return this;
+    }
+
+    /**
+     * Set type of key, that {@link #parseImmutable(String)} operation uses to find formula in {@link FormulaCache}.
+     * With canonical or skeleton keys similar formulas share one compiled program, but each formula string is
+     * still cached as alias, so alias and shared formula both count against maximum weight of cache.
+     * By default formulas are cached by {@link FormulaCacheKeyType#FORMULA_STRING}.
+     *
+     * @param cacheKeyType type of cache key.
+     * @return current instance.
+     * @see FormulaTree#getCanonicalForm(boolean)
+     */
+    public FormulaParser setCacheKeyType(FormulaCacheKeyType cacheKeyType) {
+        this.cacheKeyType = cacheKeyType;
+        return this;
+    }
+
+    /**
+     * Return count of tree nodes, that were eliminated by merge of common subexpressions in all formulas parsed
+     * by this parser.
+     *
+     * @return count of eliminated nodes.
+     * @see FormulaTree#getEliminatedNodesCount()
+     */
+    public int getEliminatedNodesCount() {
+        return eliminatedNodesCount.get();
+    }
+
     /**
      * Parse incoming formula in string presentation to {@link Formula} implementation.
      *
@@ -82,12 +229,183 @@ public class FormulaParser {
      * @throws FormulaParseException in case if parse process failed, formula string empty or 'null'.
      */
     public Formula parse(String formula) throws FormulaParseException {
+        FormulaTree formulaTree = parseTree(formula);
+        formulaTree.setIncrementalEvaluation(incrementalEvaluation);
+        return formulaEngine != null ? formulaTree.compile(formulaEngine) : formulaTree;
+    }
+
+    /**
+     * Parse incoming formula in string presentation to {@link ImmutableFormula} compiled by formula engine
+     * ({@link FormulaEngines#INTERPRETER} in case if engine is not set). In case if {@link FormulaCache} is set,
+     * formula is parsed once per configuration of parser and cached instance is returned by next calls. In case if
+     * canonical cache key is set, structurally identical formulas share one compiled function.
+     *
+     * @param formula formula in string presentation.
+     * @return parsed {@link ImmutableFormula}.
+     * @throws FormulaParseException in case if parse process failed, formula string empty or 'null'.
+     * @see #setFormulaCache(FormulaCache)
+     */
+    public ImmutableFormula parseImmutable(String formula) throws FormulaParseException {
+        if (formulaCache == null) {
+            return compileImmutable(parseTree(formula));
+        }
+        checkString(formula);
+        FormulaParserConfiguration configuration = getConfiguration();
+        FormulaCache.Key key = new FormulaCache.Key(formula, FormulaCacheKeyType.FORMULA_STRING, configuration);
+        ImmutableFormula immutableFormula = formulaCache.get(key);
+        if (immutableFormula != null) {
+            formulaCache.recordHit();
+            return immutableFormula;
+        }
+        try {
+            return parseAndCache(formula, key, configuration);
+        } catch (FormulaParseException e) {
+            formulaCache.recordMiss();
+            throw e;
+        }
+    }
+
+    /*
+     * Formula is not cached by formula string, so it's found by shared key or compiled. Hit or miss is counted
+     * once in case if formula is parsed.
+     */
+    private ImmutableFormula parseAndCache(String formula, FormulaCache.Key key,
+                                          FormulaParserConfiguration configuration) throws FormulaParseException {
+        if (cacheKeyType == FormulaCacheKeyType.SKELETON) {
+            return parseBySkeleton(formula, key, configuration);
+        }
+        FormulaTree formulaTree = parseTree(formula);
+        if (cacheKeyType == FormulaCacheKeyType.FORMULA_STRING) {
+            formulaCache.recordMiss();
+            return formulaCache.put(key, compileImmutable(formulaTree));
+        }
+
+        // formula string is cached as alias of formula shared by canonical form
+        boolean renameVariables = cacheKeyType == FormulaCacheKeyType.RENAMED_CANONICAL_FORM;
+        FormulaCache.Key canonicalKey = new FormulaCache.Key(formulaTree.getCanonicalForm(renameVariables),
+                cacheKeyType, configuration);
+        ImmutableFormula sharedFormula = formulaCache.get(canonicalKey);
+        if (sharedFormula != null) {
+            formulaCache.recordHit();
+        } else {
+            formulaCache.recordMiss();
+            sharedFormula = formulaCache.put(canonicalKey, compileImmutable(formulaTree));
+        }
+        return formulaCache.put(key, sharedFormula.withVariableNames(formulaTree.getVariableOrder()));
+    }
+
+    /*
+     * Formula string is cached as alias of formula built from shared program of skeleton.
+     */
+    private ImmutableFormula parseBySkeleton(String formula, FormulaCache.Key key,
+                                             FormulaParserConfiguration configuration) throws FormulaParseException {
+        List<FormulaToken> tokenList = tokenize(formula);
+        int literalsCount = 0;
+        for (FormulaToken token : tokenList) {
+            if (token.getItem().getType() == FormulaItem.Type.DIGIT) {
+                literalsCount++;
+            }
+        }
+        if (literalsCount > MAXIMUM_SKELETON_LITERALS) {
+            ImmutableFormula immutableFormula = compileImmutable(buildTree(tokenList));
+            formulaCache.recordMiss();
+            return formulaCache.put(key, immutableFormula);
+        }
+
+        // each token is followed by space and literal is left out, text of other tokens is not empty
+        double[] literals = new double[literalsCount];
+        StringBuilder skeleton = new StringBuilder();
+        int literal = 0;
+        for (FormulaToken token : tokenList) {
+            FormulaItem item = token.getItem();
+            if (item.getType() == FormulaItem.Type.DIGIT) {
+                literals[literal++] = item.getDigitLiteralValue();
+            } else {
+                int position = token.getTokenPosition();
+                skeleton.append(formula, position, position + token.getTokenSize());
+            }
+            skeleton.append(' ');
+        }
+
+        FormulaCache.Key skeletonKey = new FormulaCache.Key(skeleton.toString(), FormulaCacheKeyType.SKELETON,
+                configuration);
+        ImmutableFormula skeletonFormula = formulaCache.get(skeletonKey);
+        if (skeletonFormula != null) {
+            formulaCache.recordHit();
+        } else {
+            skeletonFormula = formulaCache.put(skeletonKey, compileSkeleton(tokenList, literals));
+            formulaCache.recordMiss();
+        }
+        return formulaCache.put(key, skeletonFormula.withLeadingConstants(literals));
+    }
+
+    /*
+     * Each literal is replaced by own placeholder variable, so it's not folded or simplified by value, and
+     * placeholders are turned into first constants of program, which function reads from frame, so it's
+     * compiled once per skeleton.
+     */
+    private ImmutableFormula compileSkeleton(List<FormulaToken> tokenList, double[] literals)
+            throws FormulaParseException {
+        FormulaPrerprocessor.prepossess(tokenList);
+        FormulaValidator.validate(tokenList);
+
+        char[] placeholders = new char[literals.length];
+        int literal = 0;
+        for (ListIterator<FormulaToken> iterator = tokenList.listIterator(); iterator.hasNext(); ) {
+            FormulaToken token = iterator.next();
+            if (token.getItem().getType() == FormulaItem.Type.DIGIT) {
+                placeholders[literal] = (char) (FIRST_LITERAL_PLACEHOLDER + literal);
+                iterator.set(new FormulaToken(FormulaItem.newVariableItem(placeholders[literal]),
+                        token.getTokenSize(), token.getTokenPosition()));
+                literal++;
+            }
+        }
+        FormulaTree formulaTree = new FormulaTree(tokenList, simplificationRules, strictIeee);
+        eliminatedNodesCount.addAndGet(formulaTree.getEliminatedNodesCount());
+
+        FormulaProgram program = formulaTree.toImmutableFormula().getProgram();
+        return new ImmutableFormula(program.bindConstants(placeholders, literals), getImmutableFormulaEngine(),
+                literals.length);
+    }
+
+    private FormulaTree parseTree(String formula) throws FormulaParseException {
         checkString(formula);
-        FormulaTokenizer formulaTokenizer = new FormulaTokenizer(formula, constantResolver, operationResolver);
-        List<FormulaToken> tokenList = formulaTokenizer.getTokenList();
+        return buildTree(tokenize(formula));
+    }
+
+    private List<FormulaToken> tokenize(String formula) throws FormulaParseException {
+        return new FormulaTokenizer(formula, constantResolver, operationResolver).getTokenList();
+    }
+
+    private FormulaTree buildTree(List<FormulaToken> tokenList) throws FormulaParseException {
         FormulaPrerprocessor.prepossess(tokenList);
         FormulaValidator.validate(tokenList);
-        return new FormulaTree(tokenList);
+        FormulaTree formulaTree = new FormulaTree(tokenList, simplificationRules, strictIeee);
+        eliminatedNodesCount.addAndGet(formulaTree.getEliminatedNodesCount());
+        return formulaTree;
+    }
+
+    private ImmutableFormula compileImmutable(FormulaTree formulaTree) {
+        return formulaTree.compile(getImmutableFormulaEngine()).toImmutableFormula();
+    }
+
+    private FormulaEngine getImmutableFormulaEngine() {
+        return formulaEngine != null ? formulaEngine : FormulaEngines.INTERPRETER;
+    }
+
+    /*
+     * Snapshot is immutable and published by volatile field, so concurrent parsing reads complete snapshot.
+     * Two threads could build equal snapshots at once, which doesn't matter.
+     */
+    private FormulaParserConfiguration getConfiguration() {
+        FormulaParserConfiguration configuration = this.configuration;
+        if (configuration == null) {
+            configuration = new FormulaParserConfiguration(constantResolver.getConstants(),
+                    operationResolver.getUnaryOperations(), operationResolver.getBinaryOperations(),
+                    simplificationRules, strictIeee, getImmutableFormulaEngine());
+            this.configuration = configuration;
+        }
+        return configuration;
     }
 
     private void checkString(String formula) throws FormulaParseException {
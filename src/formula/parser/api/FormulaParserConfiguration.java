@@ -0,0 +1,70 @@
+package formula.parser.api;
+
+import formula.parser.operation.BinaryOperation;
+import formula.parser.operation.UnaryOperation;
+import formula.parser.program.FormulaEngine;
+import formula.parser.tree.SimplificationRule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of {@link FormulaParser} settings, that affect parsed formula : known constants and operations,
+ * simplification rules, strict IEEE mode and engine. Equal configurations parse equal formula strings to
+ * equal formulas, so configuration is part of {@link FormulaCache} key.
+ */
+/*package*/ final class FormulaParserConfiguration {
+
+    private final Map<String, Double> constants;
+    private final Map<String, UnaryOperation> unaryOperations;
+    private final Map<String, BinaryOperation> binaryOperations;
+    private final List<SimplificationRule> simplificationRules;
+    private final boolean strictIeee;
+    private final FormulaEngine formulaEngine;
+    private final int hashCode;
+
+    /*package*/ FormulaParserConfiguration(Map<String, Double> constants,
+                                           Map<String, UnaryOperation> unaryOperations,
+                                           Map<String, BinaryOperation> binaryOperations,
+                                           List<SimplificationRule> simplificationRules, boolean strictIeee,
+                                           FormulaEngine formulaEngine) {
+        this.constants = constants;
+        this.unaryOperations = unaryOperations;
+        this.binaryOperations = binaryOperations;
+        this.simplificationRules = new ArrayList<SimplificationRule>(simplificationRules);
+        this.strictIeee = strictIeee;
+        this.formulaEngine = formulaEngine;
+        hashCode = calculateHashCode();
+    }
+
+    private int calculateHashCode() {
+        int result = constants.hashCode();
+        result = 31 * result + unaryOperations.hashCode();
+        result = 31 * result + binaryOperations.hashCode();
+        result = 31 * result + simplificationRules.hashCode();
+        result = 31 * result + (strictIeee ? 1 : 0);
+        return 31 * result + formulaEngine.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof FormulaParserConfiguration)) {
+            return false;
+        }
+
+        FormulaParserConfiguration another = (FormulaParserConfiguration) object;
+        return  this == another || (hashCode == another.hashCode &&
+                strictIeee == another.strictIeee &&
+                formulaEngine.equals(another.formulaEngine) &&
+                constants.equals(another.constants) &&
+                unaryOperations.equals(another.unaryOperations) &&
+                binaryOperations.equals(another.binaryOperations) &&
+                simplificationRules.equals(another.simplificationRules));
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
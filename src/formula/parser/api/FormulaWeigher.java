@@ -0,0 +1,21 @@
+package formula.parser.api;
+
+import formula.parser.program.ImmutableFormula;
+
+/**
+ * General interface of weight calculation for entries of {@link FormulaCache}.
+ *
+ * @see FormulaWeighers
+ */
+public interface FormulaWeigher {
+
+    /**
+     * Return weight of cached formula. Weight is calculated once, when formula is added to cache.
+     *
+     * @param formulaString formula in string presentation or it's canonical form, which formula is cached by
+     *                      (see {@link FormulaCacheKeyType}).
+     * @param formula       parsed formula.
+     * @return non-negative weight of formula.
+     */
+    public int weigh(String formulaString, ImmutableFormula formula);
+}
@@ -0,0 +1,30 @@
+package formula.parser.api;
+
+import formula.parser.program.ImmutableFormula;
+
+/**
+ * Enum of specific {@link FormulaWeigher} implementations.
+ */
+public enum FormulaWeighers implements FormulaWeigher {
+
+    /**
+     * Each formula weighs one, so maximum weight of cache is maximum count of formulas.
+     */
+    SINGLE() {
+        @Override
+        public int weigh(String formulaString, ImmutableFormula formula) {
+            return 1;
+        }
+    },
+
+    /**
+     * Formula weighs count of instructions of it's program, so maximum weight of cache bounds total size of
+     * cached programs.
+     */
+    PROGRAM_LENGTH() {
+        @Override
+        public int weigh(String formulaString, ImmutableFormula formula) {
+            return formula.getProgram().getLength();
+        }
+    }
+}
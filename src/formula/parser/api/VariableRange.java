@@ -0,0 +1,102 @@
+package formula.parser.api;
+
+/**
+ * Range of variable values from minimum to maximum with fixed step, used for tabulation of formula on grid
+ * (see {@link formula.parser.tree.FormulaTree#tabulate(VariableRange[], double[])}).
+ * Value of point with index 'i' is calculated as minimum + i * step, so error of step isn't accumulated.
+ * Maximum is included in case if it's reached by whole count of steps.
+ */
+public final class VariableRange {
+
+    /*
+     * Relative tolerance of last point, so maximum, which isn't reached because of rounding of step, is included.
+     */
+    private static final double LAST_POINT_TOLERANCE = 1e-9;
+
+    private final char variableName;
+    private final double minimum;
+    private final double maximum;
+    private final double step;
+    private final int pointsCount;
+
+    /**
+     * Creates range of given variable.
+     *
+     * @param variableName name of variable.
+     * @param minimum first value of variable.
+     * @param maximum last value of variable.
+     * @param step distance between values, should be positive.
+     * @throws IllegalArgumentException in case if step isn't positive or minimum is greater than maximum.
+     */
+    public VariableRange(char variableName, double minimum, double maximum, double step) {
+        if (!(step > 0) || !(minimum <= maximum) || Double.isInfinite(minimum) || Double.isInfinite(maximum)) {
+            throw new IllegalArgumentException(String.format("Invalid range of %s variable : [%s, %s] with step %s",
+                    variableName, minimum, maximum, step));
+        }
+        this.variableName = variableName;
+        this.minimum = minimum;
+        this.maximum = maximum;
+        this.step = step;
+        pointsCount = (int) Math.floor((maximum - minimum) / step + LAST_POINT_TOLERANCE) + 1;
+    }
+
+    /**
+     * Return name of variable.
+     *
+     * @return name of variable.
+     */
+    public char getVariableName() {
+        return variableName;
+    }
+
+    /**
+     * Return first value of variable.
+     *
+     * @return minimum of range.
+     */
+    public double getMinimum() {
+        return minimum;
+    }
+
+    /**
+     * Return upper bound of variable values.
+     *
+     * @return maximum of range.
+     */
+    public double getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * Return distance between values of variable.
+     *
+     * @return step of range.
+     */
+    public double getStep() {
+        return step;
+    }
+
+    /**
+     * Return count of values in range.
+     *
+     * @return count of points.
+     */
+    public int getPointsCount() {
+        return pointsCount;
+    }
+
+    /**
+     * Return value of point with given index.
+     *
+     * @param index index of point from zero to {@link #getPointsCount()} exclusive.
+     * @return value of variable in point.
+     */
+    public double getValue(int index) {
+        return minimum + index * step;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s in [%s, %s] by %s", variableName, minimum, maximum, step);
+    }
+}
@@ -70,6 +70,15 @@ public class ConstantResolver {
         return constantsSignValueMap.get(sign);
     }
 
+    /**
+     * Return known constants.
+     *
+     * @return unmodifiable copy of known constants, where key - sign of constant, value - constant value.
+     */
+    public Map<String, Double> getConstants() {
+        return Collections.unmodifiableMap(new HashMap<String, Double>(constantsSignValueMap));
+    }
+
     private void findConstantMaxLength() {
         constantMaxLength = 0;
         for (String sign : constantsSignValueMap.keySet()) {
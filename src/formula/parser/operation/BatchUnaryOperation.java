@@ -0,0 +1,23 @@
+package formula.parser.operation;
+
+/**
+ * Interface of {@link UnaryOperation}, that could be applied to column of arguments at once. Batch calculation of
+ * compiled formula calls column method instead of calling {@link #operate(double)} for each row, so implementation
+ * could use plain counted loop, that JIT compiles to SIMD instructions.
+ * See {@link formula.parser.api.Formula#calculate(double[][], double[])}.
+ */
+public interface BatchUnaryOperation extends UnaryOperation {
+
+    /**
+     * Calculates result of operation for 'count' arguments, starting from given offsets. Results array could be
+     * the same array as arguments array, so each argument should be read before result with the same index is
+     * written.
+     *
+     * @param arguments       column of operand values
+     * @param argumentsOffset index of first operand value
+     * @param results         column of results
+     * @param resultsOffset   index of first result
+     * @param count           count of operand values
+     */
+    public void operate(double[] arguments, int argumentsOffset, double[] results, int resultsOffset, int count);
+}
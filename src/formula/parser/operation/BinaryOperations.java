@@ -3,13 +3,23 @@ package formula.parser.operation;
 /**
  * Enum of specific {@link BinaryOperation} implementations.
  */
-public enum BinaryOperations implements BinaryOperation {
+public enum BinaryOperations implements DifferentiableBinaryOperation, PureOperation {
 
     ADDITION(0, "+") {
         @Override
         public double operate(double firstArgument, double secondArgument) {
             return firstArgument + secondArgument;
         }
+
+        @Override
+        public double derivativeByFirstArgument(double firstArgument, double secondArgument) {
+            return 1;
+        }
+
+        @Override
+        public double derivativeBySecondArgument(double firstArgument, double secondArgument) {
+            return 1;
+        }
     },
 
     DIVISION(1, "/") {
@@ -17,6 +27,16 @@ public enum BinaryOperations implements BinaryOperation {
         public double operate(double firstArgument, double secondArgument) {
             return firstArgument / secondArgument;
         }
+
+        @Override
+        public double derivativeByFirstArgument(double firstArgument, double secondArgument) {
+            return 1 / secondArgument;
+        }
+
+        @Override
+        public double derivativeBySecondArgument(double firstArgument, double secondArgument) {
+            return -firstArgument / (secondArgument * secondArgument);
+        }
     },
 
     MULTIPLY(1, "*") {
@@ -24,6 +44,16 @@ public enum BinaryOperations implements BinaryOperation {
         public double operate(double firstArgument, double secondArgument) {
             return firstArgument * secondArgument;
         }
+
+        @Override
+        public double derivativeByFirstArgument(double firstArgument, double secondArgument) {
+            return secondArgument;
+        }
+
+        @Override
+        public double derivativeBySecondArgument(double firstArgument, double secondArgument) {
+            return firstArgument;
+        }
     },
 
     POWER(2, "^") {
@@ -31,6 +61,16 @@ public enum BinaryOperations implements BinaryOperation {
         public double operate(double firstArgument, double secondArgument) {
             return Math.pow(firstArgument, secondArgument);
         }
+
+        @Override
+        public double derivativeByFirstArgument(double firstArgument, double secondArgument) {
+            return secondArgument * Math.pow(firstArgument, secondArgument - 1);
+        }
+
+        @Override
+        public double derivativeBySecondArgument(double firstArgument, double secondArgument) {
+            return Math.pow(firstArgument, secondArgument) * Math.log(firstArgument);
+        }
     };
 
     private int priority;
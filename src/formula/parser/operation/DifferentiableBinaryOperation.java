@@ -0,0 +1,27 @@
+package formula.parser.operation;
+
+/**
+ * Interface of {@link BinaryOperation}, that knows it's partial derivatives, so formula with it could be
+ * differentiated (see {@link formula.parser.tree.FormulaTree#calculateDerivatives(char[], double[])}).
+ * All built-in {@link BinaryOperations} are differentiable.
+ */
+public interface DifferentiableBinaryOperation extends BinaryOperation {
+
+    /**
+     * Return partial derivative of operation by first argument for given argument values.
+     *
+     * @param firstArgument  left operand value
+     * @param secondArgument right operand value
+     * @return derivative of operation by first argument
+     */
+    public double derivativeByFirstArgument(double firstArgument, double secondArgument);
+
+    /**
+     * Return partial derivative of operation by second argument for given argument values.
+     *
+     * @param firstArgument  left operand value
+     * @param secondArgument right operand value
+     * @return derivative of operation by second argument
+     */
+    public double derivativeBySecondArgument(double firstArgument, double secondArgument);
+}
@@ -0,0 +1,17 @@
+package formula.parser.operation;
+
+/**
+ * Interface of {@link UnaryOperation}, that knows it's derivative, so formula with it could be differentiated
+ * (see {@link formula.parser.tree.FormulaTree#calculateDerivatives(char[], double[])}).
+ * All built-in {@link UnaryOperations} are differentiable.
+ */
+public interface DifferentiableUnaryOperation extends UnaryOperation {
+
+    /**
+     * Return derivative of operation for given argument value.
+     *
+     * @param argument operand value
+     * @return derivative of operation at argument value
+     */
+    public double derivative(double argument);
+}
@@ -0,0 +1,106 @@
+package formula.parser.operation;
+
+/**
+ * <H1>General</H1>
+ * Non-recursive factorial used by {@link UnaryOperations#FACTORIAL}. Factorial of integer argument is taken from
+ * precomputed table, factorial of non-integer argument is calculated as gamma function <code>Gamma(x + 1)</code>
+ * by Lanczos approximation, so calculation takes constant time for any argument.
+ */
+/*package*/ final class Factorials {
+
+    /**
+     * Factorial of greater argument overflows double.
+     */
+    /*package*/ static final int MAXIMUM_ARGUMENT = 170;
+
+    private static final double[] TABLE = new double[MAXIMUM_ARGUMENT + 1];
+
+    /*
+     * Lanczos approximation with g = 7 and 9 coefficients, relative error is about 1e-15.
+     */
+    private static final double LANCZOS_G = 7;
+    private static final double[] LANCZOS_COEFFICIENTS = {
+            0.99999999999980993, 676.5203681218851, -1259.1392167224028, 771.32342877765313,
+            -176.61502916214059, 12.507343278686905, -0.13857109526572012, 9.9843695780195716e-6,
+            1.5056327351493116e-7
+    };
+    private static final double SQRT_TWO_PI = Math.sqrt(2 * Math.PI);
+
+    /*
+     * Digamma function is shifted to argument not less than this value before asymptotic expansion.
+     */
+    private static final double DIGAMMA_ASYMPTOTIC_ARGUMENT = 10;
+
+    static {
+        TABLE[0] = 1;
+        for (int i = 1; i < TABLE.length; i++) {
+            TABLE[i] = TABLE[i - 1] * i;
+        }
+    }
+
+    private Factorials() {
+    }
+
+    /**
+     * Return factorial of argument : value from table for integer argument, <code>+Infinity</code> for argument
+     * greater than {@link #MAXIMUM_ARGUMENT}, <code>Gamma(argument + 1)</code> for non-integer argument and NaN
+     * for negative integer argument (pole of gamma function).
+     */
+    /*package*/ static double factorial(double argument) {
+        if (argument > MAXIMUM_ARGUMENT) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (argument == Math.floor(argument)) {
+            return argument < 0 ? Double.NaN : TABLE[(int) argument];
+        }
+        return gamma(argument + 1);
+    }
+
+    /**
+     * Return derivative of factorial : <code>Gamma(argument + 1) * Digamma(argument + 1)</code>.
+     */
+    /*package*/ static double derivative(double argument) {
+        return factorial(argument) * digamma(argument + 1);
+    }
+
+    private static double gamma(double argument) {
+        if (argument < 0.5) {
+            // reflection formula : Gamma(z) * Gamma(1 - z) = pi / sin(pi * z)
+            return Math.PI / (Math.sin(Math.PI * argument) * lanczos(1 - argument));
+        }
+        return lanczos(argument);
+    }
+
+    private static double lanczos(double argument) {
+        double z = argument - 1;
+        double series = LANCZOS_COEFFICIENTS[0];
+        for (int i = 1; i < LANCZOS_COEFFICIENTS.length; i++) {
+            series += LANCZOS_COEFFICIENTS[i] / (z + i);
+        }
+        double t = z + LANCZOS_G + 0.5;
+        // power is split in two halves, so it doesn't overflow before multiplication by exponent
+        double power = Math.pow(t, (z + 0.5) / 2);
+        return SQRT_TWO_PI * power * (power * Math.exp(-t)) * series;
+    }
+
+    private static double digamma(double argument) {
+        if (argument <= 0 && argument == Math.floor(argument)) {
+            return Double.NaN;
+        }
+        double result = 0;
+        double z = argument;
+        if (z < 0.5) {
+            // reflection formula : Digamma(1 - z) - Digamma(z) = pi / tan(pi * z)
+            result -= Math.PI / Math.tan(Math.PI * z);
+            z = 1 - z;
+        }
+        while (z < DIGAMMA_ASYMPTOTIC_ARGUMENT) {
+            result -= 1 / z;
+            z++;
+        }
+        double f = 1 / (z * z);
+        double series = 1.0 / 12 - f * (1.0 / 120 - f * (1.0 / 252 - f * (1.0 / 240 - f * (1.0 / 132
+                - f * 691 / 32760))));
+        return result + Math.log(z) - 0.5 / z - f * series;
+    }
+}
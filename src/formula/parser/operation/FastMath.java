@@ -0,0 +1,178 @@
+package formula.parser.operation;
+
+/**
+ * <H1>General</H1>
+ * Polynomial approximations of transcendental functions used by {@link FastMathOperations}. Each function reduces
+ * argument to small range and calculates polynomial, so calculation consists of few multiplications and additions
+ * and has no table lookups. Polynomials are Taylor series, which tails are economized by Chebyshev polynomials
+ * on reduced range : economized polynomial of lower degree has the same maximum error on range.
+ * Special values (NaN, infinite values, arguments out of reduction range) are passed to {@link Math} functions.
+ */
+/*package*/ final class FastMath {
+
+    /**
+     * Sine, cosine and tangent of greater argument are calculated by {@link Math}, since reduction of argument
+     * by three parts of pi / 2 is exact only for quadrant numbers less than 2^20.
+     */
+    /*package*/ static final double MAXIMUM_REDUCED_ARGUMENT = 0x1p19 * Math.PI;
+
+    /*
+     * Pi / 2 split to parts of 33, 33 and 53 bits, so products of first two parts and quadrant number are exact.
+     */
+    private static final double PI_2_HIGH = 1.57079632673412561417e+00;
+    private static final double PI_2_MIDDLE = 6.07710050630396597660e-11;
+    private static final double PI_2_LOW = 2.02226624879595063154e-21;
+    private static final double TWO_BY_PI = 2 / Math.PI;
+
+    private static final double LN_2_HIGH = 6.93147180369123816490e-01;
+    private static final double LN_2_LOW = 1.90821492927058770002e-10;
+    private static final double INVERSE_LN_10 = 1 / Math.log(10);
+    private static final double SQRT_2 = Math.sqrt(2);
+
+    private static final long EXPONENT_MASK = 0x7ff0000000000000L;
+    private static final long ONE_EXPONENT_BITS = 0x3ff0000000000000L;
+    private static final int MANTISSA_BITS = 52;
+    private static final double SUBNORMAL_SCALE = 0x1p54;
+
+    private FastMath() {
+    }
+
+    /*package*/ static double sin(double argument) {
+        if (!(Math.abs(argument) <= MAXIMUM_REDUCED_ARGUMENT)) {
+            return Math.sin(argument);
+        }
+        double quadrant = Math.rint(argument * TWO_BY_PI);
+        double reduced = reduce(argument, quadrant);
+        switch ((int) quadrant & 3) {
+            case 0:
+                return sinPolynomial(reduced);
+
+            case 1:
+                return cosPolynomial(reduced);
+
+            case 2:
+                return -sinPolynomial(reduced);
+
+            default:
+                return -cosPolynomial(reduced);
+        }
+    }
+
+    /*package*/ static double cos(double argument) {
+        if (!(Math.abs(argument) <= MAXIMUM_REDUCED_ARGUMENT)) {
+            return Math.cos(argument);
+        }
+        double quadrant = Math.rint(argument * TWO_BY_PI);
+        double reduced = reduce(argument, quadrant);
+        switch ((int) quadrant & 3) {
+            case 0:
+                return cosPolynomial(reduced);
+
+            case 1:
+                return -sinPolynomial(reduced);
+
+            case 2:
+                return -cosPolynomial(reduced);
+
+            default:
+                return sinPolynomial(reduced);
+        }
+    }
+
+    /*package*/ static double tan(double argument) {
+        if (!(Math.abs(argument) <= MAXIMUM_REDUCED_ARGUMENT)) {
+            return Math.tan(argument);
+        }
+        double quadrant = Math.rint(argument * TWO_BY_PI);
+        double reduced = reduce(argument, quadrant);
+        return ((int) quadrant & 1) == 0 ?
+                sinPolynomial(reduced) / cosPolynomial(reduced) :
+                -cosPolynomial(reduced) / sinPolynomial(reduced);
+    }
+
+    /*package*/ static double ln(double argument) {
+        if (!(argument > 0 && argument < Double.POSITIVE_INFINITY)) {
+            return Math.log(argument);
+        }
+        int exponentShift = 0;
+        if (argument < Double.MIN_NORMAL) {
+            argument *= SUBNORMAL_SCALE;
+            exponentShift = 54;
+        }
+        // argument = mantissa * 2 ^ exponent, where mantissa is in [1, 2)
+        long bits = Double.doubleToRawLongBits(argument);
+        int exponent = (int) ((bits & EXPONENT_MASK) >>> MANTISSA_BITS) - 1023 - exponentShift;
+        double mantissa = Double.longBitsToDouble((bits & ~EXPONENT_MASK) | ONE_EXPONENT_BITS);
+        if (mantissa > SQRT_2) {
+            mantissa /= 2;
+            exponent++;
+        }
+        // ln(mantissa) = 2 * atanh(s), where s = (mantissa - 1) / (mantissa + 1) and |s| < 0.1716
+        double s = (mantissa - 1) / (mantissa + 1);
+        double s2 = s * s;
+        double tail = 0.6666666666666206 + s2 * (0.40000000011263015 + s2 * (0.2857142412272895
+                + s2 * (0.22222863785496652 + s2 * (0.18140134518808063 + s2 * 0.16622633991749486))));
+        return exponent * LN_2_HIGH + (2 * s + (s * s2 * tail + exponent * LN_2_LOW));
+    }
+
+    /*package*/ static double lg(double argument) {
+        return ln(argument) * INVERSE_LN_10;
+    }
+
+    /*package*/ static double atan(double argument) {
+        double absolute = Math.abs(argument);
+        boolean inverted = absolute > 1;
+        double reduced = inverted ? 1 / absolute : absolute;
+        // atan(t) = 2 * atan(t / (1 + sqrt(1 + t * t))), so |reduced| < 0.4143
+        reduced = reduced / (1 + Math.sqrt(1 + reduced * reduced));
+        double result = 2 * atanPolynomial(reduced);
+        if (inverted) {
+            result = Math.PI / 2 - result;
+        }
+        return Math.copySign(result, argument);
+    }
+
+    /*package*/ static double asin(double argument) {
+        // 1 - x * x is calculated as (1 - x) * (1 + x) to avoid cancellation near one
+        return atan(argument / Math.sqrt((1 - argument) * (1 + argument)));
+    }
+
+    /*package*/ static double acos(double argument) {
+        return 2 * atan(Math.sqrt((1 - argument) / (1 + argument)));
+    }
+
+    /*
+     * Return argument - quadrant * pi / 2, that lies in [-pi / 4, pi / 4].
+     */
+    private static double reduce(double argument, double quadrant) {
+        return ((argument - quadrant * PI_2_HIGH) - quadrant * PI_2_MIDDLE) - quadrant * PI_2_LOW;
+    }
+
+    /*
+     * Error is less than 1e-17 on [-pi / 4, pi / 4].
+     */
+    private static double sinPolynomial(double x) {
+        double x2 = x * x;
+        return x + x * x2 * (-0.16666666666666666 + x2 * (0.00833333333333095 + x2 * (-0.00019841269836759707
+                + x2 * (2.755731610306132e-06 + x2 * (-2.505113193826738e-08 + x2 * 1.5918135276690886e-10)))));
+    }
+
+    /*
+     * Error is less than 8e-16 on [-pi / 4, pi / 4].
+     */
+    private static double cosPolynomial(double x) {
+        double x2 = x * x;
+        return 1 - 0.5 * x2 + x2 * x2 * (0.04166666666666468 + x2 * (-0.0013888888887277975
+                + x2 * (2.480158521149815e-05 + x2 * (-2.7556369825966947e-07 + x2 * 2.070061094951827e-09))));
+    }
+
+    /*
+     * Error is less than 2e-15 on [-0.4143, 0.4143].
+     */
+    private static double atanPolynomial(double x) {
+        double x2 = x * x;
+        return x + x * x2 * (-0.3333333333333101 + x2 * (0.19999999997786513 + x2 * (-0.14285713937862815
+                + x2 * (0.11111089995961794 + x2 * (-0.09090263849825861 + x2 * (0.07681142942531471
+                + x2 * (-0.06551577830600668 + x2 * (0.051712312627595826 + x2 * -0.027267687825465688))))))));
+    }
+}
@@ -0,0 +1,177 @@
+package formula.parser.operation;
+
+/**
+ * <H1>General</H1>
+ * Enum of fast approximations of transcendental {@link UnaryOperations}. Each operation has the same signs as
+ * approximated operation and is calculated by range reduction and polynomial, so it's cheaper than {@link Math}
+ * function and batch calculation of it's column is plain arithmetic loop.
+ * To use approximations for parsed formulas use {@link formula.parser.api.FormulaParser#setFastMath(boolean)}.
+ * <p/>
+ * <H1>Accuracy</H1>
+ * Error of each operation is not greater than {@link #getMaximumError()} multiplied by maximum of one and absolute
+ * value of exact result, so it's absolute error for results less than one by absolute value and relative error
+ * for greater results. Special values (NaN, infinite values, poles and arguments out of domain) are the same as
+ * for approximated operation.
+ */
+public enum FastMathOperations implements BatchUnaryOperation, DifferentiableUnaryOperation, PureOperation {
+
+    SIN(UnaryOperations.SIN, 2e-15) {
+        @Override
+        public double operate(double argument) {
+            return FastMath.sin(argument);
+        }
+    },
+
+    COS(UnaryOperations.COS, 2e-15) {
+        @Override
+        public double operate(double argument) {
+            return FastMath.cos(argument);
+        }
+    },
+
+    TAN(UnaryOperations.TAN, 4e-15) {
+        @Override
+        public double operate(double argument) {
+            return FastMath.tan(argument);
+        }
+    },
+
+    LN(UnaryOperations.LN, 1e-15) {
+        @Override
+        public double operate(double argument) {
+            return FastMath.ln(argument);
+        }
+    },
+
+    LG(UnaryOperations.LG, 1e-15) {
+        @Override
+        public double operate(double argument) {
+            return FastMath.lg(argument);
+        }
+    },
+
+    ARC_SIN(UnaryOperations.ARC_SIN, 8e-15) {
+        @Override
+        public double operate(double argument) {
+            return FastMath.asin(argument);
+        }
+    },
+
+    ARC_COS(UnaryOperations.ARC_COS, 8e-15) {
+        @Override
+        public double operate(double argument) {
+            return FastMath.acos(argument);
+        }
+    },
+
+    ARC_TAN(UnaryOperations.ARC_TAN, 8e-15) {
+        @Override
+        public double operate(double argument) {
+            return FastMath.atan(argument);
+        }
+    };
+
+    private UnaryOperations preciseOperation;
+    private double maximumError;
+
+    FastMathOperations(UnaryOperations preciseOperation, double maximumError) {
+        this.preciseOperation = preciseOperation;
+        this.maximumError = maximumError;
+    }
+
+    /**
+     * Return built-in operation approximated by this operation.
+     *
+     * @return approximated operation.
+     */
+    public UnaryOperations getPreciseOperation() {
+        return preciseOperation;
+    }
+
+    /**
+     * Return maximum error of operation relative to maximum of one and absolute value of exact result.
+     *
+     * @return maximum error of operation.
+     */
+    public double getMaximumError() {
+        return maximumError;
+    }
+
+    @Override
+    public void operate(double[] arguments, int argumentsOffset, double[] results, int resultsOffset, int count) {
+        switch (this) {
+            case SIN:
+                for (int i = 0; i < count; i++) {
+                    results[resultsOffset + i] = FastMath.sin(arguments[argumentsOffset + i]);
+                }
+                break;
+
+            case COS:
+                for (int i = 0; i < count; i++) {
+                    results[resultsOffset + i] = FastMath.cos(arguments[argumentsOffset + i]);
+                }
+                break;
+
+            case TAN:
+                for (int i = 0; i < count; i++) {
+                    results[resultsOffset + i] = FastMath.tan(arguments[argumentsOffset + i]);
+                }
+                break;
+
+            case LN:
+                for (int i = 0; i < count; i++) {
+                    results[resultsOffset + i] = FastMath.ln(arguments[argumentsOffset + i]);
+                }
+                break;
+
+            case LG:
+                for (int i = 0; i < count; i++) {
+                    results[resultsOffset + i] = FastMath.lg(arguments[argumentsOffset + i]);
+                }
+                break;
+
+            case ARC_SIN:
+                for (int i = 0; i < count; i++) {
+                    results[resultsOffset + i] = FastMath.asin(arguments[argumentsOffset + i]);
+                }
+                break;
+
+            case ARC_COS:
+                for (int i = 0; i < count; i++) {
+                    results[resultsOffset + i] = FastMath.acos(arguments[argumentsOffset + i]);
+                }
+                break;
+
+            case ARC_TAN:
+                for (int i = 0; i < count; i++) {
+                    results[resultsOffset + i] = FastMath.atan(arguments[argumentsOffset + i]);
+                }
+                break;
+        }
+    }
+
+    @Override
+    public double derivative(double argument) {
+        return preciseOperation.derivative(argument);
+    }
+
+    @Override
+    public Type getType() {
+        return Type.UNARY;
+    }
+
+    @Override
+    public int getPriority() {
+        return preciseOperation.getPriority();
+    }
+
+    @Override
+    public String[] getSigns() {
+        return preciseOperation.getSigns();
+    }
+
+    @Override
+    public Notation getNotation() {
+        return preciseOperation.getNotation();
+    }
+}
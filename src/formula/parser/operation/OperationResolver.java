@@ -120,6 +120,24 @@ public class OperationResolver {
         return unaryOperations.get(sign);
     }
 
+    /**
+     * Return known binary operations.
+     *
+     * @return unmodifiable copy of known {@link BinaryOperation} by signs.
+     */
+    public Map<String, BinaryOperation> getBinaryOperations() {
+        return Collections.unmodifiableMap(new HashMap<String, BinaryOperation>(binaryOperations));
+    }
+
+    /**
+     * Return known unary operations.
+     *
+     * @return unmodifiable copy of known {@link UnaryOperation} by signs.
+     */
+    public Map<String, UnaryOperation> getUnaryOperations() {
+        return Collections.unmodifiableMap(new HashMap<String, UnaryOperation>(unaryOperations));
+    }
+
     /**
      * Return maximum length of declared operations.
      *
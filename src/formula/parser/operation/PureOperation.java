@@ -0,0 +1,10 @@
+package formula.parser.operation;
+
+/**
+ * Marker interface of {@link Operation}, which result depends only on it's arguments and which has no side effects.
+ * Pure operations over digit literals are calculated once during formula parsing (constant folding),
+ * so custom operation should implement this interface only in case if it's safe to replace it's call by result.
+ * All built-in {@link UnaryOperations} and {@link BinaryOperations} are pure.
+ */
+public interface PureOperation extends Operation {
+}
@@ -3,16 +3,17 @@ package formula.parser.operation;
 /**
  * Enum of specific {@link UnaryOperation} implementations.
  */
-public enum UnaryOperations implements UnaryOperation {
+public enum UnaryOperations implements DifferentiableUnaryOperation, PureOperation {
 
     FACTORIAL(Notation.POSTFIX, "!") {
         @Override
         public double operate(double argument) {
-            return argument > 0 ? fact(argument) : 0;
+            return Factorials.factorial(argument);
         }
 
-        private double fact(double num) {
-            return (num == 0) ? 1 : num * fact(num - 1);
+        @Override
+        public double derivative(double argument) {
+            return Factorials.derivative(argument);
         }
     },
 
@@ -21,6 +22,11 @@ public enum UnaryOperations implements UnaryOperation {
         public double operate(double firstArgument) {
             return -firstArgument;
         }
+
+        @Override
+        public double derivative(double argument) {
+            return -1;
+        }
     },
 
     LN("ln") {
@@ -28,6 +34,11 @@ public enum UnaryOperations implements UnaryOperation {
         public double operate(double argument) {
             return Math.log(argument);
         }
+
+        @Override
+        public double derivative(double argument) {
+            return 1 / argument;
+        }
     },
 
     LG("lg") {
@@ -35,6 +46,11 @@ public enum UnaryOperations implements UnaryOperation {
         public double operate(double argument) {
             return Math.log10(argument);
         }
+
+        @Override
+        public double derivative(double argument) {
+            return 1 / (argument * Math.log(10));
+        }
     },
 
     SIN("sin") {
@@ -42,6 +58,11 @@ public enum UnaryOperations implements UnaryOperation {
         public double operate(double argument) {
             return Math.sin(argument);
         }
+
+        @Override
+        public double derivative(double argument) {
+            return Math.cos(argument);
+        }
     },
 
     COS("cos") {
@@ -49,6 +70,11 @@ public enum UnaryOperations implements UnaryOperation {
         public double operate(double argument) {
             return Math.cos(argument);
         }
+
+        @Override
+        public double derivative(double argument) {
+            return -Math.sin(argument);
+        }
     },
 
     TAN("tan") {
@@ -56,6 +82,11 @@ public enum UnaryOperations implements UnaryOperation {
         public double operate(double argument) {
             return Math.tan(argument);
         }
+
+        @Override
+        public double derivative(double argument) {
+            return 1 / (Math.cos(argument) * Math.cos(argument));
+        }
     },
 
     ARC_SIN("asin", "arcsin") {
@@ -63,6 +94,11 @@ public enum UnaryOperations implements UnaryOperation {
         public double operate(double argument) {
             return Math.asin(argument);
         }
+
+        @Override
+        public double derivative(double argument) {
+            return 1 / Math.sqrt(1 - argument * argument);
+        }
     },
 
     ARC_COS("acos", "arccos") {
@@ -70,6 +106,11 @@ public enum UnaryOperations implements UnaryOperation {
         public double operate(double argument) {
             return Math.acos(argument);
         }
+
+        @Override
+        public double derivative(double argument) {
+            return -1 / Math.sqrt(1 - argument * argument);
+        }
     },
 
     ARC_TAN("atan", "arctan") {
@@ -77,6 +118,23 @@ public enum UnaryOperations implements UnaryOperation {
         public double operate(double argument) {
             return Math.atan(argument);
         }
+
+        @Override
+        public double derivative(double argument) {
+            return 1 / (1 + argument * argument);
+        }
+    },
+
+    SQRT("sqrt") {
+        @Override
+        public double operate(double argument) {
+            return Math.sqrt(argument);
+        }
+
+        @Override
+        public double derivative(double argument) {
+            return 0.5 / Math.sqrt(argument);
+        }
     };
 
     private static final int UNARY_OPERATION_MINIMUM_PRIORITY = 5;
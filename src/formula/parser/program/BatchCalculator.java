@@ -0,0 +1,149 @@
+package formula.parser.program;
+
+import static formula.parser.program.Opcodes.*;
+
+/**
+ * <H1>General</H1>
+ * Column-at-a-time interpreter of {@link FormulaProgram}. Rows are calculated by chunks of
+ * {@link #CHUNK_SIZE} rows : each instruction of program is applied to whole chunk of column by one of column kernels,
+ * so dispatch of instruction happens once per chunk instead of once per row.
+ *
+ * <H1>Buffers</H1>
+ * Variable loads refer to caller columns without copying. Constants and intermediate results are written
+ * to scratch buffers - one buffer of chunk size per level of program stack and per temporary slot, allocated once by calculator and
+ * reused by each chunk and each calculation. Result of last instruction is written directly to caller results array,
+ * so calculation allocates nothing.
+ *
+ * <H1>Thread safety</H1>
+ * Calculator owns scratch buffers, so it's not thread safe. Each thread should use own calculator, while
+ * program itself could be shared.
+ */
+public final class BatchCalculator {
+
+    /**
+     * Count of rows calculated by each instruction at once. Scratch buffers of usual formula fit to CPU cache.
+     */
+    public static final int CHUNK_SIZE = 1024;
+
+    private final FormulaProgram program;
+    private final double[][] buffers;
+    private final double[][] temporaryBuffers;
+    private final double[][] stack;
+    private final int[] stackOffsets;
+    private final int chunkSize;
+
+    /**
+     * Creates calculator with scratch buffers for given program.
+     *
+     * @param program program to calculate.
+     */
+    public BatchCalculator(FormulaProgram program) {
+        this(program, CHUNK_SIZE);
+    }
+
+    /*package*/ BatchCalculator(FormulaProgram program, int chunkSize) {
+        this.program = program;
+        buffers = new double[program.stackSize][chunkSize];
+        temporaryBuffers = new double[program.temporaryCount][chunkSize];
+        stack = new double[program.stackSize][];
+        stackOffsets = new int[program.stackSize];
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Return calculated program.
+     *
+     * @return program of calculator.
+     */
+    public FormulaProgram getProgram() {
+        return program;
+    }
+
+    /**
+     * Calculates program for each row of given variable columns.
+     *
+     * @param variableColumns columns of variable values in slot order, each column should contain
+     *                        not less values than size of results array.
+     * @param results array for calculated values, count of calculated rows is defined by it's size.
+     * @throws IllegalArgumentException in case if count or size of columns is not enough.
+     * @see FormulaProgram#calculate(double[][], double[])
+     */
+    public void calculate(double[][] variableColumns, double[] results) {
+        calculate(variableColumns, results, 0, results.length);
+    }
+
+    /**
+     * Calculates program for rows in range [from, to) of given variable columns and writes values of rows
+     * to the same range of results array.
+     *
+     * @param variableColumns columns of variable values in slot order, each column should contain
+     *                        not less values than 'to'.
+     * @param results array for calculated values.
+     * @param from index of first calculated row.
+     * @param to index of row that follows last calculated row.
+     * @throws IllegalArgumentException in case if count or size of columns is not enough or range is invalid.
+     */
+    public void calculate(double[][] variableColumns, double[] results, int from, int to) {
+        if (from < 0 || from > to || to > results.length) {
+            throw new IllegalArgumentException(String.format("Invalid range [%d, %d) of %d results",
+                    from, to, results.length));
+        }
+        program.checkColumns(variableColumns, to);
+
+        for (int offset = from; offset < to; offset += chunkSize) {
+            calculateChunk(variableColumns, results, offset, Math.min(chunkSize, to - offset));
+        }
+    }
+
+    private void calculateChunk(double[][] variableColumns, double[] results, int offset, int count) {
+        int[] instructions = program.instructions;
+        int last = instructions.length - 1;
+        int top = -1;
+        for (int i = 0; i <= last; i++) {
+            int instruction = instructions[i];
+            int opcode = opcode(instruction);
+            if (opcode == LOAD_VARIABLE) {
+                top++;
+                stack[top] = variableColumns[operand(instruction)];
+                stackOffsets[top] = offset;
+                continue;
+            }
+
+            if (opcode == STORE_TEMPORARY) {
+                System.arraycopy(stack[top], stackOffsets[top], temporaryBuffers[operand(instruction)], 0, count);
+                continue;
+            }
+
+            if (opcode == LOAD_TEMPORARY) {
+                top++;
+                stack[top] = temporaryBuffers[operand(instruction)];
+                stackOffsets[top] = 0;
+                continue;
+            }
+
+            if (opcode == PUSH_CONSTANT) {
+                top++;
+            } else if (isBinary(opcode)) {
+                top--;
+            }
+            double[] target = i == last ? results : buffers[top];
+            int targetOffset = i == last ? offset : 0;
+
+            if (opcode == PUSH_CONSTANT) {
+                BatchKernels.fill(program.constants[operand(instruction)], target, targetOffset, count);
+            } else if (isBinary(opcode)) {
+                BatchKernels.binary(instruction, program.binaryOperations, stack[top], stackOffsets[top],
+                        stack[top + 1], stackOffsets[top + 1], target, targetOffset, count);
+            } else {
+                BatchKernels.unary(instruction, program.unaryOperations, stack[top], stackOffsets[top],
+                        target, targetOffset, count);
+            }
+            stack[top] = target;
+            stackOffsets[top] = targetOffset;
+        }
+
+        if (stack[0] != results) {
+            System.arraycopy(stack[0], stackOffsets[0], results, offset, count);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package formula.parser.program;
+
+import formula.parser.operation.BatchUnaryOperation;
+import formula.parser.operation.BinaryOperation;
+import formula.parser.operation.UnaryOperation;
+import formula.parser.operation.UnaryOperations;
+
+import static formula.parser.program.Opcodes.*;
+
+/**
+ * Column kernels of batch calculation. Each kernel applies operation to 'count' elements of argument columns,
+ * starting from given offsets, and writes results to result column. Result column could be the same array
+ * as one of arguments, since each element is read before it's written.
+ * Kernels of {@link Opcodes#ADDITION}, {@link Opcodes#MULTIPLY}, {@link Opcodes#DIVISION} and
+ * {@link Opcodes#SUBTRACTION} are plain counted loops over primitive arrays, that JIT compiles to SIMD instructions.
+ * Other operations are calculated by scalar loops, except custom operations implementing
+ * {@link BatchUnaryOperation}, which calculate column by themselves.
+ */
+/*package*/ final class BatchKernels {
+
+    private BatchKernels() {
+    }
+
+    static void binary(int instruction, BinaryOperation[] binaryOperations,
+                       double[] first, int firstOffset, double[] second, int secondOffset,
+                       double[] result, int resultOffset, int count) {
+        switch (opcode(instruction)) {
+            case ADDITION:
+                add(first, firstOffset, second, secondOffset, result, resultOffset, count);
+                break;
+
+            case DIVISION:
+                divide(first, firstOffset, second, secondOffset, result, resultOffset, count);
+                break;
+
+            case MULTIPLY:
+                multiply(first, firstOffset, second, secondOffset, result, resultOffset, count);
+                break;
+
+            case POWER:
+                power(first, firstOffset, second, secondOffset, result, resultOffset, count);
+                break;
+
+            case CUSTOM_BINARY:
+                operate(binaryOperations[operand(instruction)], first, firstOffset, second, secondOffset,
+                        result, resultOffset, count);
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown binary instruction : " + instruction);
+        }
+    }
+
+    static void unary(int instruction, UnaryOperation[] unaryOperations,
+                      double[] argument, int argumentOffset, double[] result, int resultOffset, int count) {
+        switch (opcode(instruction)) {
+            case SUBTRACTION:
+                negate(argument, argumentOffset, result, resultOffset, count);
+                break;
+
+            case FACTORIAL:
+                for (int i = 0; i < count; i++) {
+                    result[resultOffset + i] = UnaryOperations.FACTORIAL.operate(argument[argumentOffset + i]);
+                }
+                break;
+
+            case LN:
+                for (int i = 0; i < count; i++) {
+                    result[resultOffset + i] = Math.log(argument[argumentOffset + i]);
+                }
+                break;
+
+            case LG:
+                for (int i = 0; i < count; i++) {
+                    result[resultOffset + i] = Math.log10(argument[argumentOffset + i]);
+                }
+                break;
+
+            case SIN:
+                for (int i = 0; i < count; i++) {
+                    result[resultOffset + i] = Math.sin(argument[argumentOffset + i]);
+                }
+                break;
+
+            case COS:
+                for (int i = 0; i < count; i++) {
+                    result[resultOffset + i] = Math.cos(argument[argumentOffset + i]);
+                }
+                break;
+
+            case TAN:
+                for (int i = 0; i < count; i++) {
+                    result[resultOffset + i] = Math.tan(argument[argumentOffset + i]);
+                }
+                break;
+
+            case ARC_SIN:
+                for (int i = 0; i < count; i++) {
+                    result[resultOffset + i] = Math.asin(argument[argumentOffset + i]);
+                }
+                break;
+
+            case ARC_COS:
+                for (int i = 0; i < count; i++) {
+                    result[resultOffset + i] = Math.acos(argument[argumentOffset + i]);
+                }
+                break;
+
+            case ARC_TAN:
+                for (int i = 0; i < count; i++) {
+                    result[resultOffset + i] = Math.atan(argument[argumentOffset + i]);
+                }
+                break;
+
+            case SQRT:
+                for (int i = 0; i < count; i++) {
+                    result[resultOffset + i] = Math.sqrt(argument[argumentOffset + i]);
+                }
+                break;
+
+            case CUSTOM_UNARY:
+                operate(unaryOperations[operand(instruction)], argument, argumentOffset, result, resultOffset, count);
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown unary instruction : " + instruction);
+        }
+    }
+
+    static void fill(double value, double[] result, int resultOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            result[resultOffset + i] = value;
+        }
+    }
+
+    private static void add(double[] first, int firstOffset, double[] second, int secondOffset,
+                            double[] result, int resultOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            result[resultOffset + i] = first[firstOffset + i] + second[secondOffset + i];
+        }
+    }
+
+    private static void divide(double[] first, int firstOffset, double[] second, int secondOffset,
+                               double[] result, int resultOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            result[resultOffset + i] = first[firstOffset + i] / second[secondOffset + i];
+        }
+    }
+
+    private static void multiply(double[] first, int firstOffset, double[] second, int secondOffset,
+                                 double[] result, int resultOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            result[resultOffset + i] = first[firstOffset + i] * second[secondOffset + i];
+        }
+    }
+
+    private static void power(double[] first, int firstOffset, double[] second, int secondOffset,
+                              double[] result, int resultOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            result[resultOffset + i] = Math.pow(first[firstOffset + i], second[secondOffset + i]);
+        }
+    }
+
+    private static void negate(double[] argument, int argumentOffset, double[] result, int resultOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            result[resultOffset + i] = -argument[argumentOffset + i];
+        }
+    }
+
+    private static void operate(BinaryOperation operation, double[] first, int firstOffset,
+                                double[] second, int secondOffset, double[] result, int resultOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            result[resultOffset + i] = operation.operate(first[firstOffset + i], second[secondOffset + i]);
+        }
+    }
+
+    private static void operate(UnaryOperation operation, double[] argument, int argumentOffset,
+                                double[] result, int resultOffset, int count) {
+        if (operation instanceof BatchUnaryOperation) {
+            ((BatchUnaryOperation) operation).operate(argument, argumentOffset, result, resultOffset, count);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            result[resultOffset + i] = operation.operate(argument[argumentOffset + i]);
+        }
+    }
+}
@@ -0,0 +1,598 @@
+package formula.parser.program;
+
+import formula.parser.operation.BinaryOperation;
+import formula.parser.operation.UnaryOperation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+
+import static formula.parser.program.Opcodes.*;
+
+/**
+ * Generator of hidden JVM class for {@link FormulaProgram}. Generated class looks like :
+ *
+ * <pre><code> final class GeneratedFormulaFunction implements FormulaFunction {
+ *
+ *     private final UnaryOperation unary0;
+ *     private final BinaryOperation binary0;
+ *
+ *     GeneratedFormulaFunction(UnaryOperation[] unaryOperations, BinaryOperation[] binaryOperations) {
+ *         unary0 = unaryOperations[0];
+ *         binary0 = binaryOperations[0];
+ *     }
+ *
+ *     public int getFrameSize() {
+ *         return 2;
+ *     }
+ *
+ *     public double calculate(double[] frame) {
+ *         return binary0.operate(Math.sin(frame[0]) * 2.0, unary0.operate(frame[1]));
+ *     }
+ * }</code></pre>
+ *
+ * Program instructions are translated one by one into JVM operand stack instructions, so generated code
+ * contains no branches and no stack map frames are required.
+ */
+/*package*/ final class BytecodeGenerator {
+
+    private static final String CLASS_NAME = "formula/parser/program/GeneratedFormulaFunction";
+    private static final String OBJECT_CLASS = "java/lang/Object";
+    private static final String MATH_CLASS = "java/lang/Math";
+    private static final String FUNCTION_INTERFACE = "formula/parser/program/FormulaFunction";
+    private static final String UNARY_OPERATION_CLASS = "formula/parser/operation/UnaryOperation";
+    private static final String BINARY_OPERATION_CLASS = "formula/parser/operation/BinaryOperation";
+    private static final String UNARY_OPERATIONS_CLASS = "formula/parser/operation/UnaryOperations";
+
+    private static final String UNARY_OPERATION_DESCRIPTOR = "L" + UNARY_OPERATION_CLASS + ";";
+    private static final String BINARY_OPERATION_DESCRIPTOR = "L" + BINARY_OPERATION_CLASS + ";";
+    private static final String CONSTRUCTOR_DESCRIPTOR = "([" + UNARY_OPERATION_DESCRIPTOR + "[" +
+                                                         BINARY_OPERATION_DESCRIPTOR + ")V";
+
+    private static final int CLASS_FILE_MAGIC = 0xCAFEBABE;
+    private static final int CLASS_FILE_VERSION = 52;
+    private static final int MAX_METHOD_CODE_LENGTH = 65535;
+    private static final int MAX_CONSTANT_POOL_SIZE = 65535;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC2_W = 0x14;
+    private static final int DLOAD = 0x18;
+    private static final int DLOAD_2 = 0x28;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int DALOAD = 0x31;
+    private static final int AALOAD = 0x32;
+    private static final int DSTORE = 0x39;
+    private static final int DSTORE_2 = 0x49;
+    private static final int DUP2 = 0x5c;
+    private static final int DADD = 0x63;
+    private static final int DMUL = 0x6b;
+    private static final int DDIV = 0x6f;
+    private static final int DNEG = 0x77;
+    private static final int IRETURN = 0xac;
+    private static final int DRETURN = 0xaf;
+    private static final int RETURN = 0xb1;
+    private static final int GETSTATIC = 0xb2;
+    private static final int GETFIELD = 0xb4;
+    private static final int PUTFIELD = 0xb5;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int INVOKEINTERFACE = 0xb9;
+    private static final int WIDE = 0xc4;
+
+    /*
+     * Local variables of 'calculate' method : 0 - this, 1 - frame, 2 and 4 - temporary double arguments
+     * of custom operations, 6 and next - temporary slots of program.
+     */
+    private static final int TEMPORARY_LOCALS_OFFSET = 6;
+    private static final int SECOND_ARGUMENT_LOCAL = 4;
+    private static final int MAX_LOCALS = 65535;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(void.class,
+            UnaryOperation[].class, BinaryOperation[].class);
+
+    /**
+     * Generates function for given program.
+     *
+     * @param program compiled program of formula.
+     * @return instance of generated hidden class or given program in case if it's too large for single JVM method.
+     */
+    static FormulaFunction generate(FormulaProgram program) {
+        BytecodeGenerator generator = new BytecodeGenerator(program);
+        byte[] classBytes = generator.generateClass();
+        if (classBytes == null) {
+            return program;
+        }
+
+        try {
+            MethodHandles.Lookup functionLookup = LOOKUP.defineHiddenClass(classBytes, true);
+            MethodHandle constructor = functionLookup.findConstructor(functionLookup.lookupClass(), CONSTRUCTOR_TYPE);
+            return (FormulaFunction) constructor.invoke(program.unaryOperations, program.binaryOperations);
+        } catch (Throwable throwable) {
+            throw new IllegalStateException("Can't define generated class for formula", throwable);
+        }
+    }
+
+    private final FormulaProgram program;
+    private final ConstantPool constantPool;
+
+    private BytecodeGenerator(FormulaProgram program) {
+        this.program = program;
+        constantPool = new ConstantPool();
+    }
+
+    /*
+     * Returns class file bytes or 'null' in case if program exceeds class file limits.
+     */
+    private byte[] generateClass() {
+        if (program.unaryOperations.length > Short.MAX_VALUE || program.binaryOperations.length > Short.MAX_VALUE ||
+                temporaryLocal(program.temporaryCount) > MAX_LOCALS) {
+            return null;
+        }
+
+        Code constructorCode = generateConstructorCode();
+        Code frameSizeCode = generateFrameSizeCode();
+        Code calculateCode = generateCalculateCode();
+
+        int thisClass = constantPool.classInfo(CLASS_NAME);
+        int superClass = constantPool.classInfo(OBJECT_CLASS);
+        int functionInterface = constantPool.classInfo(FUNCTION_INTERFACE);
+        int codeAttributeName = constantPool.utf8("Code");
+
+        int[] fieldNames = new int[program.unaryOperations.length + program.binaryOperations.length];
+        int[] fieldDescriptors = new int[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            boolean unary = i < program.unaryOperations.length;
+            fieldNames[i] = constantPool.utf8(unary ? unaryFieldName(i) :
+                                                      binaryFieldName(i - program.unaryOperations.length));
+            fieldDescriptors[i] = constantPool.utf8(unary ? UNARY_OPERATION_DESCRIPTOR : BINARY_OPERATION_DESCRIPTOR);
+        }
+
+        int[] methodNames = {
+                constantPool.utf8("<init>"),
+                constantPool.utf8("getFrameSize"),
+                constantPool.utf8("calculate")
+        };
+        int[] methodDescriptors = {
+                constantPool.utf8(CONSTRUCTOR_DESCRIPTOR),
+                constantPool.utf8("()I"),
+                constantPool.utf8("([D)D")
+        };
+        int[] methodAccessFlags = {0, ACC_PUBLIC, ACC_PUBLIC};
+        Code[] methodCodes = {constructorCode, frameSizeCode, calculateCode};
+
+        if (calculateCode.length() > MAX_METHOD_CODE_LENGTH || constantPool.size() > MAX_CONSTANT_POOL_SIZE) {
+            return null;
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeInt(CLASS_FILE_MAGIC);
+            out.writeShort(0);
+            out.writeShort(CLASS_FILE_VERSION);
+            constantPool.write(out);
+
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(functionInterface);
+
+            out.writeShort(fieldNames.length);
+            for (int i = 0; i < fieldNames.length; i++) {
+                out.writeShort(ACC_PRIVATE | ACC_FINAL);
+                out.writeShort(fieldNames[i]);
+                out.writeShort(fieldDescriptors[i]);
+                out.writeShort(0);
+            }
+
+            out.writeShort(methodCodes.length);
+            for (int i = 0; i < methodCodes.length; i++) {
+                out.writeShort(methodAccessFlags[i]);
+                out.writeShort(methodNames[i]);
+                out.writeShort(methodDescriptors[i]);
+                out.writeShort(1);
+                methodCodes[i].write(out, codeAttributeName);
+            }
+
+            out.writeShort(0);
+            return bytes.toByteArray();
+
+        } catch (IOException exception) {
+            throw new IllegalStateException("Can't write generated class", exception);
+        }
+    }
+
+    private static String unaryFieldName(int index) {
+        return "unary" + index;
+    }
+
+    private static String binaryFieldName(int index) {
+        return "binary" + index;
+    }
+
+    private Code generateConstructorCode() {
+        Code code = new Code(3);
+        code.add(ALOAD_0, 1);
+        code.addWithIndex(INVOKESPECIAL, constantPool.methodRef(OBJECT_CLASS, "<init>", "()V"), -1);
+
+        for (int i = 0; i < program.unaryOperations.length; i++) {
+            code.add(ALOAD_0, 1);
+            code.add(ALOAD_1, 1);
+            code.addIntConstant(i);
+            code.add(AALOAD, -1);
+            code.addWithIndex(PUTFIELD, constantPool.fieldRef(CLASS_NAME, unaryFieldName(i), UNARY_OPERATION_DESCRIPTOR), -2);
+        }
+
+        for (int i = 0; i < program.binaryOperations.length; i++) {
+            code.add(ALOAD_0, 1);
+            code.add(ALOAD_2, 1);
+            code.addIntConstant(i);
+            code.add(AALOAD, -1);
+            code.addWithIndex(PUTFIELD, constantPool.fieldRef(CLASS_NAME, binaryFieldName(i), BINARY_OPERATION_DESCRIPTOR), -2);
+        }
+
+        code.add(RETURN, 0);
+        return code;
+    }
+
+    private Code generateFrameSizeCode() {
+        Code code = new Code(1);
+        code.addIntConstant(program.variables.length + program.parameterCount);
+        code.add(IRETURN, -1);
+        return code;
+    }
+
+    private static int temporaryLocal(int temporary) {
+        return TEMPORARY_LOCALS_OFFSET + 2 * temporary;
+    }
+
+    private Code generateCalculateCode() {
+        Code code = new Code(temporaryLocal(program.temporaryCount));
+        for (int instruction : program.instructions) {
+            int operand = operand(instruction);
+            switch (opcode(instruction)) {
+                case PUSH_CONSTANT:
+                    code.addWithIndex(LDC2_W, constantPool.doubleInfo(program.constants[operand]), 2);
+                    break;
+
+                case LOAD_VARIABLE:
+                    code.add(ALOAD_1, 1);
+                    code.addIntConstant(operand);
+                    code.add(DALOAD, 0);
+                    break;
+
+                case STORE_TEMPORARY:
+                    code.add(DUP2, 2);
+                    code.addLocal(DSTORE, temporaryLocal(operand), -2);
+                    break;
+
+                case LOAD_TEMPORARY:
+                    code.addLocal(DLOAD, temporaryLocal(operand), 2);
+                    break;
+
+                case ADDITION:
+                    code.add(DADD, -2);
+                    break;
+
+                case DIVISION:
+                    code.add(DDIV, -2);
+                    break;
+
+                case MULTIPLY:
+                    code.add(DMUL, -2);
+                    break;
+
+                case POWER:
+                    addMathCall(code, "pow", "(DD)D", -2);
+                    break;
+
+                case CUSTOM_BINARY:
+                    addCustomBinaryOperationCall(code, operand);
+                    break;
+
+                case FACTORIAL:
+                    addFactorialCall(code);
+                    break;
+
+                case SUBTRACTION:
+                    code.add(DNEG, 0);
+                    break;
+
+                case LN:
+                    addMathCall(code, "log", "(D)D", 0);
+                    break;
+
+                case LG:
+                    addMathCall(code, "log10", "(D)D", 0);
+                    break;
+
+                case SIN:
+                    addMathCall(code, "sin", "(D)D", 0);
+                    break;
+
+                case COS:
+                    addMathCall(code, "cos", "(D)D", 0);
+                    break;
+
+                case TAN:
+                    addMathCall(code, "tan", "(D)D", 0);
+                    break;
+
+                case ARC_SIN:
+                    addMathCall(code, "asin", "(D)D", 0);
+                    break;
+
+                case ARC_COS:
+                    addMathCall(code, "acos", "(D)D", 0);
+                    break;
+
+                case ARC_TAN:
+                    addMathCall(code, "atan", "(D)D", 0);
+                    break;
+
+                case SQRT:
+                    addMathCall(code, "sqrt", "(D)D", 0);
+                    break;
+
+                case CUSTOM_UNARY:
+                    addCustomUnaryOperationCall(code, operand);
+                    break;
+
+                default:
+                    throw new IllegalStateException("Unknown instruction : " + instruction);
+            }
+        }
+        code.add(DRETURN, -2);
+        return code;
+    }
+
+    private void addMathCall(Code code, String methodName, String descriptor, int stackDelta) {
+        code.addWithIndex(INVOKESTATIC, constantPool.methodRef(MATH_CLASS, methodName, descriptor), stackDelta);
+    }
+
+    /*
+     * Receiver of operation should be placed under arguments on operand stack, so arguments are
+     * moved to local variables : arg -> dstore_2; getstatic FACTORIAL; dload_2; invokeinterface operate.
+     */
+    private void addFactorialCall(Code code) {
+        code.add(DSTORE_2, -2);
+        code.addWithIndex(GETSTATIC, constantPool.fieldRef(UNARY_OPERATIONS_CLASS, "FACTORIAL",
+                "L" + UNARY_OPERATIONS_CLASS + ";"), 1);
+        code.add(DLOAD_2, 2);
+        addUnaryOperationInvoke(code);
+    }
+
+    private void addCustomUnaryOperationCall(Code code, int operationIndex) {
+        code.add(DSTORE_2, -2);
+        code.add(ALOAD_0, 1);
+        code.addWithIndex(GETFIELD, constantPool.fieldRef(CLASS_NAME, unaryFieldName(operationIndex),
+                UNARY_OPERATION_DESCRIPTOR), 0);
+        code.add(DLOAD_2, 2);
+        addUnaryOperationInvoke(code);
+    }
+
+    private void addUnaryOperationInvoke(Code code) {
+        int methodRef = constantPool.interfaceMethodRef(UNARY_OPERATION_CLASS, "operate", "(D)D");
+        code.addWithIndex(INVOKEINTERFACE, methodRef, -1);
+        code.addByte(3);
+        code.addByte(0);
+    }
+
+    private void addCustomBinaryOperationCall(Code code, int operationIndex) {
+        code.add(DSTORE, -2);
+        code.addByte(SECOND_ARGUMENT_LOCAL);
+        code.add(DSTORE_2, -2);
+        code.add(ALOAD_0, 1);
+        code.addWithIndex(GETFIELD, constantPool.fieldRef(CLASS_NAME, binaryFieldName(operationIndex),
+                BINARY_OPERATION_DESCRIPTOR), 0);
+        code.add(DLOAD_2, 2);
+        code.add(DLOAD, 2);
+        code.addByte(SECOND_ARGUMENT_LOCAL);
+
+        int methodRef = constantPool.interfaceMethodRef(BINARY_OPERATION_CLASS, "operate", "(DD)D");
+        code.addWithIndex(INVOKEINTERFACE, methodRef, -3);
+        code.addByte(5);
+        code.addByte(0);
+    }
+
+    /*
+     * Bytecode of single method with tracking of operand stack size in words.
+     */
+    private static class Code {
+
+        private final ByteArrayOutputStream bytes;
+        private final int maxLocals;
+        private int stackSize;
+        private int maxStackSize;
+
+        Code(int maxLocals) {
+            this.maxLocals = maxLocals;
+            bytes = new ByteArrayOutputStream();
+        }
+
+        void add(int opcode, int stackDelta) {
+            bytes.write(opcode);
+            stackSize += stackDelta;
+            maxStackSize = Math.max(maxStackSize, stackSize);
+        }
+
+        void addWithIndex(int opcode, int index, int stackDelta) {
+            add(opcode, stackDelta);
+            addShort(index);
+        }
+
+        /*
+         * Adds instruction over local variable with given index, WIDE form is used for index above 255.
+         */
+        void addLocal(int opcode, int index, int stackDelta) {
+            if (index <= 0xff) {
+                add(opcode, stackDelta);
+                addByte(index);
+            } else {
+                add(WIDE, 0);
+                add(opcode, stackDelta);
+                addShort(index);
+            }
+        }
+
+        void addIntConstant(int value) {
+            if (value <= 5) {
+                add(ICONST_0 + value, 1);
+            } else if (value <= Byte.MAX_VALUE) {
+                add(BIPUSH, 1);
+                addByte(value);
+            } else {
+                add(SIPUSH, 1);
+                addShort(value);
+            }
+        }
+
+        void addByte(int value) {
+            bytes.write(value);
+        }
+
+        void addShort(int value) {
+            bytes.write(value >>> 8);
+            bytes.write(value);
+        }
+
+        int length() {
+            return bytes.size();
+        }
+
+        void write(DataOutputStream out, int codeAttributeName) throws IOException {
+            int codeLength = bytes.size();
+            out.writeShort(codeAttributeName);
+            out.writeInt(12 + codeLength);
+            out.writeShort(maxStackSize);
+            out.writeShort(maxLocals);
+            out.writeInt(codeLength);
+            bytes.writeTo(out);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+    }
+
+    /*
+     * Constant pool of generated class. Equal entries are added only once.
+     */
+    private static class ConstantPool {
+
+        private static final int CONSTANT_UTF8 = 1;
+        private static final int CONSTANT_DOUBLE = 6;
+        private static final int CONSTANT_CLASS = 7;
+        private static final int CONSTANT_FIELD_REF = 9;
+        private static final int CONSTANT_METHOD_REF = 10;
+        private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+        private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<String, Integer>();
+        private int size = 1;
+
+        int utf8(String value) {
+            String key = "U" + value;
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(CONSTANT_UTF8);
+                out.writeUTF(value);
+            } catch (IOException exception) {
+                throw new IllegalStateException(exception);
+            }
+            return register(key, 1);
+        }
+
+        int doubleInfo(double value) {
+            String key = "D" + Double.doubleToRawLongBits(value);
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(CONSTANT_DOUBLE);
+                out.writeDouble(value);
+            } catch (IOException exception) {
+                throw new IllegalStateException(exception);
+            }
+            return register(key, 2);
+        }
+
+        int classInfo(String className) {
+            return reference(CONSTANT_CLASS, "C" + className, utf8(className), -1);
+        }
+
+        int fieldRef(String className, String name, String descriptor) {
+            return memberRef(CONSTANT_FIELD_REF, className, name, descriptor);
+        }
+
+        int methodRef(String className, String name, String descriptor) {
+            return memberRef(CONSTANT_METHOD_REF, className, name, descriptor);
+        }
+
+        int interfaceMethodRef(String className, String name, String descriptor) {
+            return memberRef(CONSTANT_INTERFACE_METHOD_REF, className, name, descriptor);
+        }
+
+        private int memberRef(int tag, String className, String name, String descriptor) {
+            int classIndex = classInfo(className);
+            int nameAndType = reference(CONSTANT_NAME_AND_TYPE, "N" + name + ":" + descriptor,
+                    utf8(name), utf8(descriptor));
+            return reference(tag, tag + className + "." + name + ":" + descriptor, classIndex, nameAndType);
+        }
+
+        private int reference(int tag, String key, int firstIndex, int secondIndex) {
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            bytes.write(tag);
+            writeShort(firstIndex);
+            if (secondIndex >= 0) {
+                writeShort(secondIndex);
+            }
+            return register(key, 1);
+        }
+
+        private void writeShort(int value) {
+            bytes.write(value >>> 8);
+            bytes.write(value);
+        }
+
+        private int register(String key, int slots) {
+            int index = size;
+            entries.put(key, index);
+            size += slots;
+            return index;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void write(DataOutputStream classOut) throws IOException {
+            classOut.writeShort(size);
+            bytes.writeTo(classOut);
+        }
+    }
+}
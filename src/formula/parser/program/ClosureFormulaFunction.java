@@ -0,0 +1,413 @@
+package formula.parser.program;
+
+import formula.parser.operation.BinaryOperation;
+import formula.parser.operation.UnaryOperation;
+import formula.parser.operation.UnaryOperations;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static formula.parser.program.Opcodes.*;
+
+/**
+ * Implementation of {@link FormulaFunction} as a tree of small evaluator objects.
+ * Each program instruction is turned into evaluator specialized for it : literal, variable slot,
+ * each built-in {@link formula.parser.operation.BinaryOperations} and {@link UnaryOperations} or generic
+ * custom operation. Evaluator classes are final, so call sites of each evaluator stay monomorphic or
+ * bimorphic and JIT could inline through the whole tree.
+ * Value of common subexpression is written to temporary slot of frame by first usage and read from it by next usages,
+ * since evaluators calculate arguments in the same order as program does.
+ */
+public final class ClosureFormulaFunction implements FormulaFunction {
+
+    /**
+     * Creates function for given program.
+     *
+     * @param program compiled program of formula.
+     * @return function calculated by evaluators tree.
+     */
+    static ClosureFormulaFunction generate(FormulaProgram program) {
+        int temporaryOffset = program.variables.length + program.parameterCount;
+        Deque<Evaluator> evaluators = new ArrayDeque<Evaluator>(program.stackSize);
+        for (int instruction : program.instructions) {
+            int operand = operand(instruction);
+            int opcode = opcode(instruction);
+
+            if (opcode == PUSH_CONSTANT) {
+                evaluators.push(new LiteralEvaluator(program.constants[operand]));
+            } else if (opcode == LOAD_VARIABLE) {
+                evaluators.push(new VariableEvaluator(operand));
+            } else if (opcode == STORE_TEMPORARY) {
+                evaluators.push(new StoreEvaluator(evaluators.pop(), temporaryOffset + operand));
+            } else if (opcode == LOAD_TEMPORARY) {
+                evaluators.push(new VariableEvaluator(temporaryOffset + operand));
+            } else if (isBinary(opcode)) {
+                Evaluator rightEvaluator = evaluators.pop();
+                Evaluator leftEvaluator = evaluators.pop();
+                evaluators.push(newBinaryEvaluator(program, instruction, leftEvaluator, rightEvaluator));
+            } else if (isUnary(opcode)) {
+                evaluators.push(newUnaryEvaluator(program, instruction, evaluators.pop()));
+            } else {
+                throw new IllegalStateException("Unknown instruction : " + instruction);
+            }
+        }
+        return new ClosureFormulaFunction(evaluators.pop(), temporaryOffset + program.temporaryCount);
+    }
+
+    private static Evaluator newBinaryEvaluator(FormulaProgram program, int instruction, Evaluator left, Evaluator right) {
+        switch (opcode(instruction)) {
+            case ADDITION:
+                return new AdditionEvaluator(left, right);
+
+            case DIVISION:
+                return new DivisionEvaluator(left, right);
+
+            case MULTIPLY:
+                return new MultiplyEvaluator(left, right);
+
+            case POWER:
+                return new PowerEvaluator(left, right);
+
+            default:
+                return new CustomBinaryEvaluator(program.binaryOperations[operand(instruction)], left, right);
+        }
+    }
+
+    private static Evaluator newUnaryEvaluator(FormulaProgram program, int instruction, Evaluator argument) {
+        switch (opcode(instruction)) {
+            case FACTORIAL:
+                return new FactorialEvaluator(argument);
+
+            case SUBTRACTION:
+                return new SubtractionEvaluator(argument);
+
+            case LN:
+                return new LnEvaluator(argument);
+
+            case LG:
+                return new LgEvaluator(argument);
+
+            case SIN:
+                return new SinEvaluator(argument);
+
+            case COS:
+                return new CosEvaluator(argument);
+
+            case TAN:
+                return new TanEvaluator(argument);
+
+            case ARC_SIN:
+                return new ArcSinEvaluator(argument);
+
+            case ARC_COS:
+                return new ArcCosEvaluator(argument);
+
+            case ARC_TAN:
+                return new ArcTanEvaluator(argument);
+
+            case SQRT:
+                return new SqrtEvaluator(argument);
+
+            default:
+                return new CustomUnaryEvaluator(program.unaryOperations[operand(instruction)], argument);
+        }
+    }
+
+    private final Evaluator rootEvaluator;
+    private final int frameSize;
+
+    private ClosureFormulaFunction(Evaluator rootEvaluator, int frameSize) {
+        this.rootEvaluator = rootEvaluator;
+        this.frameSize = frameSize;
+    }
+
+    @Override
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    @Override
+    public double calculate(double[] frame) {
+        return rootEvaluator.evaluate(frame);
+    }
+
+    private static abstract class Evaluator {
+        abstract double evaluate(double[] frame);
+    }
+
+    private static final class LiteralEvaluator extends Evaluator {
+
+        private final double value;
+
+        LiteralEvaluator(double value) {
+            this.value = value;
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return value;
+        }
+    }
+
+    private static final class VariableEvaluator extends Evaluator {
+
+        private final int slot;
+
+        VariableEvaluator(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return frame[slot];
+        }
+    }
+
+    private static final class StoreEvaluator extends Evaluator {
+
+        private final Evaluator argument;
+        private final int slot;
+
+        StoreEvaluator(Evaluator argument, int slot) {
+            this.argument = argument;
+            this.slot = slot;
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            double value = argument.evaluate(frame);
+            frame[slot] = value;
+            return value;
+        }
+    }
+
+    private static abstract class BinaryEvaluator extends Evaluator {
+
+        final Evaluator left;
+        final Evaluator right;
+
+        BinaryEvaluator(Evaluator left, Evaluator right) {
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    private static final class AdditionEvaluator extends BinaryEvaluator {
+
+        AdditionEvaluator(Evaluator left, Evaluator right) {
+            super(left, right);
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return left.evaluate(frame) + right.evaluate(frame);
+        }
+    }
+
+    private static final class DivisionEvaluator extends BinaryEvaluator {
+
+        DivisionEvaluator(Evaluator left, Evaluator right) {
+            super(left, right);
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return left.evaluate(frame) / right.evaluate(frame);
+        }
+    }
+
+    private static final class MultiplyEvaluator extends BinaryEvaluator {
+
+        MultiplyEvaluator(Evaluator left, Evaluator right) {
+            super(left, right);
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return left.evaluate(frame) * right.evaluate(frame);
+        }
+    }
+
+    private static final class PowerEvaluator extends BinaryEvaluator {
+
+        PowerEvaluator(Evaluator left, Evaluator right) {
+            super(left, right);
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return Math.pow(left.evaluate(frame), right.evaluate(frame));
+        }
+    }
+
+    private static final class CustomBinaryEvaluator extends BinaryEvaluator {
+
+        private final BinaryOperation operation;
+
+        CustomBinaryEvaluator(BinaryOperation operation, Evaluator left, Evaluator right) {
+            super(left, right);
+            this.operation = operation;
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return operation.operate(left.evaluate(frame), right.evaluate(frame));
+        }
+    }
+
+    private static abstract class UnaryEvaluator extends Evaluator {
+
+        final Evaluator argument;
+
+        UnaryEvaluator(Evaluator argument) {
+            this.argument = argument;
+        }
+    }
+
+    private static final class FactorialEvaluator extends UnaryEvaluator {
+
+        FactorialEvaluator(Evaluator argument) {
+            super(argument);
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return UnaryOperations.FACTORIAL.operate(argument.evaluate(frame));
+        }
+    }
+
+    private static final class SubtractionEvaluator extends UnaryEvaluator {
+
+        SubtractionEvaluator(Evaluator argument) {
+            super(argument);
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return -argument.evaluate(frame);
+        }
+    }
+
+    private static final class LnEvaluator extends UnaryEvaluator {
+
+        LnEvaluator(Evaluator argument) {
+            super(argument);
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return Math.log(argument.evaluate(frame));
+        }
+    }
+
+    private static final class LgEvaluator extends UnaryEvaluator {
+
+        LgEvaluator(Evaluator argument) {
+            super(argument);
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return Math.log10(argument.evaluate(frame));
+        }
+    }
+
+    private static final class SinEvaluator extends UnaryEvaluator {
+
+        SinEvaluator(Evaluator argument) {
+            super(argument);
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return Math.sin(argument.evaluate(frame));
+        }
+    }
+
+    private static final class CosEvaluator extends UnaryEvaluator {
+
+        CosEvaluator(Evaluator argument) {
+            super(argument);
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return Math.cos(argument.evaluate(frame));
+        }
+    }
+
+    private static final class TanEvaluator extends UnaryEvaluator {
+
+        TanEvaluator(Evaluator argument) {
+            super(argument);
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return Math.tan(argument.evaluate(frame));
+        }
+    }
+
+    private static final class ArcSinEvaluator extends UnaryEvaluator {
+
+        ArcSinEvaluator(Evaluator argument) {
+            super(argument);
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return Math.asin(argument.evaluate(frame));
+        }
+    }
+
+    private static final class ArcCosEvaluator extends UnaryEvaluator {
+
+        ArcCosEvaluator(Evaluator argument) {
+            super(argument);
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return Math.acos(argument.evaluate(frame));
+        }
+    }
+
+    private static final class ArcTanEvaluator extends UnaryEvaluator {
+
+        ArcTanEvaluator(Evaluator argument) {
+            super(argument);
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return Math.atan(argument.evaluate(frame));
+        }
+    }
+
+    private static final class SqrtEvaluator extends UnaryEvaluator {
+
+        SqrtEvaluator(Evaluator argument) {
+            super(argument);
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return Math.sqrt(argument.evaluate(frame));
+        }
+    }
+
+    private static final class CustomUnaryEvaluator extends UnaryEvaluator {
+
+        private final UnaryOperation operation;
+
+        CustomUnaryEvaluator(UnaryOperation operation, Evaluator argument) {
+            super(argument);
+            this.operation = operation;
+        }
+
+        @Override
+        double evaluate(double[] frame) {
+            return operation.operate(argument.evaluate(frame));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package formula.parser.program;
+
+import formula.parser.api.Formula;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implementation of {@link Formula} interface based on {@link FormulaProgram}.
+ * Program is calculated by {@link FormulaFunction} produced by given {@link FormulaEngine}.
+ * Compiled formula is a pair of shareable {@link ImmutableFormula} and own {@link EvaluationContext},
+ * that stores variable values in preallocated frame together with working area of function,
+ * so calculation is done without any allocation.
+ */
+public class CompiledFormula implements Formula {
+
+    private final ImmutableFormula immutableFormula;
+    private final EvaluationContext context;
+
+    /**
+     * Creates formula calculated by {@link FormulaEngines#INTERPRETER}.
+     *
+     * @param program compiled program of formula.
+     */
+    public CompiledFormula(FormulaProgram program) {
+        this(program, FormulaEngines.INTERPRETER);
+    }
+
+    /**
+     * Creates formula calculated by function that given engine produces.
+     *
+     * @param program compiled program of formula.
+     * @param engine engine for program execution.
+     */
+    public CompiledFormula(FormulaProgram program, FormulaEngine engine) {
+        this(new ImmutableFormula(program, engine));
+    }
+
+    /**
+     * Creates formula with own context for given immutable formula.
+     *
+     * @param immutableFormula immutable formula.
+     */
+    public CompiledFormula(ImmutableFormula immutableFormula) {
+        this.immutableFormula = immutableFormula;
+        context = immutableFormula.newContext();
+    }
+
+    /**
+     * Return program of formula.
+     *
+     * @return program of formula.
+     */
+    public FormulaProgram getProgram() {
+        return immutableFormula.getProgram();
+    }
+
+    /**
+     * Return function that formula is calculated by.
+     *
+     * @return function of formula.
+     */
+    public FormulaFunction getFunction() {
+        return immutableFormula.getFunction();
+    }
+
+    @Override
+    public Set<Character> getVariables() {
+        return immutableFormula.getVariables();
+    }
+
+    @Override
+    public char[] getVariableOrder() {
+        return immutableFormula.getVariableOrder();
+    }
+
+    @Override
+    public Formula setVariableValue(char variableName, double variableValue) {
+        context.setVariableValue(variableName, variableValue);
+        return this;
+    }
+
+    @Override
+    public double calculate() {
+        return context.calculate();
+    }
+
+    @Override
+    public double calculate(double[] variableValues) {
+        return context.calculate(variableValues);
+    }
+
+    @Override
+    public void calculate(double[][] variableColumns, double[] results) {
+        context.calculate(variableColumns, results);
+    }
+
+    @Override
+    public Formula compile() {
+        return this;
+    }
+
+    @Override
+    public Formula compile(FormulaEngine engine) {
+        return immutableFormula.getEngine() == engine ? this : new CompiledFormula(getProgram(), engine);
+    }
+
+    @Override
+    public ImmutableFormula toImmutableFormula() {
+        return immutableFormula;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Returned formula is calculated by the same engine.
+     *
+     * @see ImmutableFormula#specialize(Map)
+     */
+    @Override
+    public Formula specialize(Map<Character, Double> variableBindings) {
+        return new CompiledFormula(immutableFormula.specialize(variableBindings));
+    }
+}
@@ -0,0 +1,129 @@
+package formula.parser.program;
+
+import java.util.Arrays;
+
+/**
+ * Mutable state of {@link ImmutableFormula} calculation : values of variables, values of parameterized constants
+ * and working area of formula function, stored together in preallocated frame, and scratch buffers of batch
+ * calculation.
+ * Context is not thread safe and should be used by single thread, while formula could be shared.
+ */
+public final class EvaluationContext {
+
+    private final ImmutableFormula formula;
+    private final FormulaProgram program;
+    private final FormulaFunction function;
+    private final double[] frame;
+    private final boolean[] assignedVariables;
+    private int unassignedVariablesCount;
+    private BatchCalculator batchCalculator;
+
+    /*package*/ EvaluationContext(ImmutableFormula formula) {
+        this.formula = formula;
+        program = formula.getProgram();
+        function = formula.getFunction();
+        frame = new double[function.getFrameSize()];
+        assignedVariables = new boolean[program.variables.length];
+        unassignedVariablesCount = program.variables.length;
+        double[] parameters = formula.getParameters();
+        System.arraycopy(parameters, 0, frame, program.variables.length, parameters.length);
+    }
+
+    /**
+     * Return formula calculated by context.
+     *
+     * @return formula of context.
+     */
+    public ImmutableFormula getFormula() {
+        return formula;
+    }
+
+    /**
+     * Set given variable value for given variable name.
+     *
+     * @param variableName variable name.
+     * @param variableValue variable value.
+     * @return current instance.
+     * @throws IllegalArgumentException in case if variable is absent in formula.
+     */
+    public EvaluationContext setVariableValue(char variableName, double variableValue) {
+        int slot = program.getVariableSlot(variableName);
+        if (slot < 0) {
+            throw new IllegalArgumentException("Variable is absent in formula : " + variableName);
+        }
+
+        frame[slot] = variableValue;
+        if (!assignedVariables[slot]) {
+            assignedVariables[slot] = true;
+            unassignedVariablesCount--;
+        }
+        return this;
+    }
+
+    /**
+     * Calculates value of formula for variable values set to context.
+     *
+     * @return calculated value of formula.
+     * @throws IllegalArgumentException in case if some variable has no value.
+     */
+    public double calculate() {
+        if (unassignedVariablesCount > 0) {
+            throw new IllegalArgumentException(String.format("No mapped value for %s variable", findUnassignedVariable()));
+        }
+        return checkNegativeZero(function.calculate(frame));
+    }
+
+    /**
+     * Sets values of all variables from given array and calculates value of formula.
+     *
+     * @param variableValues values of variables in slot order (see {@link FormulaProgram#getVariables()}).
+     * @return calculated value of formula.
+     * @throws IllegalArgumentException if array contains less values than count of variables.
+     */
+    public double calculate(double[] variableValues) {
+        int variablesCount = assignedVariables.length;
+        if (variableValues.length < variablesCount) {
+            throw new IllegalArgumentException(String.format("Expected %d variable values, but was %d",
+                    variablesCount, variableValues.length));
+        }
+        System.arraycopy(variableValues, 0, frame, 0, variablesCount);
+        if (unassignedVariablesCount > 0) {
+            Arrays.fill(assignedVariables, true);
+            unassignedVariablesCount = 0;
+        }
+        return checkNegativeZero(function.calculate(frame));
+    }
+
+    /**
+     * Calculates value of formula for each row of given variable columns. Values of variables set to context
+     * are not used and not changed.
+     *
+     * @param variableColumns columns of variable values in slot order, each column should contain
+     *                        not less values than size of results array.
+     * @param results array for calculated values, count of calculated rows is defined by it's size.
+     * @throws IllegalArgumentException if count or size of columns is not enough.
+     * @see formula.parser.api.Formula#calculate(double[][], double[])
+     */
+    public void calculate(double[][] variableColumns, double[] results) {
+        if (batchCalculator == null) {
+            batchCalculator = new BatchCalculator(program);
+        }
+        batchCalculator.calculate(variableColumns, results);
+        for (int i = 0; i < results.length; i++) {
+            results[i] = checkNegativeZero(results[i]);
+        }
+    }
+
+    private char findUnassignedVariable() {
+        for (int i = 0; i < assignedVariables.length; i++) {
+            if (!assignedVariables[i]) {
+                return program.variables[i];
+            }
+        }
+        throw new IllegalStateException("All variables are assigned");
+    }
+
+    private double checkNegativeZero(double value) {
+        return value == -0.0 ? 0.0 : value;
+    }
+}
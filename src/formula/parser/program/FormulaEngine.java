@@ -0,0 +1,15 @@
+package formula.parser.program;
+
+/**
+ * General interface of engine that turns {@link FormulaProgram} into executable {@link FormulaFunction}.
+ */
+public interface FormulaEngine {
+
+    /**
+     * Compiles given program into executable function.
+     *
+     * @param program compiled program of formula.
+     * @return function that calculates same value as given program.
+     */
+    public FormulaFunction compile(FormulaProgram program);
+}
@@ -0,0 +1,66 @@
+package formula.parser.program;
+
+/**
+ * Enum of specific {@link FormulaEngine} implementations.
+ */
+public enum FormulaEngines implements FormulaEngine {
+
+    /**
+     * Engine that calculates {@link FormulaProgram} by interpretation of it's instructions.
+     */
+    INTERPRETER() {
+        @Override
+        public FormulaFunction compile(FormulaProgram program) {
+            return program;
+        }
+    },
+
+    /**
+     * Engine that generates hidden JVM class per program, which calculates formula by straight-line
+     * bytecode. Built-in operations are inlined as JVM instructions or direct {@link Math} calls, custom operations
+     * are invoked through final fields of generated class.
+     * In case if program is too large for single JVM method it is calculated by {@link #INTERPRETER}.
+     */
+    BYTECODE() {
+        @Override
+        public FormulaFunction compile(FormulaProgram program) {
+            return BytecodeGenerator.generate(program);
+        }
+    },
+
+    /**
+     * Engine that combines single {@link java.lang.invoke.MethodHandle} per program from handles of operations.
+     *
+     * @see MethodHandleFormulaFunction
+     */
+    METHOD_HANDLE() {
+        @Override
+        public FormulaFunction compile(FormulaProgram program) {
+            return MethodHandleFormulaFunction.generate(program);
+        }
+    },
+
+    /**
+     * Engine that turns program into tree of evaluator objects specialized by node type.
+     *
+     * @see ClosureFormulaFunction
+     */
+    CLOSURE() {
+        @Override
+        public FormulaFunction compile(FormulaProgram program) {
+            return ClosureFormulaFunction.generate(program);
+        }
+    },
+
+    /**
+     * Engine that translates program into three-address register machine program.
+     *
+     * @see RegisterMachineFormulaFunction
+     */
+    REGISTER_MACHINE() {
+        @Override
+        public FormulaFunction compile(FormulaProgram program) {
+            return RegisterMachineFormulaFunction.generate(program);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package formula.parser.program;
+
+/**
+ * General interface of executable formula produced by {@link FormulaEngine} from {@link FormulaProgram}.
+ * Function calculates over frame - double array, which contains variable values in slot order
+ * (see {@link FormulaProgram#getVariables()}) followed by function specific working area.
+ * Implementations should be immutable, so one function could be used by several threads as long as
+ * each thread uses own frame.
+ */
+public interface FormulaFunction {
+
+    /**
+     * Return size of frame required for {@link #calculate(double[])}.
+     *
+     * @return size of frame, not less than count of variables.
+     */
+    public int getFrameSize();
+
+    /**
+     * Calculates value of function over given frame.
+     *
+     * @param frame array with size not less than {@link #getFrameSize()}, that contains variable values
+     *              in slot order.
+     * @return calculated value.
+     */
+    public double calculate(double[] frame);
+}
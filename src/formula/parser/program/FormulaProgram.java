@@ -0,0 +1,450 @@
+package formula.parser.program;
+
+import formula.parser.operation.BinaryOperation;
+import formula.parser.operation.UnaryOperation;
+import formula.parser.operation.UnaryOperations;
+import formula.parser.tree.FormulaExpression;
+import formula.parser.tree.FormulaExpressions;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import static formula.parser.program.Opcodes.*;
+
+/**
+ * <H1>General</H1>
+ * Compiled presentation of formula as a flat program in postfix (reverse polish) notation.
+ * Program is produced once from {@link formula.parser.tree.FormulaTree} and consists of :
+ *
+ * <p> - instructions - int array, where each instruction contains opcode and it's operand;
+ *
+ * <p> - constant pool - double array of digit literals used in formula;
+ *
+ * <p> - custom operations pools - arrays of {@link UnaryOperation} and {@link BinaryOperation} that are not
+ *       built-in {@link UnaryOperations} or {@link formula.parser.operation.BinaryOperations};
+ *
+ * <p> - variable slots - sorted array of variable names, where index of variable is it's slot;
+ *
+ * <p> - parameter slots - values of constants, which are not known for program and are loaded as variables
+ *       placed after named variables (see {@link #getParameterCount()});
+ *
+ * <p> - temporary slots - values of common subexpressions, that are calculated once and loaded by each usage.
+ *
+ * <H1>Calculation</H1>
+ * Program calculates over single double array - frame, which contains variable values in slot order,
+ * followed by parameter slots, temporary slots and operand stack. Size of frame returned by {@link #getFrameSize()}.
+ * Calculation is a single loop over instructions without recursion and allocation. Program is immutable, so it could be shared between
+ * threads as long as each thread uses own frame. Program could be turned into other {@link FormulaFunction}
+ * implementations by {@link FormulaEngine}.
+ *
+ * <H1>Batch calculation</H1>
+ * Program could calculate formula for many rows of variable values at once (see {@link #calculate(double[][], double[])}).
+ * In this case each instruction is applied to whole chunk of column by column kernel, so dispatch of instruction
+ * happens once per chunk and simple arithmetic kernels are compiled by JIT to SIMD instructions.
+ * To calculate batches repeatedly without allocation use own {@link BatchCalculator} per thread.
+ *
+ * <H1>Example</H1>
+ *  As example, for formula "( x - 2 ) * y + sin(x - 2)" result program will be next :
+ *  <br> LOAD_VARIABLE 0
+ *  <br> PUSH_CONSTANT 0
+ *  <br> ADDITION
+ *  <br> STORE_TEMPORARY 0
+ *  <br> LOAD_VARIABLE 1
+ *  <br> MULTIPLY
+ *  <br> LOAD_TEMPORARY 0
+ *  <br> SIN
+ *  <br> ADDITION
+ *
+ *  where constant 0 is -2 ("x - 2" is turned into "x + -2" during parsing).
+ *
+ * @see FormulaProgramBuilder
+ * @see FormulaEngines
+ */
+public final class FormulaProgram implements FormulaFunction {
+
+    /*package*/ final int[] instructions;
+    /*package*/ final double[] constants;
+    /*package*/ final UnaryOperation[] unaryOperations;
+    /*package*/ final BinaryOperation[] binaryOperations;
+    /*package*/ final char[] variables;
+    /*package*/ final int parameterCount;
+    /*package*/ final int temporaryCount;
+    /*package*/ final int stackSize;
+
+    /*package*/ FormulaProgram(int[] instructions, double[] constants, UnaryOperation[] unaryOperations,
+                               BinaryOperation[] binaryOperations, char[] variables, int temporaryCount,
+                               int stackSize) {
+        this(instructions, constants, unaryOperations, binaryOperations, variables, 0, temporaryCount, stackSize);
+    }
+
+    private FormulaProgram(int[] instructions, double[] constants, UnaryOperation[] unaryOperations,
+                           BinaryOperation[] binaryOperations, char[] variables, int parameterCount,
+                           int temporaryCount, int stackSize) {
+        this.instructions = instructions;
+        this.constants = constants;
+        this.unaryOperations = unaryOperations;
+        this.binaryOperations = binaryOperations;
+        this.variables = variables;
+        this.parameterCount = parameterCount;
+        this.temporaryCount = temporaryCount;
+        this.stackSize = stackSize;
+    }
+
+    /**
+     * Return names of variables in slot order.
+     *
+     * @return copy of variable names array, where index of variable is it's slot.
+     */
+    public char[] getVariables() {
+        return variables.clone();
+    }
+
+    /**
+     * Return program with the same instructions over variables with given names. Names should be sorted,
+     * so each variable keeps it's slot.
+     */
+    /*package*/ FormulaProgram withVariables(char[] variables) {
+        return new FormulaProgram(instructions, constants, unaryOperations, binaryOperations, variables,
+                parameterCount, temporaryCount, stackSize);
+    }
+
+    /**
+     * Return program, where given variables are turned into constants with given values. Constant of variable
+     * with index 'i' in given array gets index 'i' in constant pool, so constants of variables are placed before
+     * constants of current program and could be replaced by {@link #withLeadingConstants(double[])}. Remaining
+     * variables keep their order.
+     *
+     * @param variableNames names of variables turned into constants.
+     * @param values        values of constants.
+     * @return program over remaining variables.
+     * @throws IllegalArgumentException in case if count of values differs from count of variable names.
+     */
+    public FormulaProgram bindConstants(char[] variableNames, double[] values) {
+        if (variableNames.length != values.length) {
+            throw new IllegalArgumentException("Count of values " + values.length +
+                    " differs from count of variables " + variableNames.length);
+        }
+        Map<Character, Integer> boundConstants = new HashMap<Character, Integer>();
+        for (int i = 0; i < variableNames.length; i++) {
+            boundConstants.put(variableNames[i], i);
+        }
+
+        // instruction, that loads value of variable by it's old slot
+        int[] loadInstructions = new int[variables.length];
+        char[] remainingVariables = new char[variables.length];
+        int remainingCount = 0;
+        for (int slot = 0; slot < variables.length; slot++) {
+            Integer constant = boundConstants.get(variables[slot]);
+            if (constant != null) {
+                loadInstructions[slot] = encode(PUSH_CONSTANT, constant);
+            } else {
+                loadInstructions[slot] = encode(LOAD_VARIABLE, remainingCount);
+                remainingVariables[remainingCount++] = variables[slot];
+            }
+        }
+
+        int[] boundInstructions = new int[instructions.length];
+        for (int i = 0; i < instructions.length; i++) {
+            int opcode = opcode(instructions[i]);
+            if (opcode == LOAD_VARIABLE && operand(instructions[i]) >= variables.length) {
+                // parameter slot is moved together with variables
+                boundInstructions[i] = encode(LOAD_VARIABLE, operand(instructions[i]) - variables.length +
+                        remainingCount);
+            } else if (opcode == LOAD_VARIABLE) {
+                boundInstructions[i] = loadInstructions[operand(instructions[i])];
+            } else if (opcode == PUSH_CONSTANT) {
+                boundInstructions[i] = encode(PUSH_CONSTANT, operand(instructions[i]) + values.length);
+            } else {
+                boundInstructions[i] = instructions[i];
+            }
+        }
+
+        double[] boundConstantPool = new double[values.length + constants.length];
+        System.arraycopy(values, 0, boundConstantPool, 0, values.length);
+        System.arraycopy(constants, 0, boundConstantPool, values.length, constants.length);
+        return new FormulaProgram(boundInstructions, boundConstantPool, unaryOperations, binaryOperations,
+                Arrays.copyOf(remainingVariables, remainingCount), parameterCount, temporaryCount, stackSize);
+    }
+
+    /**
+     * Return program with the same instructions, where first constants of constant pool are replaced by given
+     * values. Arrays of instructions and operations are shared with current program.
+     *
+     * @param leadingConstants new values of first constants.
+     * @return program with replaced constants.
+     * @throws IllegalArgumentException in case if count of values is greater than size of constant pool.
+     */
+    public FormulaProgram withLeadingConstants(double[] leadingConstants) {
+        if (leadingConstants.length > constants.length) {
+            throw new IllegalArgumentException("Count of values " + leadingConstants.length +
+                    " is greater than count of constants " + constants.length);
+        }
+        double[] replacedConstants = constants.clone();
+        System.arraycopy(leadingConstants, 0, replacedConstants, 0, leadingConstants.length);
+        return new FormulaProgram(instructions, replacedConstants, unaryOperations, binaryOperations, variables,
+                parameterCount, temporaryCount, stackSize);
+    }
+
+    /*
+     * Return program, where first constants are loaded from parameter slots placed in frame after variables
+     * and current parameters, so it calculates any program returned by withLeadingConstants with given count
+     * of values. Variables are not changed.
+     */
+    /*package*/ FormulaProgram withParameterizedConstants(int parametersCount) {
+        int parameterOffset = variables.length + parameterCount;
+        int[] parameterizedInstructions = new int[instructions.length];
+        for (int i = 0; i < instructions.length; i++) {
+            if (opcode(instructions[i]) != PUSH_CONSTANT) {
+                parameterizedInstructions[i] = instructions[i];
+            } else if (operand(instructions[i]) < parametersCount) {
+                parameterizedInstructions[i] = encode(LOAD_VARIABLE, parameterOffset + operand(instructions[i]));
+            } else {
+                parameterizedInstructions[i] = encode(PUSH_CONSTANT, operand(instructions[i]) - parametersCount);
+            }
+        }
+        return new FormulaProgram(parameterizedInstructions,
+                Arrays.copyOfRange(constants, parametersCount, constants.length), unaryOperations, binaryOperations,
+                variables, parameterCount + parametersCount, temporaryCount, stackSize);
+    }
+
+    /**
+     * Return count of parameter slots, which are placed in frame after variables. Parameters are constants
+     * of program, which values are set to frame by caller, for example by {@link EvaluationContext}.
+     *
+     * @return count of parameters.
+     */
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
+    /**
+     * Return count of instructions of program.
+     *
+     * @return length of program.
+     */
+    public int getLength() {
+        return instructions.length;
+    }
+
+    /**
+     * Return slot of given variable.
+     *
+     * @param variableName name of variable.
+     * @return slot of variable or negative value in case if variable is absent in program.
+     */
+    public int getVariableSlot(char variableName) {
+        return Arrays.binarySearch(variables, variableName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getFrameSize() {
+        return variables.length + parameterCount + temporaryCount + stackSize;
+    }
+
+    /**
+     * Calculates program over given frame. First elements of frame should contain variable values in slot order
+     * followed by parameter values, remaining elements used as temporary slots and operand stack, so their values
+     * are overwritten.
+     *
+     * @param frame array with size not less than {@link #getFrameSize()}.
+     * @return calculated value of program.
+     */
+    @Override
+    public double calculate(double[] frame) {
+        int temporaryOffset = variables.length + parameterCount;
+        int top = temporaryOffset + temporaryCount - 1;
+        for (int instruction : instructions) {
+            switch (instruction & OPCODE_MASK) {
+                case PUSH_CONSTANT:
+                    frame[++top] = constants[instruction >>> OPCODE_BITS];
+                    break;
+
+                case LOAD_VARIABLE:
+                    frame[++top] = frame[instruction >>> OPCODE_BITS];
+                    break;
+
+                case STORE_TEMPORARY:
+                    frame[temporaryOffset + (instruction >>> OPCODE_BITS)] = frame[top];
+                    break;
+
+                case LOAD_TEMPORARY:
+                    frame[++top] = frame[temporaryOffset + (instruction >>> OPCODE_BITS)];
+                    break;
+
+                case ADDITION:
+                    top--;
+                    frame[top] = frame[top] + frame[top + 1];
+                    break;
+
+                case DIVISION:
+                    top--;
+                    frame[top] = frame[top] / frame[top + 1];
+                    break;
+
+                case MULTIPLY:
+                    top--;
+                    frame[top] = frame[top] * frame[top + 1];
+                    break;
+
+                case POWER:
+                    top--;
+                    frame[top] = Math.pow(frame[top], frame[top + 1]);
+                    break;
+
+                case CUSTOM_BINARY:
+                    top--;
+                    frame[top] = binaryOperations[instruction >>> OPCODE_BITS].operate(frame[top], frame[top + 1]);
+                    break;
+
+                case FACTORIAL:
+                    frame[top] = UnaryOperations.FACTORIAL.operate(frame[top]);
+                    break;
+
+                case SUBTRACTION:
+                    frame[top] = -frame[top];
+                    break;
+
+                case LN:
+                    frame[top] = Math.log(frame[top]);
+                    break;
+
+                case LG:
+                    frame[top] = Math.log10(frame[top]);
+                    break;
+
+                case SIN:
+                    frame[top] = Math.sin(frame[top]);
+                    break;
+
+                case COS:
+                    frame[top] = Math.cos(frame[top]);
+                    break;
+
+                case TAN:
+                    frame[top] = Math.tan(frame[top]);
+                    break;
+
+                case ARC_SIN:
+                    frame[top] = Math.asin(frame[top]);
+                    break;
+
+                case ARC_COS:
+                    frame[top] = Math.acos(frame[top]);
+                    break;
+
+                case ARC_TAN:
+                    frame[top] = Math.atan(frame[top]);
+                    break;
+
+                case SQRT:
+                    frame[top] = Math.sqrt(frame[top]);
+                    break;
+
+                case CUSTOM_UNARY:
+                    frame[top] = unaryOperations[instruction >>> OPCODE_BITS].operate(frame[top]);
+                    break;
+
+                default:
+                    throw new IllegalStateException("Unknown instruction : " + instruction);
+            }
+        }
+        return frame[top];
+    }
+
+    /**
+     * Calculates program for each row of given variable columns. Value of variable with slot 'i' in row 'j'
+     * should be placed to variableColumns[i][j]. Scratch buffers are allocated by each call,
+     * use {@link BatchCalculator} to reuse them.
+     *
+     * @param variableColumns columns of variable values in slot order, each column should contain
+     *                        not less values than size of results array.
+     * @param results array for calculated values, count of calculated rows is defined by it's size.
+     * @throws IllegalArgumentException in case if count or size of columns is not enough.
+     * @throws IllegalStateException in case if program has parameters.
+     */
+    public void calculate(double[][] variableColumns, double[] results) {
+        new BatchCalculator(this, Math.max(1, Math.min(results.length, BatchCalculator.CHUNK_SIZE)))
+                .calculate(variableColumns, results);
+    }
+
+    /**
+     * Return program as expression tree, for example to build {@link formula.parser.tree.FormulaTree} from
+     * compiled program. Value stored to temporary slot is the same expression object for each it's load,
+     * so common subexpressions stay shared.
+     *
+     * @return root expression of program.
+     * @throws IllegalStateException in case if program has parameters, which values are unknown.
+     */
+    public FormulaExpression toExpression() {
+        checkNoParameters();
+        FormulaExpression[] temporaries = new FormulaExpression[temporaryCount];
+        Deque<FormulaExpression> expressions = new ArrayDeque<FormulaExpression>(stackSize);
+        for (int instruction : instructions) {
+            int operand = operand(instruction);
+            int opcode = opcode(instruction);
+
+            if (opcode == PUSH_CONSTANT) {
+                expressions.push(FormulaExpressions.newDigitExpression(constants[operand]));
+            } else if (opcode == LOAD_VARIABLE) {
+                expressions.push(FormulaExpressions.newVariableExpression(variables[operand]));
+            } else if (opcode == STORE_TEMPORARY) {
+                temporaries[operand] = expressions.peek();
+            } else if (opcode == LOAD_TEMPORARY) {
+                expressions.push(temporaries[operand]);
+            } else if (isBinary(opcode)) {
+                FormulaExpression rightExpression = expressions.pop();
+                FormulaExpression leftExpression = expressions.pop();
+                BinaryOperation operation = opcode == CUSTOM_BINARY ? binaryOperations[operand] : toBinaryOperation(opcode);
+                expressions.push(FormulaExpressions.newOperationExpression(operation, leftExpression, rightExpression));
+            } else if (isUnary(opcode)) {
+                UnaryOperation operation = opcode == CUSTOM_UNARY ? unaryOperations[operand] : toUnaryOperation(opcode);
+                expressions.push(FormulaExpressions.newOperationExpression(operation, expressions.pop()));
+            } else {
+                throw new IllegalStateException("Unknown instruction : " + instruction);
+            }
+        }
+        return expressions.pop();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int instruction : instructions) {
+            int opcode = opcode(instruction);
+            stringBuilder.append(name(opcode));
+            if (opcode == PUSH_CONSTANT || opcode == LOAD_VARIABLE || opcode == STORE_TEMPORARY ||
+                    opcode == LOAD_TEMPORARY) {
+                stringBuilder.append(' ').append(operand(instruction));
+            }
+            stringBuilder.append('\n');
+        }
+        return stringBuilder.toString();
+    }
+
+    /*package*/ void checkColumns(double[][] variableColumns, int count) {
+        checkNoParameters();
+        if (variableColumns.length < variables.length) {
+            throw new IllegalArgumentException(String.format("Expected %d variable columns, but was %d",
+                    variables.length, variableColumns.length));
+        }
+
+        for (int i = 0; i < variables.length; i++) {
+            if (variableColumns[i].length < count) {
+                throw new IllegalArgumentException(String.format("Column of %s variable contains less than %d values",
+                        variables[i], count));
+            }
+        }
+    }
+
+    private void checkNoParameters() {
+        if (parameterCount > 0) {
+            throw new IllegalStateException("Values of " + parameterCount + " parameters are unknown for program");
+        }
+    }
+}
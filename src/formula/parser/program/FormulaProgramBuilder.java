@@ -0,0 +1,193 @@
+package formula.parser.program;
+
+import formula.parser.operation.BinaryOperation;
+import formula.parser.operation.Operation;
+import formula.parser.operation.UnaryOperation;
+import formula.parser.tree.FormulaItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static formula.parser.program.Opcodes.*;
+
+/**
+ * Builder of {@link FormulaProgram}. Items should be added in postfix order : arguments of operation first and
+ * than operation itself.
+ * Example : x * (y + 2) ---> x, y, 2, +, *
+ * Value of subexpression used several times could be stored to temporary slot right after it's items
+ * and loaded instead of the next copies of subexpression.
+ */
+public class FormulaProgramBuilder {
+
+    private final char[] variables;
+    private final List<Integer> instructions;
+    private final List<Double> constants;
+    private final List<UnaryOperation> unaryOperations;
+    private final List<BinaryOperation> binaryOperations;
+    private int temporaryCount;
+    private int stackDepth;
+    private int maxStackDepth;
+
+    /**
+     * Creates builder for program over given variables.
+     *
+     * @param variables variables that program could contain.
+     */
+    public FormulaProgramBuilder(Set<Character> variables) {
+        this.variables = sortedVariables(variables);
+        instructions = new ArrayList<Integer>();
+        constants = new ArrayList<Double>();
+        unaryOperations = new ArrayList<UnaryOperation>();
+        binaryOperations = new ArrayList<BinaryOperation>();
+    }
+
+    private static char[] sortedVariables(Set<Character> variables) {
+        char[] sortedVariables = new char[variables.size()];
+        int i = 0;
+        for (Character variable : variables) {
+            sortedVariables[i++] = variable;
+        }
+        Arrays.sort(sortedVariables);
+        return sortedVariables;
+    }
+
+    /**
+     * Add next item of formula in postfix order.
+     *
+     * @param item item of type {@link FormulaItem.Type#DIGIT}, {@link FormulaItem.Type#VARIABLE}
+     *             or {@link FormulaItem.Type#OPERATION}.
+     * @return current instance.
+     * @throws IllegalArgumentException in case if item is bracket or variable is unknown.
+     */
+    public FormulaProgramBuilder addItem(FormulaItem item) {
+        switch (item.getType()) {
+            case DIGIT:
+                return addDigit(item.getDigitLiteralValue());
+
+            case VARIABLE:
+                return addVariable(item.getVariableName());
+
+            case OPERATION:
+                return addOperation(item.getOperation());
+
+            default:
+                throw new IllegalArgumentException("Unsupported item for program : " + item);
+        }
+    }
+
+    /**
+     * Stores value on top of stack (value of last added subexpression) to new temporary slot, so it could be
+     * reused by {@link #loadTemporary(int)} without recalculation.
+     *
+     * @return index of temporary slot.
+     * @throws IllegalStateException in case if no value added yet.
+     */
+    public int storeTemporary() {
+        addInstruction(STORE_TEMPORARY, temporaryCount, 1, 1);
+        return temporaryCount++;
+    }
+
+    /**
+     * Adds value of temporary slot, stored by {@link #storeTemporary()}.
+     *
+     * @param temporary index of temporary slot.
+     * @return current instance.
+     * @throws IllegalArgumentException in case if temporary slot is not stored yet.
+     */
+    public FormulaProgramBuilder loadTemporary(int temporary) {
+        if (temporary < 0 || temporary >= temporaryCount) {
+            throw new IllegalArgumentException("Temporary slot is not stored : " + temporary);
+        }
+        addInstruction(LOAD_TEMPORARY, temporary, 0, 1);
+        return this;
+    }
+
+    private FormulaProgramBuilder addDigit(double value) {
+        constants.add(value);
+        addInstruction(PUSH_CONSTANT, constants.size() - 1, 0, 1);
+        return this;
+    }
+
+    private FormulaProgramBuilder addVariable(char variableName) {
+        int slot = Arrays.binarySearch(variables, variableName);
+        if (slot < 0) {
+            throw new IllegalArgumentException("Variable is absent in formula : " + variableName);
+        }
+        addInstruction(LOAD_VARIABLE, slot, 0, 1);
+        return this;
+    }
+
+    private FormulaProgramBuilder addOperation(Operation operation) {
+        switch (operation.getType()) {
+            case BINARY:
+                addBinaryOperation((BinaryOperation) operation);
+                break;
+
+            case UNARY:
+                addUnaryOperation((UnaryOperation) operation);
+                break;
+        }
+        return this;
+    }
+
+    private void addBinaryOperation(BinaryOperation operation) {
+        int opcode = forBinaryOperation(operation);
+        int operand = 0;
+        if (opcode == CUSTOM_BINARY) {
+            binaryOperations.add(operation);
+            operand = binaryOperations.size() - 1;
+        }
+        addInstruction(opcode, operand, 2, 1);
+    }
+
+    private void addUnaryOperation(UnaryOperation operation) {
+        int opcode = forUnaryOperation(operation);
+        int operand = 0;
+        if (opcode == CUSTOM_UNARY) {
+            unaryOperations.add(operation);
+            operand = unaryOperations.size() - 1;
+        }
+        addInstruction(opcode, operand, 1, 1);
+    }
+
+    private void addInstruction(int opcode, int operand, int popCount, int pushCount) {
+        if (stackDepth < popCount) {
+            throw new IllegalStateException("Not enough arguments for instruction with opcode : " + opcode);
+        }
+        instructions.add(encode(opcode, operand));
+        stackDepth += pushCount - popCount;
+        maxStackDepth = Math.max(maxStackDepth, stackDepth);
+    }
+
+    /**
+     * Builds program from added items.
+     *
+     * @return built program.
+     * @throws IllegalStateException in case if added items do not represent complete formula.
+     */
+    public FormulaProgram build() {
+        if (stackDepth != 1) {
+            throw new IllegalStateException("Program should produce exactly one value, but produces : " + stackDepth);
+        }
+
+        int[] instructionArray = new int[instructions.size()];
+        for (int i = 0; i < instructionArray.length; i++) {
+            instructionArray[i] = instructions.get(i);
+        }
+
+        double[] constantArray = new double[constants.size()];
+        for (int i = 0; i < constantArray.length; i++) {
+            constantArray[i] = constants.get(i);
+        }
+
+        return new FormulaProgram(  instructionArray,
+                                    constantArray,
+                                    unaryOperations.toArray(new UnaryOperation[unaryOperations.size()]),
+                                    binaryOperations.toArray(new BinaryOperation[binaryOperations.size()]),
+                                    variables,
+                                    temporaryCount,
+                                    maxStackDepth);
+    }
+}
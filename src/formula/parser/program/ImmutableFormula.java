@@ -0,0 +1,245 @@
+package formula.parser.program;
+
+import formula.parser.tree.FormulaExpression;
+import formula.parser.tree.FormulaExpressions;
+import formula.parser.tree.FormulaTree;
+import formula.parser.tree.SimplificationRule;
+import formula.parser.tree.SimplificationRules;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <H1>General</H1>
+ * Immutable compiled formula. Contains {@link FormulaProgram} and {@link FormulaFunction} produced by
+ * {@link FormulaEngine}, but not values of variables : values are bound by {@link EvaluationContext},
+ * so single instance of formula could be calculated concurrently by any count of threads without locking.
+ *
+ * <H1>Usage</H1>
+ * Each thread creates own context once by {@link #newContext()} and reuses it for calculations,
+ * so calculation is done without allocation :
+ * <br> EvaluationContext context = formula.newContext();
+ * <br> double result = context.setVariableValue('x', 1).calculate();
+ *
+ * <H1>Specialization</H1>
+ * Formula could be specialized for fixed values of some variables by {@link #specialize(Map)}, for example
+ * once per customer, and specialized formula is shared by all threads in the same way.
+ *
+ * <H1>Parameterized constants</H1>
+ * Formula created by {@link #ImmutableFormula(FormulaProgram, FormulaEngine, int)} has function, which reads
+ * first constants of program from frame, and formulas returned by {@link #withLeadingConstants(double[])} share
+ * this function, so it's compiled once for any values of these constants.
+ */
+public final class ImmutableFormula {
+
+    private static final double[] NO_PARAMETERS = new double[0];
+
+    private final FormulaProgram program;
+    private final FormulaEngine engine;
+    private final FormulaFunction function;
+    private final double[] parameters;
+    private final Set<Character> variables;
+
+    /**
+     * Creates formula calculated by {@link FormulaEngines#INTERPRETER}.
+     *
+     * @param program compiled program of formula.
+     */
+    public ImmutableFormula(FormulaProgram program) {
+        this(program, FormulaEngines.INTERPRETER);
+    }
+
+    /**
+     * Creates formula calculated by function that given engine produces.
+     *
+     * @param program compiled program of formula.
+     * @param engine engine for program execution.
+     */
+    public ImmutableFormula(FormulaProgram program, FormulaEngine engine) {
+        this(program, engine, engine.compile(program), NO_PARAMETERS);
+    }
+
+    /**
+     * Creates formula calculated by function that given engine produces, where given count of first constants
+     * of program is read from frame after variables. Function is shared by formulas returned by
+     * {@link #withLeadingConstants(double[])} with not more values, so engine compiles it once.
+     *
+     * @param program compiled program of formula.
+     * @param engine engine for program execution.
+     * @param parametersCount count of first constants, which are read from frame.
+     * @throws IllegalArgumentException in case if count is negative or greater than size of constant pool.
+     */
+    public ImmutableFormula(FormulaProgram program, FormulaEngine engine, int parametersCount) {
+        this(program, engine, engine.compile(program.withParameterizedConstants(checkParametersCount(program,
+                parametersCount))), Arrays.copyOf(program.constants, parametersCount));
+    }
+
+    private ImmutableFormula(FormulaProgram program, FormulaEngine engine, FormulaFunction function,
+                             double[] parameters) {
+        this.program = program;
+        this.engine = engine;
+        this.function = function;
+        this.parameters = parameters;
+        variables = createVariableSet(program.variables);
+    }
+
+    private static int checkParametersCount(FormulaProgram program, int parametersCount) {
+        if (parametersCount < 0 || parametersCount > program.constants.length) {
+            throw new IllegalArgumentException("Count of parameters " + parametersCount +
+                    " is out of constant pool of size " + program.constants.length);
+        }
+        return parametersCount;
+    }
+
+    private static Set<Character> createVariableSet(char[] variables) {
+        Set<Character> variableSet = new HashSet<Character>(variables.length);
+        for (char variable : variables) {
+            variableSet.add(variable);
+        }
+        return Collections.unmodifiableSet(variableSet);
+    }
+
+    /**
+     * Return program of formula.
+     *
+     * @return program of formula.
+     */
+    public FormulaProgram getProgram() {
+        return program;
+    }
+
+    /**
+     * Return engine, that produced function of formula.
+     *
+     * @return engine of formula.
+     */
+    public FormulaEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Return function that formula is calculated by. In case if formula has parameterized constants, function
+     * expects their values in frame after variables, which {@link EvaluationContext} fills.
+     *
+     * @return function of formula.
+     */
+    public FormulaFunction getFunction() {
+        return function;
+    }
+
+    /*
+     * Return values of parameterized constants, which are placed in frame after variables. Array is not copied.
+     */
+    /*package*/ double[] getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Return unmodifiable {@link Set} of variables present in formula.
+     *
+     * @return {@link Set} of variables.
+     */
+    public Set<Character> getVariables() {
+        return variables;
+    }
+
+    /**
+     * Return variables of formula in slot order.
+     *
+     * @return copy of variable names array, where index of variable is it's slot.
+     * @see formula.parser.api.Formula#getVariableOrder()
+     */
+    public char[] getVariableOrder() {
+        return program.getVariables();
+    }
+
+    /**
+     * Return formula over variables with given names, that shares function of current formula. Function reads
+     * variables by slots, so it's not compiled again. Given names should be sorted, so each variable keeps it's
+     * slot, for example formula "a * b + 1" renamed to 'x' and 'y' is calculated as "x * y + 1".
+     *
+     * @param variableNames new names of variables in slot order.
+     * @return current formula in case if names are the same or new formula with given names.
+     * @throws IllegalArgumentException in case if count of names differs from count of variables
+     *                                  or names are not strictly ascending.
+     */
+    public ImmutableFormula withVariableNames(char[] variableNames) {
+        if (variableNames.length != program.variables.length) {
+            throw new IllegalArgumentException("Count of variable names " + variableNames.length +
+                    " differs from count of variables " + program.variables.length);
+        }
+        for (int slot = 1; slot < variableNames.length; slot++) {
+            if (variableNames[slot - 1] >= variableNames[slot]) {
+                throw new IllegalArgumentException("Variable names are not strictly ascending : " +
+                        Arrays.toString(variableNames));
+            }
+        }
+        if (Arrays.equals(variableNames, program.variables)) {
+            return this;
+        }
+        return new ImmutableFormula(program.withVariables(variableNames.clone()), engine, function, parameters);
+    }
+
+    /**
+     * Return formula, which program differs only by first constants of constant pool, calculated by the same
+     * engine. Program shares instructions with program of current formula. In case if given constants are
+     * parameterized, function is shared too, otherwise it's produced by engine again, which is free for
+     * {@link FormulaEngines#INTERPRETER}.
+     *
+     * @param leadingConstants new values of first constants.
+     * @return current formula in case if constants are the same or new formula with given constants.
+     * @throws IllegalArgumentException in case if count of values is greater than size of constant pool.
+     * @see FormulaProgram#withLeadingConstants(double[])
+     */
+    public ImmutableFormula withLeadingConstants(double[] leadingConstants) {
+        if (leadingConstants.length <= program.constants.length &&
+                Arrays.equals(leadingConstants, Arrays.copyOf(program.constants, leadingConstants.length))) {
+            return this;
+        }
+        FormulaProgram replacedProgram = program.withLeadingConstants(leadingConstants);
+        if (leadingConstants.length > parameters.length) {
+            return new ImmutableFormula(replacedProgram, engine);
+        }
+        double[] replacedParameters = parameters.clone();
+        System.arraycopy(leadingConstants, 0, replacedParameters, 0, leadingConstants.length);
+        return new ImmutableFormula(replacedProgram, engine, function, replacedParameters);
+    }
+
+    /**
+     * Creates new context for calculation of formula. Context is not thread safe, so each thread should
+     * use own context.
+     *
+     * @return new context without variable values.
+     */
+    public EvaluationContext newContext() {
+        return new EvaluationContext(this);
+    }
+
+    /**
+     * Substitutes given values of variables into program and returns new formula over remaining variables,
+     * calculated by the same engine. Program is turned back into {@link FormulaTree}, so subexpressions,
+     * which depend only on bound variables, are folded. Rules, which were used for parsing, are unknown for
+     * program, so only {@link SimplificationRules} are applied in strict IEEE mode, which keeps result for
+     * all values.
+     *
+     * @param variableBindings values of bound variables by names.
+     * @return specialized formula without bound variables.
+     * @throws IllegalArgumentException in case if bound variable is absent in formula.
+     */
+    public ImmutableFormula specialize(Map<Character, Double> variableBindings) {
+        for (Character variable : variableBindings.keySet()) {
+            if (!variables.contains(variable)) {
+                throw new IllegalArgumentException("Variable is absent in formula : " + variable);
+            }
+        }
+        FormulaExpression expression = FormulaExpressions.bindVariables(program.toExpression(), variableBindings);
+        Set<Character> remainingVariables = new HashSet<Character>(variables);
+        remainingVariables.removeAll(variableBindings.keySet());
+        FormulaTree tree = new FormulaTree(expression, remainingVariables,
+                Arrays.<SimplificationRule>asList(SimplificationRules.values()), true);
+        return tree.compile(engine).toImmutableFormula();
+    }
+}
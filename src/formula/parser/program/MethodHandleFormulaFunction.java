@@ -0,0 +1,160 @@
+package formula.parser.program;
+
+import formula.parser.operation.BinaryOperation;
+import formula.parser.operation.UnaryOperation;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static formula.parser.program.Opcodes.*;
+
+/**
+ * Implementation of {@link FormulaFunction} as a single {@link MethodHandle} of type (double[])double,
+ * that combined from {@link UnaryOperation#operate(double)} and {@link BinaryOperation#operate(double, double)}
+ * handles bound to operations of program. Each program instruction is turned into a handle next way :
+ *
+ * <p> - constant - {@link MethodHandles#constant} with dropped frame argument;
+ *
+ * <p> - variable - {@link MethodHandles#arrayElementGetter} with inserted slot index;
+ *
+ * <p> - unary operation - operation handle applied to argument handle by {@link MethodHandles#filterReturnValue};
+ *
+ * <p> - binary operation - operation handle with right argument filtered by {@link MethodHandles#filterArguments}
+ *       and left argument calculated first by {@link MethodHandles#foldArguments}, so arguments are calculated
+ *       in the same order as program does;
+ *
+ * <p> - temporary slot - handle of stored subexpression writes it's value to temporary slot of frame and each load
+ *       reads it by {@link MethodHandles#arrayElementGetter}, so common subexpression is calculated once.
+ *
+ * In case if handle held in static final field or constant call site JIT could inline whole formula into
+ * call site. No classes are generated, so functions could be created for big count of short-lived formulas.
+ *
+ * @see #getMethodHandle()
+ */
+public final class MethodHandleFormulaFunction implements FormulaFunction {
+
+    private static final MethodType FUNCTION_TYPE = MethodType.methodType(double.class, double[].class);
+    private static final MethodHandle UNARY_OPERATE;
+    private static final MethodHandle BINARY_OPERATE;
+    private static final MethodHandle STORE_TEMPORARY_VALUE;
+    private static final MethodHandle FRAME_ELEMENT_GETTER = MethodHandles.arrayElementGetter(double[].class);
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        try {
+            UNARY_OPERATE = lookup.findVirtual(UnaryOperation.class, "operate",
+                    MethodType.methodType(double.class, double.class));
+            BINARY_OPERATE = lookup.findVirtual(BinaryOperation.class, "operate",
+                    MethodType.methodType(double.class, double.class, double.class));
+            STORE_TEMPORARY_VALUE = MethodHandles.lookup().findStatic(MethodHandleFormulaFunction.class,
+                    "storeTemporaryValue", MethodType.methodType(double.class, double[].class, int.class, double.class));
+        } catch (ReflectiveOperationException exception) {
+            throw new ExceptionInInitializerError(exception);
+        }
+    }
+
+    /**
+     * Creates function for given program.
+     *
+     * @param program compiled program of formula.
+     * @return function calculated by combined method handle.
+     */
+    static MethodHandleFormulaFunction generate(FormulaProgram program) {
+        int temporaryOffset = program.variables.length + program.parameterCount;
+        Deque<MethodHandle> handles = new ArrayDeque<MethodHandle>(program.stackSize);
+        for (int instruction : program.instructions) {
+            int opcode = opcode(instruction);
+            int operand = operand(instruction);
+
+            if (opcode == PUSH_CONSTANT) {
+                handles.push(constantHandle(program.constants[operand]));
+            } else if (opcode == LOAD_VARIABLE) {
+                handles.push(MethodHandles.insertArguments(FRAME_ELEMENT_GETTER, 1, operand));
+            } else if (opcode == STORE_TEMPORARY) {
+                handles.push(storeTemporaryHandle(handles.pop(), temporaryOffset + operand));
+            } else if (opcode == LOAD_TEMPORARY) {
+                handles.push(MethodHandles.insertArguments(FRAME_ELEMENT_GETTER, 1, temporaryOffset + operand));
+            } else if (isBinary(opcode)) {
+                BinaryOperation operation = opcode == CUSTOM_BINARY ?
+                                            program.binaryOperations[operand] : toBinaryOperation(opcode);
+                MethodHandle rightArgument = handles.pop();
+                MethodHandle leftArgument = handles.pop();
+                handles.push(binaryOperationHandle(operation, leftArgument, rightArgument));
+            } else if (isUnary(opcode)) {
+                UnaryOperation operation = opcode == CUSTOM_UNARY ?
+                                           program.unaryOperations[operand] : toUnaryOperation(opcode);
+                handles.push(MethodHandles.filterReturnValue(handles.pop(), UNARY_OPERATE.bindTo(operation)));
+            } else {
+                throw new IllegalStateException("Unknown instruction : " + instruction);
+            }
+        }
+        return new MethodHandleFormulaFunction(handles.pop(), temporaryOffset + program.temporaryCount);
+    }
+
+    private static MethodHandle constantHandle(double value) {
+        return MethodHandles.dropArguments(MethodHandles.constant(double.class, value), 0, double[].class);
+    }
+
+    /*
+     * (double, double)double ---> (double, double[])double ---> (double[])double
+     */
+    private static MethodHandle binaryOperationHandle(BinaryOperation operation, MethodHandle leftArgument,
+                                                      MethodHandle rightArgument) {
+        MethodHandle operationHandle = BINARY_OPERATE.bindTo(operation);
+        MethodHandle filteredHandle = MethodHandles.filterArguments(operationHandle, 1, rightArgument);
+        return MethodHandles.foldArguments(filteredHandle, leftArgument);
+    }
+
+    /*
+     * (double[], int, double)double ---> (double[], double[])double ---> (double[])double
+     */
+    private static MethodHandle storeTemporaryHandle(MethodHandle argument, int slot) {
+        MethodHandle storeHandle = MethodHandles.insertArguments(STORE_TEMPORARY_VALUE, 1, slot);
+        MethodHandle filteredHandle = MethodHandles.filterArguments(storeHandle, 1, argument);
+        return MethodHandles.permuteArguments(filteredHandle, FUNCTION_TYPE, 0, 0);
+    }
+
+    private static double storeTemporaryValue(double[] frame, int slot, double value) {
+        frame[slot] = value;
+        return value;
+    }
+
+    private final MethodHandle methodHandle;
+    private final int frameSize;
+
+    private MethodHandleFormulaFunction(MethodHandle methodHandle, int frameSize) {
+        this.methodHandle = methodHandle;
+        this.frameSize = frameSize;
+    }
+
+    /**
+     * Return method handle of type (double[])double, that calculates formula over array of variable values
+     * in slot order.
+     *
+     * @return method handle of formula.
+     */
+    public MethodHandle getMethodHandle() {
+        return methodHandle;
+    }
+
+    @Override
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    @Override
+    public double calculate(double[] frame) {
+        try {
+            return (double) methodHandle.invokeExact(frame);
+        } catch (RuntimeException exception) {
+            throw exception;
+        } catch (Error error) {
+            throw error;
+        } catch (Throwable throwable) {
+            throw new IllegalStateException(throwable);
+        }
+    }
+}
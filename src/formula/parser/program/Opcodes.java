@@ -0,0 +1,264 @@
+package formula.parser.program;
+
+import formula.parser.operation.BinaryOperation;
+import formula.parser.operation.BinaryOperations;
+import formula.parser.operation.UnaryOperation;
+import formula.parser.operation.UnaryOperations;
+
+/**
+ * Opcodes of {@link FormulaProgram} instructions.
+ * Each instruction is encoded in single int value : low {@link #OPCODE_BITS} bits contain opcode and
+ * remaining high bits contain operand - index of constant, variable slot, temporary slot or custom operation.
+ */
+/*package*/ final class Opcodes {
+
+    static final int OPCODE_BITS = 8;
+    static final int OPCODE_MASK = (1 << OPCODE_BITS) - 1;
+
+    static final int PUSH_CONSTANT = 0;
+    static final int LOAD_VARIABLE = 1;
+
+    static final int ADDITION = 2;
+    static final int DIVISION = 3;
+    static final int MULTIPLY = 4;
+    static final int POWER = 5;
+    static final int CUSTOM_BINARY = 6;
+
+    static final int FACTORIAL = 7;
+    static final int SUBTRACTION = 8;
+    static final int LN = 9;
+    static final int LG = 10;
+    static final int SIN = 11;
+    static final int COS = 12;
+    static final int TAN = 13;
+    static final int ARC_SIN = 14;
+    static final int ARC_COS = 15;
+    static final int ARC_TAN = 16;
+    static final int SQRT = 17;
+    static final int CUSTOM_UNARY = 18;
+
+    /*
+     * Copies value on top of stack to temporary slot without popping it.
+     */
+    static final int STORE_TEMPORARY = 19;
+
+    /*
+     * Pushes value of temporary slot to stack.
+     */
+    static final int LOAD_TEMPORARY = 20;
+
+    private Opcodes() {
+    }
+
+    static int encode(int opcode, int operand) {
+        return opcode | (operand << OPCODE_BITS);
+    }
+
+    static int opcode(int instruction) {
+        return instruction & OPCODE_MASK;
+    }
+
+    static int operand(int instruction) {
+        return instruction >>> OPCODE_BITS;
+    }
+
+    /**
+     * Return opcode for given operation or {@link #CUSTOM_BINARY} in case if operation is not built-in.
+     */
+    static int forBinaryOperation(BinaryOperation operation) {
+        if (!(operation instanceof BinaryOperations)) {
+            return CUSTOM_BINARY;
+        }
+
+        switch ((BinaryOperations) operation) {
+            case ADDITION:
+                return ADDITION;
+
+            case DIVISION:
+                return DIVISION;
+
+            case MULTIPLY:
+                return MULTIPLY;
+
+            case POWER:
+                return POWER;
+
+            default:
+                return CUSTOM_BINARY;
+        }
+    }
+
+    /**
+     * Return opcode for given operation or {@link #CUSTOM_UNARY} in case if operation is not built-in.
+     */
+    static int forUnaryOperation(UnaryOperation operation) {
+        if (!(operation instanceof UnaryOperations)) {
+            return CUSTOM_UNARY;
+        }
+
+        switch ((UnaryOperations) operation) {
+            case FACTORIAL:
+                return FACTORIAL;
+
+            case SUBTRACTION:
+                return SUBTRACTION;
+
+            case LN:
+                return LN;
+
+            case LG:
+                return LG;
+
+            case SIN:
+                return SIN;
+
+            case COS:
+                return COS;
+
+            case TAN:
+                return TAN;
+
+            case ARC_SIN:
+                return ARC_SIN;
+
+            case ARC_COS:
+                return ARC_COS;
+
+            case ARC_TAN:
+                return ARC_TAN;
+
+            case SQRT:
+                return SQRT;
+
+            default:
+                return CUSTOM_UNARY;
+        }
+    }
+
+    /**
+     * Return built-in operation for given opcode or 'null' in case if opcode is not built-in binary operation.
+     */
+    static BinaryOperations toBinaryOperation(int opcode) {
+        switch (opcode) {
+            case ADDITION:
+                return BinaryOperations.ADDITION;
+
+            case DIVISION:
+                return BinaryOperations.DIVISION;
+
+            case MULTIPLY:
+                return BinaryOperations.MULTIPLY;
+
+            case POWER:
+                return BinaryOperations.POWER;
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Return built-in operation for given opcode or 'null' in case if opcode is not built-in unary operation.
+     */
+    static UnaryOperations toUnaryOperation(int opcode) {
+        switch (opcode) {
+            case FACTORIAL:
+                return UnaryOperations.FACTORIAL;
+
+            case SUBTRACTION:
+                return UnaryOperations.SUBTRACTION;
+
+            case LN:
+                return UnaryOperations.LN;
+
+            case LG:
+                return UnaryOperations.LG;
+
+            case SIN:
+                return UnaryOperations.SIN;
+
+            case COS:
+                return UnaryOperations.COS;
+
+            case TAN:
+                return UnaryOperations.TAN;
+
+            case ARC_SIN:
+                return UnaryOperations.ARC_SIN;
+
+            case ARC_COS:
+                return UnaryOperations.ARC_COS;
+
+            case ARC_TAN:
+                return UnaryOperations.ARC_TAN;
+
+            case SQRT:
+                return UnaryOperations.SQRT;
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Return readable name of given opcode.
+     */
+    static String name(int opcode) {
+        switch (opcode) {
+            case PUSH_CONSTANT:
+                return "PUSH_CONSTANT";
+
+            case LOAD_VARIABLE:
+                return "LOAD_VARIABLE";
+
+            case STORE_TEMPORARY:
+                return "STORE_TEMPORARY";
+
+            case LOAD_TEMPORARY:
+                return "LOAD_TEMPORARY";
+
+            case CUSTOM_BINARY:
+            case CUSTOM_UNARY:
+                return "CUSTOM";
+
+            default:
+                return isBinary(opcode) ? toBinaryOperation(opcode).name() : toUnaryOperation(opcode).name();
+        }
+    }
+
+    /**
+     * Return estimated relative cost of instruction with given opcode for one row, where cost of
+     * simple arithmetic instruction is 1. Used to pick size of work for batch calculation.
+     */
+    static int cost(int opcode) {
+        switch (opcode) {
+            case PUSH_CONSTANT:
+            case LOAD_VARIABLE:
+            case STORE_TEMPORARY:
+            case LOAD_TEMPORARY:
+            case ADDITION:
+            case MULTIPLY:
+            case SUBTRACTION:
+                return 1;
+
+            case DIVISION:
+            case SQRT:
+                return 4;
+
+            case CUSTOM_BINARY:
+            case CUSTOM_UNARY:
+                return 10;
+
+            default:
+                return 20;
+        }
+    }
+
+    static boolean isBinary(int opcode) {
+        return opcode >= ADDITION && opcode <= CUSTOM_BINARY;
+    }
+
+    static boolean isUnary(int opcode) {
+        return opcode >= FACTORIAL && opcode <= CUSTOM_UNARY;
+    }
+}
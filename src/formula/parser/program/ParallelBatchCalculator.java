@@ -0,0 +1,175 @@
+package formula.parser.program;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static formula.parser.program.Opcodes.cost;
+import static formula.parser.program.Opcodes.opcode;
+
+/**
+ * <H1>General</H1>
+ * Parallel version of {@link BatchCalculator}. Rows of batch are split into tasks of disjoint ranges, which are
+ * calculated by given executor ({@link ForkJoinPool#commonPool()} by default). Each task calculates it's range
+ * by own {@link BatchCalculator} and writes values to the same range of results array, so tasks do not
+ * share any mutable state. Negative zero results are replaced by positive zero, the same way as sequential
+ * calculation of formula does (see {@link formula.parser.api.Formula#calculate(double[][], double[])}).
+ *
+ * <H1>Size of task</H1>
+ * Count of rows per task is picked from estimated cost of program per row and parallelism of executor :
+ * rows are split into {@link #TASKS_PER_THREAD} tasks per thread for load balancing, but each task should
+ * contain at least {@link #MIN_TASK_COST} units of work (cost of simple arithmetic instruction for one row),
+ * so cheap formulas and small batches are not split into tasks, that cost less than their scheduling.
+ * Count of rows per task is always multiple of {@link BatchCalculator#CHUNK_SIZE}.
+ *
+ * <H1>Thread safety</H1>
+ * Calculator does not contain mutable state, so it could be shared between threads.
+ */
+public final class ParallelBatchCalculator {
+
+    /**
+     * Count of tasks per thread of executor.
+     */
+    public static final int TASKS_PER_THREAD = 4;
+
+    /**
+     * Minimal estimated cost of single task.
+     */
+    public static final long MIN_TASK_COST = 1 << 18;
+
+    private final FormulaProgram program;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int rowCost;
+
+    /**
+     * Creates calculator, that calculates program by common fork/join pool.
+     *
+     * @param program program to calculate.
+     */
+    public ParallelBatchCalculator(FormulaProgram program) {
+        this(program, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates calculator, that calculates program by given fork/join pool.
+     *
+     * @param program program to calculate.
+     * @param pool pool for calculation tasks.
+     */
+    public ParallelBatchCalculator(FormulaProgram program, ForkJoinPool pool) {
+        this(program, pool, pool.getParallelism());
+    }
+
+    /**
+     * Creates calculator, that calculates program by given executor.
+     *
+     * @param program program to calculate.
+     * @param executor executor for calculation tasks.
+     * @param parallelism count of threads of executor.
+     */
+    public ParallelBatchCalculator(FormulaProgram program, ExecutorService executor, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism should be positive : " + parallelism);
+        }
+        this.program = program;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        rowCost = estimateRowCost(program);
+    }
+
+    private static int estimateRowCost(FormulaProgram program) {
+        int rowCost = 0;
+        for (int instruction : program.instructions) {
+            rowCost += cost(opcode(instruction));
+        }
+        return rowCost;
+    }
+
+    /**
+     * Return calculated program.
+     *
+     * @return program of calculator.
+     */
+    public FormulaProgram getProgram() {
+        return program;
+    }
+
+    /**
+     * Return count of rows in each task for batch of given size.
+     *
+     * @param rowsCount count of rows in batch.
+     * @return count of rows per task, last task could contain less rows.
+     */
+    public int getTaskSize(int rowsCount) {
+        long minRows = (MIN_TASK_COST + rowCost - 1) / rowCost;
+        long balancedRows = ((long) rowsCount + parallelism * TASKS_PER_THREAD - 1) / (parallelism * TASKS_PER_THREAD);
+        long rows = Math.max(minRows, balancedRows);
+        long chunks = (rows + BatchCalculator.CHUNK_SIZE - 1) / BatchCalculator.CHUNK_SIZE;
+        return (int) Math.min(Integer.MAX_VALUE - BatchCalculator.CHUNK_SIZE, chunks * BatchCalculator.CHUNK_SIZE);
+    }
+
+    /**
+     * Calculates program for each row of given variable columns in parallel and waits until all rows are calculated.
+     *
+     * @param variableColumns columns of variable values in slot order, each column should contain
+     *                        not less values than size of results array.
+     * @param results array for calculated values, count of calculated rows is defined by it's size.
+     * @throws IllegalArgumentException in case if count or size of columns is not enough.
+     * @throws IllegalStateException in case if calculation was interrupted.
+     * @see FormulaProgram#calculate(double[][], double[])
+     */
+    public void calculate(final double[][] variableColumns, final double[] results) {
+        program.checkColumns(variableColumns, results.length);
+
+        int taskSize = getTaskSize(results.length);
+        if (taskSize >= results.length) {
+            new BatchCalculator(program).calculate(variableColumns, results);
+            checkNegativeZeros(results, 0, results.length);
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int from = 0; from < results.length; from += taskSize) {
+            final int taskFrom = from;
+            final int taskTo = Math.min(results.length, from + taskSize);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    new BatchCalculator(program).calculate(variableColumns, results, taskFrom, taskTo);
+                    checkNegativeZeros(results, taskFrom, taskTo);
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch calculation was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException("Batch calculation failed", e.getCause());
+        }
+    }
+
+    private static void checkNegativeZeros(double[] results, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (results[i] == -0.0) {
+                results[i] = 0.0;
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package formula.parser.program;
+
+import formula.parser.operation.BinaryOperation;
+import formula.parser.operation.UnaryOperation;
+import formula.parser.operation.UnaryOperations;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static formula.parser.program.Opcodes.*;
+
+/**
+ * <H1>General</H1>
+ * Implementation of {@link FormulaFunction} as a program for three-address register machine.
+ * Registers of machine are elements of frame, which has next layout :
+ *
+ * <p> - variable registers - values of variables in slot order;
+ *
+ * <p> - constant registers - digit literals of formula, copied to frame before each calculation;
+ *
+ * <p> - temporary registers - intermediate results of operations.
+ *
+ * Each instruction reads one or two registers and writes result to one temporary register, arguments of formula
+ * do not produce any instructions. Temporary registers are allocated by liveness : register of operation argument
+ * becomes free right after operation, so result of operation could be written to the same register.
+ * Register that contains value of common subexpression is never freed, so each usage reads it directly.
+ *
+ * <H1>Instruction format</H1>
+ * Instructions are stored in int array (see {@link #getInstructions()}), where each instruction takes
+ * {@link #INSTRUCTION_SIZE} elements : opcode with operand (index of custom operation), target register,
+ * first argument register and second argument register (equals to first one for unary operations).
+ *
+ * <H1>Example</H1>
+ *  As example, for formula "( x - 2 ) * y" result program will be next :
+ *  <br> r3 = ADDITION r0 r2
+ *  <br> r3 = MULTIPLY r3 r1
+ *
+ *  where r0 - 'x', r1 - 'y', r2 - constant '-2' and r3 - temporary register, that contains result.
+ */
+public final class RegisterMachineFormulaFunction implements FormulaFunction {
+
+    /**
+     * Count of int elements that each instruction takes.
+     */
+    public static final int INSTRUCTION_SIZE = 4;
+
+    /**
+     * Creates function for given program.
+     *
+     * @param program compiled program of formula.
+     * @return function calculated by register machine.
+     */
+    static RegisterMachineFormulaFunction generate(FormulaProgram program) {
+        return new RegisterAllocator(program).allocate();
+    }
+
+    private final int[] instructions;
+    private final double[] constants;
+    private final UnaryOperation[] unaryOperations;
+    private final BinaryOperation[] binaryOperations;
+    private final int constantsOffset;
+    private final int registerCount;
+    private final int resultRegister;
+
+    private RegisterMachineFormulaFunction(int[] instructions, double[] constants, UnaryOperation[] unaryOperations,
+                                           BinaryOperation[] binaryOperations, int constantsOffset,
+                                           int registerCount, int resultRegister) {
+        this.instructions = instructions;
+        this.constants = constants;
+        this.unaryOperations = unaryOperations;
+        this.binaryOperations = binaryOperations;
+        this.constantsOffset = constantsOffset;
+        this.registerCount = registerCount;
+        this.resultRegister = resultRegister;
+    }
+
+    /**
+     * Return instructions of register machine in format described in class documentation.
+     *
+     * @return copy of instructions array.
+     */
+    public int[] getInstructions() {
+        return instructions.clone();
+    }
+
+    /**
+     * Return values of constant registers.
+     *
+     * @return copy of constant values, where first value is stored in register that follows variable registers.
+     */
+    public double[] getConstants() {
+        return constants.clone();
+    }
+
+    /**
+     * Return register that contains result of calculation.
+     *
+     * @return index of result register.
+     */
+    public int getResultRegister() {
+        return resultRegister;
+    }
+
+    @Override
+    public int getFrameSize() {
+        return registerCount;
+    }
+
+    @Override
+    public double calculate(double[] frame) {
+        System.arraycopy(constants, 0, frame, constantsOffset, constants.length);
+        int[] instructions = this.instructions;
+        for (int i = 0; i < instructions.length; i += INSTRUCTION_SIZE) {
+            int instruction = instructions[i];
+            int target = instructions[i + 1];
+            double first = frame[instructions[i + 2]];
+
+            switch (instruction & OPCODE_MASK) {
+                case ADDITION:
+                    frame[target] = first + frame[instructions[i + 3]];
+                    break;
+
+                case DIVISION:
+                    frame[target] = first / frame[instructions[i + 3]];
+                    break;
+
+                case MULTIPLY:
+                    frame[target] = first * frame[instructions[i + 3]];
+                    break;
+
+                case POWER:
+                    frame[target] = Math.pow(first, frame[instructions[i + 3]]);
+                    break;
+
+                case CUSTOM_BINARY:
+                    frame[target] = binaryOperations[instruction >>> OPCODE_BITS].operate(first, frame[instructions[i + 3]]);
+                    break;
+
+                case FACTORIAL:
+                    frame[target] = UnaryOperations.FACTORIAL.operate(first);
+                    break;
+
+                case SUBTRACTION:
+                    frame[target] = -first;
+                    break;
+
+                case LN:
+                    frame[target] = Math.log(first);
+                    break;
+
+                case LG:
+                    frame[target] = Math.log10(first);
+                    break;
+
+                case SIN:
+                    frame[target] = Math.sin(first);
+                    break;
+
+                case COS:
+                    frame[target] = Math.cos(first);
+                    break;
+
+                case TAN:
+                    frame[target] = Math.tan(first);
+                    break;
+
+                case ARC_SIN:
+                    frame[target] = Math.asin(first);
+                    break;
+
+                case ARC_COS:
+                    frame[target] = Math.acos(first);
+                    break;
+
+                case ARC_TAN:
+                    frame[target] = Math.atan(first);
+                    break;
+
+                case SQRT:
+                    frame[target] = Math.sqrt(first);
+                    break;
+
+                case CUSTOM_UNARY:
+                    frame[target] = unaryOperations[instruction >>> OPCODE_BITS].operate(first);
+                    break;
+
+                default:
+                    throw new IllegalStateException("Unknown instruction : " + instruction);
+            }
+        }
+        return frame[resultRegister];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < instructions.length; i += INSTRUCTION_SIZE) {
+            int opcode = opcode(instructions[i]);
+            stringBuilder.append('r').append(instructions[i + 1]).append(" = ").append(name(opcode));
+            stringBuilder.append(" r").append(instructions[i + 2]);
+            if (isBinary(opcode)) {
+                stringBuilder.append(" r").append(instructions[i + 3]);
+            }
+            stringBuilder.append('\n');
+        }
+        return stringBuilder.toString();
+    }
+
+    /*
+     * Translates stack program to register machine program. Each value on program stack is replaced
+     * by register that contains it, temporary registers are reused right after their last reading.
+     */
+    private static class RegisterAllocator {
+
+        private final FormulaProgram program;
+        private final int constantsOffset;
+        private final int temporaryOffset;
+        private final int[] constantRegisters;
+        private final List<Double> constants;
+        private final Deque<Integer> valueRegisters;
+        private final Deque<Integer> freeRegisters;
+        private final int[] temporaryRegisters;
+        private final Set<Integer> pinnedRegisters;
+        private final List<Integer> instructions;
+        private int registerCount;
+
+        RegisterAllocator(FormulaProgram program) {
+            this.program = program;
+            constants = new ArrayList<Double>();
+            constantRegisters = new int[program.constants.length];
+            constantsOffset = program.variables.length + program.parameterCount;
+            temporaryOffset = constantsOffset + allocateConstants();
+            registerCount = temporaryOffset;
+            valueRegisters = new ArrayDeque<Integer>();
+            freeRegisters = new ArrayDeque<Integer>();
+            temporaryRegisters = new int[program.temporaryCount];
+            pinnedRegisters = new HashSet<Integer>();
+            instructions = new ArrayList<Integer>();
+        }
+
+        /*
+         * Assigns one register per distinct constant value and returns count of constant registers.
+         */
+        private int allocateConstants() {
+            Map<Long, Integer> registers = new HashMap<Long, Integer>();
+            for (int i = 0; i < program.constants.length; i++) {
+                long bits = Double.doubleToRawLongBits(program.constants[i]);
+                Integer register = registers.get(bits);
+                if (register == null) {
+                    register = constantsOffset + constants.size();
+                    constants.add(program.constants[i]);
+                    registers.put(bits, register);
+                }
+                constantRegisters[i] = register;
+            }
+            return constants.size();
+        }
+
+        RegisterMachineFormulaFunction allocate() {
+            for (int instruction : program.instructions) {
+                int opcode = opcode(instruction);
+                int operand = operand(instruction);
+
+                if (opcode == PUSH_CONSTANT) {
+                    valueRegisters.push(constantRegisters[operand]);
+                } else if (opcode == LOAD_VARIABLE) {
+                    valueRegisters.push(operand);
+                } else if (opcode == STORE_TEMPORARY) {
+                    temporaryRegisters[operand] = valueRegisters.peek();
+                    pinnedRegisters.add(valueRegisters.peek());
+                } else if (opcode == LOAD_TEMPORARY) {
+                    valueRegisters.push(temporaryRegisters[operand]);
+                } else if (isBinary(opcode)) {
+                    int secondArgument = valueRegisters.pop();
+                    int firstArgument = valueRegisters.pop();
+                    addInstruction(instruction, firstArgument, secondArgument);
+                } else if (isUnary(opcode)) {
+                    int argument = valueRegisters.pop();
+                    addInstruction(instruction, argument, argument);
+                } else {
+                    throw new IllegalStateException("Unknown instruction : " + instruction);
+                }
+            }
+
+            int[] instructionArray = new int[instructions.size()];
+            for (int i = 0; i < instructionArray.length; i++) {
+                instructionArray[i] = instructions.get(i);
+            }
+
+            double[] constantArray = new double[constants.size()];
+            for (int i = 0; i < constantArray.length; i++) {
+                constantArray[i] = constants.get(i);
+            }
+
+            return new RegisterMachineFormulaFunction(  instructionArray,
+                                                        constantArray,
+                                                        Arrays.copyOf(program.unaryOperations, program.unaryOperations.length),
+                                                        Arrays.copyOf(program.binaryOperations, program.binaryOperations.length),
+                                                        constantsOffset,
+                                                        registerCount,
+                                                        valueRegisters.pop());
+        }
+
+        private void addInstruction(int instruction, int firstArgument, int secondArgument) {
+            release(firstArgument);
+            if (secondArgument != firstArgument) {
+                release(secondArgument);
+            }
+
+            int target = freeRegisters.isEmpty() ? registerCount++ : freeRegisters.pop();
+            instructions.add(instruction);
+            instructions.add(target);
+            instructions.add(firstArgument);
+            instructions.add(secondArgument);
+            valueRegisters.push(target);
+        }
+
+        private void release(int register) {
+            if (register >= temporaryOffset && !pinnedRegisters.contains(register)) {
+                freeRegisters.push(register);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package formula.parser.tree;
+
+/**
+ * Read only view of formula subtree, that is passed to {@link SimplificationRule}.
+ * Expression of {@link FormulaItem.Type#OPERATION} item contains it's arguments : argument of
+ * {@link formula.parser.operation.Operation.Type#UNARY} operation is left expression and
+ * {@link formula.parser.operation.Operation.Type#BINARY} operation contains left and right expressions.
+ * Expressions of {@link FormulaItem.Type#DIGIT} and {@link FormulaItem.Type#VARIABLE} items have no arguments.
+ *
+ * @see FormulaExpressions
+ */
+public interface FormulaExpression {
+
+    /**
+     * Return item of expression.
+     *
+     * @return item of expression.
+     */
+    public FormulaItem getFormulaItem();
+
+    /**
+     * Return left argument of operation expression.
+     *
+     * @return left argument or 'null' in case if expression is not operation.
+     */
+    public FormulaExpression getLeftExpression();
+
+    /**
+     * Return right argument of binary operation expression.
+     *
+     * @return right argument or 'null' in case if expression is not binary operation.
+     */
+    public FormulaExpression getRightExpression();
+}
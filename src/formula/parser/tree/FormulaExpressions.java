@@ -0,0 +1,287 @@
+package formula.parser.tree;
+
+import formula.parser.operation.BinaryOperation;
+import formula.parser.operation.BinaryOperations;
+import formula.parser.operation.Operation;
+import formula.parser.operation.PureOperation;
+import formula.parser.operation.UnaryOperation;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static formula.parser.tree.FormulaItem.Type.DIGIT;
+import static formula.parser.tree.FormulaItem.Type.OPERATION;
+import static formula.parser.tree.FormulaItem.Type.VARIABLE;
+
+/**
+ * Util class for creation and matching of {@link FormulaExpression}, that could be used by
+ * custom {@link SimplificationRule} implementations.
+ */
+public final class FormulaExpressions {
+
+    private FormulaExpressions() {
+    }
+
+    /**
+     * Constructs new expression that represents digit literal with given value.
+     *
+     * @param digitValue value of digit literal.
+     * @return new digit expression.
+     */
+    public static FormulaExpression newDigitExpression(double digitValue) {
+        return new SimpleExpression(FormulaItem.newDigitItem(digitValue), null, null);
+    }
+
+    /**
+     * Constructs new expression that represents variable with given name.
+     *
+     * @param variableName name of variable.
+     * @return new variable expression.
+     */
+    public static FormulaExpression newVariableExpression(char variableName) {
+        return new SimpleExpression(FormulaItem.newVariableItem(variableName), null, null);
+    }
+
+    /**
+     * Constructs copy of given expression, where each variable with given value is replaced by digit literal.
+     * Expression used several times by given expression is copied once, so it stays shared in the copy.
+     *
+     * @param expression copied expression.
+     * @param variableValues values of replaced variables by names.
+     * @return new expression with digit literals instead of given variables.
+     */
+    public static FormulaExpression bindVariables(FormulaExpression expression, Map<Character, Double> variableValues) {
+        return bindVariables(expression, variableValues, new IdentityHashMap<FormulaExpression, FormulaExpression>());
+    }
+
+    private static FormulaExpression bindVariables(FormulaExpression expression, Map<Character, Double> variableValues,
+                                                   Map<FormulaExpression, FormulaExpression> copies) {
+        FormulaExpression copy = copies.get(expression);
+        if (copy != null) {
+            return copy;
+        }
+
+        FormulaItem item = expression.getFormulaItem();
+        if (item.getType() == VARIABLE && variableValues.containsKey(item.getVariableName())) {
+            copy = newDigitExpression(variableValues.get(item.getVariableName()));
+        } else if (item.getType() == OPERATION) {
+            copy = new SimpleExpression(item, bindVariables(expression.getLeftExpression(), variableValues, copies),
+                    item.isBinaryOperation() ? bindVariables(expression.getRightExpression(), variableValues, copies) : null);
+        } else {
+            copy = new SimpleExpression(item, null, null);
+        }
+        copies.put(expression, copy);
+        return copy;
+    }
+
+    /**
+     * Constructs new expression that represents given unary operation over given argument.
+     *
+     * @param operation unary operation.
+     * @param argument argument of operation.
+     * @return new operation expression.
+     */
+    public static FormulaExpression newOperationExpression(UnaryOperation operation, FormulaExpression argument) {
+        return new SimpleExpression(FormulaItem.newOperationItem(operation), argument, null);
+    }
+
+    /**
+     * Constructs new expression that represents given binary operation over given arguments.
+     *
+     * @param operation binary operation.
+     * @param leftArgument left argument of operation.
+     * @param rightArgument right argument of operation.
+     * @return new operation expression.
+     */
+    public static FormulaExpression newOperationExpression(BinaryOperation operation, FormulaExpression leftArgument,
+                                                           FormulaExpression rightArgument) {
+        return new SimpleExpression(FormulaItem.newOperationItem(operation), leftArgument, rightArgument);
+    }
+
+    /**
+     * Return 'true' in case if given expression is digit literal.
+     *
+     * @param expression checked expression.
+     * @return 'true' in case if expression is digit literal.
+     */
+    public static boolean isDigit(FormulaExpression expression) {
+        return expression.getFormulaItem().getType() == DIGIT;
+    }
+
+    /**
+     * Return 'true' in case if given expression is digit literal equal to given value.
+     * Positive and negative zeros are equal, so sign of zero should be checked separately in case if it matters.
+     *
+     * @param expression checked expression.
+     * @param digitValue expected value of digit literal.
+     * @return 'true' in case if expression is digit literal with given value.
+     */
+    public static boolean isDigit(FormulaExpression expression, double digitValue) {
+        FormulaItem item = expression.getFormulaItem();
+        return isDigit(expression) && item.getDigitLiteralValue() == digitValue;
+    }
+
+    /**
+     * Return 'true' in case if given expression is given operation.
+     *
+     * @param expression checked expression.
+     * @param operation expected operation.
+     * @return 'true' in case if expression represents given operation.
+     */
+    public static boolean isOperation(FormulaExpression expression, Operation operation) {
+        FormulaItem item = expression.getFormulaItem();
+        return item.getType() == OPERATION && item.getOperation() == operation;
+    }
+
+    /**
+     * Return 'true' in case if given expression contains only operations marked by {@link PureOperation},
+     * so it could be removed without change of formula behaviour.
+     *
+     * @param expression checked expression.
+     * @return 'true' in case if expression contains only pure operations.
+     */
+    public static boolean isPure(FormulaExpression expression) {
+        FormulaItem item = expression.getFormulaItem();
+        if (item.getType() != OPERATION) {
+            return true;
+        }
+
+        return  item.getOperation() instanceof PureOperation &&
+                isPure(expression.getLeftExpression()) &&
+                (!item.isBinaryOperation() || isPure(expression.getRightExpression()));
+    }
+
+    /**
+     * Return canonical form of given expression : string, which is equal for expressions of the same structure.
+     * Form doesn't depend on order of arguments of {@link BinaryOperations#ADDITION} and
+     * {@link BinaryOperations#MULTIPLY}, since they are commutative for all values, and on notation of digit
+     * literals, since each literal is written by {@link Double#toString(double)}. Grouping of arguments is kept,
+     * since addition and multiplication of doubles are not associative. Operations are written by their first sign,
+     * so equal forms mean equal formulas only for the same known operations.
+     * <br> Variables could be renamed to "$0", "$1", ... in order of their names, so formulas, that differ only
+     * by variable names, have the same form in case if renaming keeps order of variables (for example "a * b + 1"
+     * and "x * y + 1", but not "a * b + a" and "b * a + b" with variable "a" shifted to second slot).
+     *
+     * @param expression expression.
+     * @param renameVariables 'true' to rename variables in order of their names.
+     * @return canonical form of expression.
+     */
+    public static String canonicalForm(FormulaExpression expression, boolean renameVariables) {
+        char[] variableOrder = null;
+        if (renameVariables) {
+            SortedSet<Character> variables = new TreeSet<Character>();
+            collectVariables(expression, variables, new IdentityHashMap<FormulaExpression, Boolean>());
+            variableOrder = new char[variables.size()];
+            int slot = 0;
+            for (Character variable : variables) {
+                variableOrder[slot++] = variable;
+            }
+        }
+        return canonicalForm(expression, variableOrder);
+    }
+
+    /**
+     * Return canonical form of given expression, where each variable is renamed to "$" and it's index in given
+     * sorted variable order, or variables are not renamed in case if order is 'null'.
+     */
+    /*package*/ static String canonicalForm(FormulaExpression expression, char[] variableOrder) {
+        Map<Character, String> variableNames = null;
+        if (variableOrder != null) {
+            variableNames = new HashMap<Character, String>();
+            for (int slot = 0; slot < variableOrder.length; slot++) {
+                variableNames.put(variableOrder[slot], "$" + slot);
+            }
+        }
+        return canonicalForm(expression, variableNames, new IdentityHashMap<FormulaExpression, String>());
+    }
+
+    private static void collectVariables(FormulaExpression expression, SortedSet<Character> variables,
+                                         Map<FormulaExpression, Boolean> visited) {
+        if (visited.put(expression, Boolean.TRUE) != null) {
+            return;
+        }
+
+        FormulaItem item = expression.getFormulaItem();
+        if (item.getType() == VARIABLE) {
+            variables.add(item.getVariableName());
+        } else if (item.getType() == OPERATION) {
+            collectVariables(expression.getLeftExpression(), variables, visited);
+            if (item.isBinaryOperation()) {
+                collectVariables(expression.getRightExpression(), variables, visited);
+            }
+        }
+    }
+
+    /*
+     * Form of expression used several times is built once, but it's written at each usage.
+     */
+    private static String canonicalForm(FormulaExpression expression, Map<Character, String> variableNames,
+                                        Map<FormulaExpression, String> forms) {
+        String form = forms.get(expression);
+        if (form != null) {
+            return form;
+        }
+
+        FormulaItem item = expression.getFormulaItem();
+        if (item.getType() == DIGIT) {
+            form = Double.toString(item.getDigitLiteralValue());
+        } else if (item.getType() == VARIABLE) {
+            form = variableNames != null ?
+                    variableNames.get(item.getVariableName()) :
+                    String.valueOf(item.getVariableName());
+        } else {
+            Operation operation = item.getOperation();
+            String leftForm = canonicalForm(expression.getLeftExpression(), variableNames, forms);
+            if (item.isBinaryOperation()) {
+                String rightForm = canonicalForm(expression.getRightExpression(), variableNames, forms);
+                boolean commutative = operation == BinaryOperations.ADDITION || operation == BinaryOperations.MULTIPLY;
+                if (commutative && rightForm.compareTo(leftForm) < 0) {
+                    String swappedForm = leftForm;
+                    leftForm = rightForm;
+                    rightForm = swappedForm;
+                }
+                form = operation.getSigns()[0] + "(" + leftForm + "," + rightForm + ")";
+            } else {
+                form = operation.getSigns()[0] + "(" + leftForm + ")";
+            }
+        }
+        forms.put(expression, form);
+        return form;
+    }
+
+    private static class SimpleExpression implements FormulaExpression {
+
+        private final FormulaItem item;
+        private final FormulaExpression leftExpression;
+        private final FormulaExpression rightExpression;
+
+        SimpleExpression(FormulaItem item, FormulaExpression leftExpression, FormulaExpression rightExpression) {
+            this.item = item;
+            this.leftExpression = leftExpression;
+            this.rightExpression = rightExpression;
+        }
+
+        @Override
+        public FormulaItem getFormulaItem() {
+            return item;
+        }
+
+        @Override
+        public FormulaExpression getLeftExpression() {
+            return leftExpression;
+        }
+
+        @Override
+        public FormulaExpression getRightExpression() {
+            return rightExpression;
+        }
+
+        @Override
+        public String toString() {
+            return item.toString();
+        }
+    }
+}
@@ -1,8 +1,22 @@
 package formula.parser.tree;
 
 import formula.parser.api.Formula;
+import formula.parser.api.VariableRange;
 import formula.parser.operation.BinaryOperation;
+import formula.parser.operation.BinaryOperations;
+import formula.parser.operation.DifferentiableBinaryOperation;
+import formula.parser.operation.DifferentiableUnaryOperation;
+import formula.parser.operation.Operation;
+import formula.parser.operation.PureOperation;
 import formula.parser.operation.UnaryOperation;
+import formula.parser.operation.UnaryOperations;
+import formula.parser.program.BatchCalculator;
+import formula.parser.program.CompiledFormula;
+import formula.parser.program.FormulaEngine;
+import formula.parser.program.FormulaEngines;
+import formula.parser.program.FormulaProgram;
+import formula.parser.program.FormulaProgramBuilder;
+import formula.parser.program.ImmutableFormula;
 import formula.parser.token.FormulaToken;
 import formula.parser.token.FormulaTokenizer;
 
@@ -54,6 +68,62 @@ import static formula.parser.tree.FormulaItem.Type.*;
  * {@link formula.parser.operation.Operation} and value calculate as a operation over children nodes - arguments
  * or {@link BracketsNode} - that simply skip during calculation.
  *
+ * <H1>Constant folding</H1>
+ * After build, each subtree that contains no {@link FormulaItem.Type#VARIABLE} nodes and only operations
+ * marked by {@link PureOperation} (all built-in operations are pure) is calculated once and replaced by
+ * {@link FormulaItem.Type#DIGIT} node with it's value. So formula "2 * pi / 360 * x" is calculated as "0.0174... * x".
+ *
+ * <H1>Simplification</H1>
+ * After constant folding, each operation subtree is rewritten by {@link SimplificationRule}s from leaves to root,
+ * so identities like "x * 1", "x + 0", "x ^ 1" or "--x" are removed and negation created for subtraction
+ * is moved to digit literal where it's possible : "x - y * 2" is calculated as "x + y * -2".
+ * Power with small integer exponent is replaced by multiplications, so "x ^ 4" is calculated as "(x * x) * (x * x)",
+ * where "x * x" is calculated once.
+ * By default rules are applied in strict IEEE mode, where only rewrites that keep result for all values, including
+ * NaN, infinite values and sign of zero, are applied. Not strict mode is opt-in
+ * (see {@link formula.parser.api.FormulaParser#setStrictIeee(boolean)}) and could change result for such values :
+ * {@link SimplificationRules#MULTIPLY_BY_ZERO_RULE} ("0 * x" is replaced by "0") and
+ * {@link SimplificationRules#NEGATION_OF_ADDITION_RULE} are applied only in this mode, as well as removal of
+ * positive zero addend, "x ^ 0.5" to "sqrt(x)" and negative integer power to reciprocal rewrites.
+ *
+ * <H1>Common subexpressions</H1>
+ * After simplification, equal subtrees with pure operations are merged into single node, so tree becomes
+ * directed acyclic graph. Value of node shared by several parents is calculated once per calculation,
+ * so in formula "sin(x * y) + sin(x * y) ^ 2" value of "sin(x * y)" is calculated once.
+ * Count of removed nodes is returned by {@link #getEliminatedNodesCount()}.
+ *
+ * <H1>Incremental evaluation</H1>
+ * Each operation node knows mask of variables it depends on. In incremental mode
+ * (see {@link #setIncrementalEvaluation(boolean)}) node keeps it's last value and {@link #setVariableValue(char, double)}
+ * marks changed variable as dirty, so {@link #calculate()} recalculates only nodes that depend on changed variables
+ * and reuses values of other nodes. Node with operation, which is not marked by {@link PureOperation}, is always
+ * recalculated. Counts of reused and recalculated nodes are returned by {@link #getReusedNodesCount()} and
+ * {@link #getRecalculatedNodesCount()}.
+ *
+ * <H1>Derivatives</H1>
+ * Partial derivatives of formula by chosen variables are calculated together with value in single pass
+ * by {@link #calculateDerivatives(char[], double[])} (forward mode of automatic differentiation) : each node
+ * calculates it's value and vector of it's derivatives by chosen variables (tangent) from values and tangents of
+ * children by chain rule. Derivatives of operations are provided by {@link DifferentiableUnaryOperation} and
+ * {@link DifferentiableBinaryOperation}, which are implemented by all built-in operations.
+ * Gradient by all variables is calculated by {@link #calculateGradient(double[])} (reverse mode) : forward
+ * calculation records each node to {@link GradientTape} together with partial derivatives of it's operation, and
+ * single backward sweep over tape propagates derivative of formula from root to variables. So cost of gradient
+ * doesn't depend on count of variables.
+ *
+ * <H1>Interval evaluation</H1>
+ * For given interval of each variable {@link #calculateInterval(double[], double[], double[])} returns interval,
+ * which contains value of formula for any values of variables from their intervals. Each node calculates interval
+ * of it's value from intervals of arguments by rules of {@link IntervalArithmetic}, so whole box of variable values
+ * is bounded by single evaluation.
+ *
+ * <H1>Tabulation</H1>
+ * Formula is calculated on grid of variable values by {@link #tabulate(VariableRange[], double[], boolean)}.
+ * Only last (innermost) variable is changed between neighbour points, so grid is calculated incrementally and values
+ * of subtrees, that don't depend on innermost variable, are reused. In case if formula is polynomial by innermost
+ * variable, each line of grid could be calculated by forward differences : few first points of each segment of line
+ * are calculated and each next point is sum of differences, so it costs few additions.
+ *
  * <H1>Example</H1>
  *  As example, for formula "( x - 2 ) * y - z / 4" result formula tree will be next :
  *
@@ -73,15 +143,122 @@ import static formula.parser.tree.FormulaItem.Type.*;
  */
 public class FormulaTree implements Formula {
 
+    /**
+     * Maximum degree of polynomial, which is tabulated by forward differences. Rounding error of differences grows
+     * with degree, so polynomial of greater degree is calculated directly.
+     */
+    public static final int MAXIMUM_DIFFERENCING_DEGREE = 8;
+
+    /*
+     * Each variable has own bit in dependency mask, except variables with slot greater than last bit,
+     * which share last bit. Node with impure operation depends on all bits, including impure bit, which is
+     * not a variable, so it's changed by each calculation.
+     */
+    private static final int LAST_VARIABLE_BIT = Long.SIZE - 2;
+    private static final long IMPURE_MASK = 1L << (Long.SIZE - 1);
+    private static final long ALL_VARIABLES_MASK = -1L;
+
+    /*
+     * Count of points of line, which are tabulated by differences built from the same calculated points.
+     */
+    private static final int DIFFERENCING_SEGMENT_SIZE = 32;
+
     private Node rootNode;
     private Set<Character> variables;
-    private Map<Character, Double> variablesValues;
+    private List<SimplificationRule> simplificationRules;
+    private boolean strictIeee;
+    private char[] variableOrder;
+    private double[] variableValues;
+    private boolean[] assignedVariables;
+    private FormulaProgram program;
+    private BatchCalculator batchCalculator;
+    private int eliminatedNodesCount;
+    private long evaluation;
+    private boolean incrementalEvaluation;
+    private long changedVariablesMask;
+    private long reusedNodesCount;
+    private long recalculatedNodesCount;
+    private int height;
+    private double[] tangents;
+    private GradientTape gradientTape;
+    private double[] intervals;
 
     public FormulaTree(List<FormulaToken> tokenList) {
+        this(tokenList, Arrays.<SimplificationRule>asList(SimplificationRules.values()), true);
+    }
+
+    /**
+     * Builds tree from given tokens and simplifies it by given rules.
+     *
+     * @param tokenList preprocessed and validated tokens of formula.
+     * @param simplificationRules rules that are applied to each operation node in given order.
+     * @param strictIeee 'true' in case if only rewrites, that keep result for NaN, infinite values
+     *                   and sign of zero, are allowed.
+     */
+    public FormulaTree(List<FormulaToken> tokenList, List<SimplificationRule> simplificationRules, boolean strictIeee) {
         Set<Character> variables = new HashSet<Character>();
         buildTree(tokenList, variables);
+        initialize(variables, simplificationRules, strictIeee);
+    }
+
+    /**
+     * Builds tree as a copy of given expression and simplifies it by given rules. Expression used several times
+     * by given expression is copied once, so it's calculated once. Variables of tree are variables present in
+     * expression.
+     *
+     * @param expression root expression of formula, that contains only digits, variables and operations.
+     * @param simplificationRules rules that are applied to each operation node in given order.
+     * @param strictIeee 'true' in case if only rewrites, that keep result for NaN, infinite values
+     *                   and sign of zero, are allowed.
+     * @throws IllegalArgumentException in case if expression contains brackets.
+     */
+    public FormulaTree(FormulaExpression expression, List<SimplificationRule> simplificationRules, boolean strictIeee) {
+        this(expression, Collections.<Character>emptySet(), simplificationRules, strictIeee);
+    }
+
+    /**
+     * Builds tree as a copy of given expression and simplifies it by given rules. Variables of tree are variables
+     * present in expression and given variables, so formula keeps variables, that were removed from expression
+     * by simplification (for example "z" of "x * z ^ 0"), and their values could still be set.
+     *
+     * @param expression root expression of formula, that contains only digits, variables and operations.
+     * @param variables declared variables of formula, which could be absent in expression.
+     * @param simplificationRules rules that are applied to each operation node in given order.
+     * @param strictIeee 'true' in case if only rewrites, that keep result for NaN, infinite values
+     *                   and sign of zero, are allowed.
+     * @throws IllegalArgumentException in case if expression contains brackets.
+     */
+    public FormulaTree(FormulaExpression expression, Set<Character> variables,
+                       List<SimplificationRule> simplificationRules, boolean strictIeee) {
+        Set<Character> treeVariables = new HashSet<Character>(variables);
+        rootNode = copyNode(expression, treeVariables, new IdentityHashMap<FormulaExpression, Node>());
+        initialize(treeVariables, simplificationRules, strictIeee);
+    }
+
+    private void initialize(Set<Character> variables, List<SimplificationRule> simplificationRules, boolean strictIeee) {
         this.variables = Collections.unmodifiableSet(variables);
-        variablesValues = new HashMap<Character, Double>(variables.size());
+        this.simplificationRules = simplificationRules;
+        this.strictIeee = strictIeee;
+        rootNode = foldConstants(rootNode);
+        rootNode = simplify(rootNode, simplificationRules, strictIeee);
+        rootNode = eliminateCommonSubexpressions(rootNode, new HashMap<NodeKey, Node>());
+        countUsages(rootNode);
+        variableOrder = createVariableOrder(variables);
+        variableValues = new double[variableOrder.length];
+        assignedVariables = new boolean[variableOrder.length];
+        resolveVariableSlots(rootNode);
+        resolveDependencyMasks(rootNode);
+        height = resolveHeight(rootNode, new IdentityHashMap<Node, Integer>());
+    }
+
+    private static char[] createVariableOrder(Set<Character> variables) {
+        char[] variableOrder = new char[variables.size()];
+        int slot = 0;
+        for (Character variable : variables) {
+            variableOrder[slot++] = variable;
+        }
+        Arrays.sort(variableOrder);
+        return variableOrder;
     }
 
     @Override
@@ -89,18 +266,417 @@ public class FormulaTree implements Formula {
         return variables;
     }
 
+    @Override
+    public char[] getVariableOrder() {
+        return variableOrder.clone();
+    }
+
     @Override
     public Formula setVariableValue(char variableName, double variableValue) {
-        if(!variables.contains(variableName)){
+        int slot = Arrays.binarySearch(variableOrder, variableName);
+        if(slot < 0){
             throw new IllegalArgumentException("Variable is absent in formula : " + variableName);
         }
-        variablesValues.put(variableName, variableValue);
+        setSlotValue(slot, variableValue);
         return this;
     }
 
+    private void setSlotValue(int slot, double variableValue) {
+        if (!assignedVariables[slot] ||
+                Double.doubleToRawLongBits(variableValues[slot]) != Double.doubleToRawLongBits(variableValue)) {
+            changedVariablesMask |= variableMask(slot);
+        }
+        variableValues[slot] = variableValue;
+        assignedVariables[slot] = true;
+    }
+
+    private static long variableMask(int slot) {
+        return 1L << Math.min(slot, LAST_VARIABLE_BIT);
+    }
+
+    /**
+     * Enables or disables incremental evaluation. In incremental mode each operation node keeps it's last value,
+     * which is reused by next calculation in case if variables, that node depends on, are not changed.
+     * Enabling of incremental mode marks all variables as changed.
+     *
+     * @param incrementalEvaluation 'true' to enable incremental evaluation.
+     * @return current instance.
+     */
+    public FormulaTree setIncrementalEvaluation(boolean incrementalEvaluation) {
+        if (incrementalEvaluation && !this.incrementalEvaluation) {
+            changedVariablesMask = ALL_VARIABLES_MASK;
+        }
+        this.incrementalEvaluation = incrementalEvaluation;
+        return this;
+    }
+
+    /**
+     * Return 'true' in case if incremental evaluation is enabled.
+     *
+     * @return 'true' in case if incremental evaluation is enabled.
+     */
+    public boolean isIncrementalEvaluation() {
+        return incrementalEvaluation;
+    }
+
+    /**
+     * Return count of operation nodes, which values were reused without recalculation by incremental evaluation.
+     * Children of reused node are not visited, so they are not counted.
+     *
+     * @return count of reused nodes for all calculations.
+     */
+    public long getReusedNodesCount() {
+        return reusedNodesCount;
+    }
+
+    /**
+     * Return count of operation nodes, which were recalculated by incremental evaluation.
+     *
+     * @return count of recalculated nodes for all calculations.
+     */
+    public long getRecalculatedNodesCount() {
+        return recalculatedNodesCount;
+    }
+
+    /**
+     * Calculates value of formula together with it's partial derivatives by given variables in single pass.
+     * Each variable of formula should have it's value, derivatives by the same variables could be calculated
+     * repeatedly without allocation.
+     *
+     * @param variableNames variables, which derivatives are calculated.
+     * @param derivatives array for derivatives, derivative by variableNames[i] is placed to derivatives[i].
+     * @return calculated value of formula.
+     * @throws IllegalArgumentException in case if some of variables is absent in formula or has no value,
+     *                                  or derivatives array is less than count of variables.
+     * @throws IllegalStateException in case if argument of operation, which is not {@link DifferentiableUnaryOperation}
+     *                               or {@link DifferentiableBinaryOperation}, depends on given variables.
+     */
+    public double calculateDerivatives(char[] variableNames, double[] derivatives) {
+        if (derivatives.length < variableNames.length) {
+            throw new IllegalArgumentException(String.format("Expected %d derivatives, but was %d",
+                    variableNames.length, derivatives.length));
+        }
+        for (char variableName : variableNames) {
+            if (Arrays.binarySearch(variableOrder, variableName) < 0) {
+                throw new IllegalArgumentException("Variable is absent in formula : " + variableName);
+            }
+        }
+
+        int tangentsSize = (height + 1) * variableNames.length;
+        if (tangents == null || tangents.length < tangentsSize) {
+            tangents = new double[tangentsSize];
+        }
+        evaluation++;
+        double value = checkNegativeZero(differentiate(rootNode, variableNames, 0));
+        System.arraycopy(tangents, 0, derivatives, 0, variableNames.length);
+        return value;
+    }
+
+    /**
+     * Calculates value of formula together with it's partial derivatives by all variables : forward calculation
+     * records tape and single backward sweep over it calculates whole gradient. Each variable of formula should
+     * have it's value. Tape is kept by formula, so repeated calculation of gradient allocates nothing.
+     *
+     * @param gradient array for derivatives in slot order (see {@link #getVariableOrder()}).
+     * @return calculated value of formula.
+     * @throws IllegalArgumentException in case if some of variables has no value or gradient array is less than
+     *                                  count of variables.
+     * @throws IllegalStateException in case if argument of operation, which is not {@link DifferentiableUnaryOperation}
+     *                               or {@link DifferentiableBinaryOperation}, depends on variables.
+     */
+    public double calculateGradient(double[] gradient) {
+        if (gradient.length < variableOrder.length) {
+            throw new IllegalArgumentException(String.format("Expected %d gradient values, but was %d",
+                    variableOrder.length, gradient.length));
+        }
+
+        if (gradientTape == null) {
+            gradientTape = new GradientTape();
+        }
+        gradientTape.clear();
+        evaluation++;
+        double value = gradientTape.getValue(record(rootNode));
+        gradientTape.calculateGradient(gradient, variableOrder.length);
+        return checkNegativeZero(value);
+    }
+
+    /**
+     * Calculates interval, which contains value of formula for any values of variables from given intervals.
+     * Interval could be wider than exact range of formula, but it never misses any value. Values, where
+     * operation is not defined (for example logarithm of negative value), are skipped, so in case if formula is
+     * not defined for any values from given intervals, both bounds of result are NaN. Intervals of
+     * custom operations are unknown, so their result is bounded by infinities.
+     *
+     * @param lowerBounds lower bounds of variables in slot order (see {@link #getVariableOrder()}).
+     * @param upperBounds upper bounds of variables in slot order.
+     * @param interval array for result, lower bound is placed to interval[0] and upper bound to interval[1].
+     * @throws IllegalArgumentException in case if arrays of bounds are less than count of variables, interval array
+     *                                  is less than two or lower bound of some variable is greater than upper one.
+     */
+    public void calculateInterval(double[] lowerBounds, double[] upperBounds, double[] interval) {
+        if (lowerBounds.length < variableOrder.length || upperBounds.length < variableOrder.length) {
+            throw new IllegalArgumentException(String.format("Expected %d variable bounds, but was %d and %d",
+                    variableOrder.length, lowerBounds.length, upperBounds.length));
+        }
+        if (interval.length < 2) {
+            throw new IllegalArgumentException("Expected 2 interval bounds, but was " + interval.length);
+        }
+        for (int slot = 0; slot < variableOrder.length; slot++) {
+            if (!(lowerBounds[slot] <= upperBounds[slot])) {
+                throw new IllegalArgumentException(String.format("Invalid bounds of %s variable : [%s, %s]",
+                        variableOrder[slot], lowerBounds[slot], upperBounds[slot]));
+            }
+        }
+
+        int intervalsSize = 2 * (height + 1);
+        if (intervals == null || intervals.length < intervalsSize) {
+            intervals = new double[intervalsSize];
+        }
+        evaluation++;
+        enclose(rootNode, lowerBounds, upperBounds, 0);
+        interval[0] = intervals[0];
+        interval[1] = intervals[1];
+    }
+
+    /**
+     * Calculates formula for each point of grid of given variable ranges without forward differencing.
+     *
+     * @param ranges ranges of grid variables, last range is innermost.
+     * @param results array for calculated values in grid order.
+     * @see #tabulate(VariableRange[], double[], boolean)
+     */
+    public void tabulate(VariableRange[] ranges, double[] results) {
+        tabulate(ranges, results, false);
+    }
+
+    /**
+     * Calculates formula for each point of grid of given variable ranges. Points are ordered so that last range is
+     * innermost : value for indexes (i0, i1, ..., in) of ranges points is placed to results by index
+     * (..(i0 * count1 + i1) * count2 + ...) + in. Variables, that are absent in ranges, should have their values,
+     * which are kept for all points. After tabulation each grid variable has value of last point.
+     * <br> Values of subtrees, that don't depend on innermost variable, are calculated once per line of grid.
+     * In case if forward differencing is enabled and formula is polynomial of degree 'd' by innermost variable
+     * (not greater than {@link #MAXIMUM_DIFFERENCING_DEGREE}), only 'd + 1' first points of each segment of line
+     * are calculated and next points are calculated by 'd' additions. Rounding errors of additions are accumulated
+     * along segment, so result could differ from direct calculation.
+     *
+     * @param ranges ranges of grid variables, last range is innermost.
+     * @param results array for calculated values in grid order.
+     * @param forwardDifferencing 'true' to calculate polynomial lines by forward differences.
+     * @throws IllegalArgumentException in case if variable of range is absent in formula or repeated, results array
+     *                                  is less than count of grid points or some of other variables has no value.
+     */
+    public void tabulate(VariableRange[] ranges, double[] results, boolean forwardDifferencing) {
+        int[] slots = new int[ranges.length];
+        long pointsCount = 1;
+        for (int i = 0; i < ranges.length; i++) {
+            slots[i] = Arrays.binarySearch(variableOrder, ranges[i].getVariableName());
+            if (slots[i] < 0) {
+                throw new IllegalArgumentException("Variable is absent in formula : " + ranges[i].getVariableName());
+            }
+            for (int j = 0; j < i; j++) {
+                if (slots[j] == slots[i]) {
+                    throw new IllegalArgumentException("Variable is repeated : " + ranges[i].getVariableName());
+                }
+            }
+            pointsCount *= ranges[i].getPointsCount();
+        }
+        if (results.length < pointsCount) {
+            throw new IllegalArgumentException(String.format("Expected %d results, but was %d",
+                    pointsCount, results.length));
+        }
+        if (ranges.length == 0) {
+            results[0] = calculate();
+            return;
+        }
+
+        boolean incremental = incrementalEvaluation;
+        setIncrementalEvaluation(true);
+        try {
+            int innerSlot = slots[ranges.length - 1];
+            int degree = forwardDifferencing ? polynomialDegree(rootNode, innerSlot) : -1;
+            double[] differences = new double[degree + 1];
+            VariableRange innerRange = ranges[ranges.length - 1];
+            int[] indexes = new int[ranges.length - 1];
+            for (int offset = 0; offset < pointsCount; offset += innerRange.getPointsCount()) {
+                for (int i = 0; i < indexes.length; i++) {
+                    setSlotValue(slots[i], ranges[i].getValue(indexes[i]));
+                }
+                if (degree >= 0) {
+                    tabulateByDifferences(innerRange, innerSlot, differences, results, offset);
+                } else {
+                    tabulateDirectly(innerRange, innerSlot, results, offset);
+                }
+                nextIndexes(ranges, indexes);
+            }
+        } finally {
+            incrementalEvaluation = incremental;
+        }
+    }
+
+    private void tabulateDirectly(VariableRange range, int slot, double[] results, int offset) {
+        for (int i = 0; i < range.getPointsCount(); i++) {
+            setSlotValue(slot, range.getValue(i));
+            results[offset + i] = calculate();
+        }
+    }
+
+    /*
+     * Differences of polynomial of degree 'd' are built from 'd + 1' calculated points : differences[k] is
+     * k-th forward difference at current point. Moving to next point adds each next difference to previous one,
+     * last difference is constant. Error of differences grows with count of steps, so they are rebuilt from
+     * calculated points for each segment of line.
+     */
+    private void tabulateByDifferences(VariableRange range, int slot, double[] differences, double[] results,
+                                       int offset) {
+        int degree = differences.length - 1;
+        int pointsCount = range.getPointsCount();
+        for (int start = 0; start < pointsCount; start += DIFFERENCING_SEGMENT_SIZE) {
+            int end = Math.min(start + DIFFERENCING_SEGMENT_SIZE, pointsCount);
+            int calculatedEnd = Math.min(start + degree + 1, end);
+            for (int i = start; i < calculatedEnd; i++) {
+                setSlotValue(slot, range.getValue(i));
+                differences[i - start] = calculate();
+                results[offset + i] = differences[i - start];
+            }
+            if (calculatedEnd == end) {
+                continue;
+            }
+
+            for (int k = 1; k <= degree; k++) {
+                for (int i = degree; i >= k; i--) {
+                    differences[i] -= differences[i - 1];
+                }
+            }
+            for (int i = start + 1; i < end; i++) {
+                for (int k = 0; k < degree; k++) {
+                    differences[k] += differences[k + 1];
+                }
+                if (i >= calculatedEnd) {
+                    results[offset + i] = checkNegativeZero(differences[0]);
+                }
+            }
+        }
+        setSlotValue(slot, range.getValue(pointsCount - 1));
+    }
+
+    private static void nextIndexes(VariableRange[] ranges, int[] indexes) {
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            if (++indexes[i] < ranges[i].getPointsCount()) {
+                return;
+            }
+            indexes[i] = 0;
+        }
+    }
+
+    /**
+     * Return canonical form of tree : list of variables followed by {@link FormulaExpressions#canonicalForm}
+     * of root node. Trees are built without brackets and literals are folded, so formulas, that differ only
+     * by brackets, spaces, notation of literals and order of arguments of commutative addition and multiplication,
+     * have equal canonical forms, for example "x+y", "y + x" and "(x)+(y)". Since variables are listed, trees with
+     * equal forms have the same slots of variables and are compiled to the same program.
+     * <br> In case if variables are renamed, they are renamed to "$0", "$1", ... in slot order, so formulas, that
+     * differ only by names of variables, have equal forms, but their programs differ only by names of variables.
+     *
+     * @param renameVariables 'true' to rename variables in slot order.
+     * @return canonical form of tree.
+     */
+    public String getCanonicalForm(boolean renameVariables) {
+        StringBuilder form = new StringBuilder("[");
+        for (int slot = 0; slot < variableOrder.length; slot++) {
+            if (slot > 0) {
+                form.append(',');
+            }
+            form.append(renameVariables ? "$" + slot : String.valueOf(variableOrder[slot]));
+        }
+        form.append(']');
+        return form.append(FormulaExpressions.canonicalForm(rootNode, renameVariables ? variableOrder : null))
+                .toString();
+    }
+
+    /**
+     * Return count of nodes, that were removed from tree by merge of equal subtrees.
+     *
+     * @return count of eliminated nodes.
+     */
+    public int getEliminatedNodesCount() {
+        return eliminatedNodesCount;
+    }
+
     @Override
     public double calculate() {
-        return checkNegativeZero(calculate(rootNode));
+        evaluation++;
+        double value = checkNegativeZero(calculate(rootNode));
+        changedVariablesMask = 0;
+        return value;
+    }
+
+    @Override
+    public double calculate(double[] variableValues) {
+        if (variableValues.length < variableOrder.length) {
+            throw new IllegalArgumentException(String.format("Expected %d variable values, but was %d",
+                    variableOrder.length, variableValues.length));
+        }
+        for (int slot = 0; slot < variableOrder.length; slot++) {
+            setSlotValue(slot, variableValues[slot]);
+        }
+        return calculate();
+    }
+
+    @Override
+    public void calculate(double[][] variableColumns, double[] results) {
+        if (batchCalculator == null) {
+            batchCalculator = new BatchCalculator(getProgram());
+        }
+        batchCalculator.calculate(variableColumns, results);
+        for (int i = 0; i < results.length; i++) {
+            results[i] = checkNegativeZero(results[i]);
+        }
+    }
+
+    @Override
+    public Formula compile() {
+        return compile(FormulaEngines.INTERPRETER);
+    }
+
+    @Override
+    public Formula compile(FormulaEngine engine) {
+        return new CompiledFormula(getProgram(), engine);
+    }
+
+    @Override
+    public ImmutableFormula toImmutableFormula() {
+        return new ImmutableFormula(getProgram());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Tree is copied with digits instead of bound variables, so copy is folded and simplified by the same
+     * rules as current tree and compiled by {@link FormulaEngines#INTERPRETER}.
+     */
+    @Override
+    public Formula specialize(Map<Character, Double> variableBindings) {
+        for (Character variable : variableBindings.keySet()) {
+            if (!variables.contains(variable)) {
+                throw new IllegalArgumentException("Variable is absent in formula : " + variable);
+            }
+        }
+        FormulaExpression expression = FormulaExpressions.bindVariables(rootNode, variableBindings);
+        Set<Character> remainingVariables = new HashSet<Character>(variables);
+        remainingVariables.removeAll(variableBindings.keySet());
+        return new FormulaTree(expression, remainingVariables, simplificationRules, strictIeee).compile();
+    }
+
+    /*
+     * Program is immutable, so it's built once and shared by all compiled formulas of tree.
+     */
+    private FormulaProgram getProgram() {
+        if (program == null) {
+            FormulaProgramBuilder programBuilder = new FormulaProgramBuilder(variables);
+            compile(rootNode, programBuilder, new IdentityHashMap<Node, Integer>());
+            program = programBuilder.build();
+        }
+        return program;
     }
 
     private void buildTree(List<FormulaToken> tokenList, Set<Character> variables) {
@@ -120,6 +696,278 @@ public class FormulaTree implements Formula {
         return rootNode;
     }
 
+    /*
+     * Replaces each subtree without variables, which contains only pure operations, by digit node with it's value.
+     * Returns node that should be placed instead of given one.
+     */
+    private Node foldConstants(Node node) {
+        FormulaItem item = node.getFormulaItem();
+        if (node.isLeaf()) {
+            return node;
+        }
+
+        node.setLeftNode(foldConstants(node.getLeftNode()));
+        if (item.isBinaryOperation()) {
+            node.setRightNode(foldConstants(node.getRightNode()));
+        }
+
+        if (isFoldable(node)) {
+            return new Node(FormulaItem.newDigitItem(calculateOperation(node)), node.getParentNode());
+        }
+        return node;
+    }
+
+    private boolean isFoldable(Node node) {
+        FormulaItem item = node.getFormulaItem();
+        if (item.getType() != OPERATION || !(item.getOperation() instanceof PureOperation)) {
+            return false;
+        }
+        return  node.getLeftNode().getFormulaItem().getType() == DIGIT &&
+                (!item.isBinaryOperation() || node.getRightNode().getFormulaItem().getType() == DIGIT);
+    }
+
+    /*
+     * Rewrites operation node by first applicable rule until no rule could be applied. Children of node
+     * are simplified first, so rules see simplified arguments, and node with digit arguments is folded.
+     * Returns node that should be placed instead of given one.
+     */
+    private Node simplify(Node node, List<SimplificationRule> simplificationRules, boolean strictIeee) {
+        if (node.isLeaf()) {
+            return node;
+        }
+
+        node.setLeftNode(simplify(node.getLeftNode(), simplificationRules, strictIeee));
+        if (node.getFormulaItem().isBinaryOperation()) {
+            node.setRightNode(simplify(node.getRightNode(), simplificationRules, strictIeee));
+        }
+
+        if (isFoldable(node)) {
+            return new Node(FormulaItem.newDigitItem(calculateOperation(node)), node.getParentNode());
+        }
+
+        for (SimplificationRule simplificationRule : simplificationRules) {
+            FormulaExpression expression = simplificationRule.simplify(node, strictIeee);
+            if (expression != node) {
+                Node simplifiedNode = toNode(expression, new IdentityHashMap<FormulaExpression, Node>());
+                return simplify(simplifiedNode, simplificationRules, strictIeee);
+            }
+        }
+        return node;
+    }
+
+    /*
+     * Expression returned by rule is either node of tree or new expression built by rule. Expression used
+     * several times by rule is turned into single node, so it's calculated once.
+     */
+    private Node toNode(FormulaExpression expression, Map<FormulaExpression, Node> nodes) {
+        if (expression instanceof Node) {
+            return (Node) expression;
+        }
+
+        Node node = nodes.get(expression);
+        if (node != null) {
+            return node;
+        }
+
+        FormulaItem item = expression.getFormulaItem();
+        if (item.isBracket() || (item.getType() == VARIABLE && !variables.contains(item.getVariableName()))) {
+            throw new IllegalStateException("Simplification rule returned unsupported item : " + item);
+        }
+
+        node = new Node(item, null);
+        if (item.getType() == OPERATION) {
+            node.setLeftNode(toNode(expression.getLeftExpression(), nodes));
+            if (item.isBinaryOperation()) {
+                node.setRightNode(toNode(expression.getRightExpression(), nodes));
+            }
+        }
+        nodes.put(expression, node);
+        return node;
+    }
+
+    /*
+     * Copies given expression into new nodes, shared expression is copied once.
+     */
+    private Node copyNode(FormulaExpression expression, Set<Character> variables, Map<FormulaExpression, Node> nodes) {
+        Node node = nodes.get(expression);
+        if (node != null) {
+            return node;
+        }
+
+        FormulaItem item = expression.getFormulaItem();
+        if (item.isBracket()) {
+            throw new IllegalArgumentException("Expression contains unsupported item : " + item);
+        }
+
+        node = new Node(item, null);
+        if (item.getType() == VARIABLE) {
+            variables.add(item.getVariableName());
+        } else if (item.getType() == OPERATION) {
+            node.setLeftNode(copyNode(expression.getLeftExpression(), variables, nodes));
+            if (item.isBinaryOperation()) {
+                node.setRightNode(copyNode(expression.getRightExpression(), variables, nodes));
+            }
+        }
+        nodes.put(expression, node);
+        return node;
+    }
+
+    /*
+     * Merges equal subtrees into single node (hash-consing), so tree becomes directed acyclic graph.
+     * Subtrees are compared bottom-up : children of node are already merged, so node is equal to another one
+     * in case if their items are equal and they refer to the same children. Only subtrees with pure operations
+     * are merged, since subtree with other operation has own node, which is never equal to another one.
+     * Node could be already shared after simplification, so it's visited several times, but counted once.
+     * Returns node that should be placed instead of given one.
+     */
+    private Node eliminateCommonSubexpressions(Node node, Map<NodeKey, Node> uniqueNodes) {
+        FormulaItem item = node.getFormulaItem();
+        if (!node.isLeaf()) {
+            node.setLeftNode(eliminateCommonSubexpressions(node.getLeftNode(), uniqueNodes));
+            if (item.isBinaryOperation()) {
+                node.setRightNode(eliminateCommonSubexpressions(node.getRightNode(), uniqueNodes));
+            }
+
+            if (item.getType() != OPERATION || !(item.getOperation() instanceof PureOperation)) {
+                return node;
+            }
+        }
+
+        NodeKey key = new NodeKey(node);
+        Node uniqueNode = uniqueNodes.get(key);
+        if (uniqueNode == null) {
+            uniqueNodes.put(key, node);
+            return node;
+        }
+        if (uniqueNode == node) {
+            return node;
+        }
+        eliminatedNodesCount++;
+        return uniqueNode;
+    }
+
+    /*
+     * Counts parents of each node of graph, children of node are visited only once.
+     */
+    private void countUsages(Node node) {
+        node.addUsage();
+        if (node.isShared() || node.isLeaf()) {
+            return;
+        }
+
+        countUsages(node.getLeftNode());
+        if (node.getFormulaItem().isBinaryOperation()) {
+            countUsages(node.getRightNode());
+        }
+    }
+
+    /*
+     * Stores slot of variable in each variable node, so value of variable is read from values array by index.
+     */
+    private void resolveVariableSlots(Node node) {
+        if (node == null) {
+            return;
+        }
+
+        FormulaItem item = node.getFormulaItem();
+        if (item.getType() == FormulaItem.Type.VARIABLE) {
+            node.setVariableSlot(Arrays.binarySearch(variableOrder, item.getVariableName()));
+        } else if (!node.isLeaf()) {
+            resolveVariableSlots(node.getLeftNode());
+            if (item.isBinaryOperation()) {
+                resolveVariableSlots(node.getRightNode());
+            }
+        }
+    }
+
+    /*
+     * Stores in each operation node mask of variables, that value of node depends on.
+     * Returns mask of given node.
+     */
+    private long resolveDependencyMasks(Node node) {
+        FormulaItem item = node.getFormulaItem();
+        if (item.getType() == VARIABLE) {
+            return variableMask(node.getVariableSlot());
+        }
+        if (node.isLeaf() || node.getDependencyMask() != 0) {
+            return node.getDependencyMask();
+        }
+
+        long dependencyMask = resolveDependencyMasks(node.getLeftNode());
+        if (item.isBinaryOperation()) {
+            dependencyMask |= resolveDependencyMasks(node.getRightNode());
+        }
+        if (!(item.getOperation() instanceof PureOperation)) {
+            dependencyMask = ALL_VARIABLES_MASK;
+        }
+        node.setDependencyMask(dependencyMask);
+        return dependencyMask;
+    }
+
+    /*
+     * Return count of edges in the longest path from given node to leaf.
+     */
+    private int resolveHeight(Node node, Map<Node, Integer> heights) {
+        if (node.isLeaf()) {
+            return 0;
+        }
+
+        Integer nodeHeight = heights.get(node);
+        if (nodeHeight == null) {
+            nodeHeight = resolveHeight(node.getLeftNode(), heights);
+            if (node.getFormulaItem().isBinaryOperation()) {
+                nodeHeight = Math.max(nodeHeight, resolveHeight(node.getRightNode(), heights));
+            }
+            nodeHeight++;
+            heights.put(node, nodeHeight);
+        }
+        return nodeHeight;
+    }
+
+    /*
+     * Return degree of polynomial, that node represents by variable with given slot, or -1 in case if node isn't
+     * polynomial or it's degree is greater than maximum. Node, that doesn't depend on variable, has zero degree.
+     */
+    private int polynomialDegree(Node node, int slot) {
+        FormulaItem item = node.getFormulaItem();
+        if (item.getType() == VARIABLE) {
+            return node.getVariableSlot() == slot ? 1 : 0;
+        }
+        if (node.isLeaf() || (node.getDependencyMask() & variableMask(slot)) == 0) {
+            return 0;
+        }
+
+        int leftDegree = polynomialDegree(node.getLeftNode(), slot);
+        int rightDegree = item.isBinaryOperation() ? polynomialDegree(node.getRightNode(), slot) : 0;
+        if (leftDegree < 0 || rightDegree < 0) {
+            return -1;
+        }
+
+        int degree;
+        Operation operation = item.getOperation();
+        if (operation == BinaryOperations.ADDITION) {
+            degree = Math.max(leftDegree, rightDegree);
+        } else if (operation == BinaryOperations.MULTIPLY) {
+            degree = leftDegree + rightDegree;
+        } else if (operation == BinaryOperations.DIVISION && rightDegree == 0) {
+            degree = leftDegree;
+        } else if (operation == BinaryOperations.POWER && isNaturalDigit(node.getRightNode())) {
+            degree = leftDegree * (int) Math.min(node.getRightNode().getFormulaItem().getDigitLiteralValue(),
+                    MAXIMUM_DIFFERENCING_DEGREE + 1);
+        } else if (operation == UnaryOperations.SUBTRACTION) {
+            degree = leftDegree;
+        } else {
+            return -1;
+        }
+        return degree <= MAXIMUM_DIFFERENCING_DEGREE ? degree : -1;
+    }
+
+    private static boolean isNaturalDigit(Node node) {
+        FormulaItem item = node.getFormulaItem();
+        return  item.getType() == DIGIT && item.getDigitLiteralValue() >= 0 &&
+                item.getDigitLiteralValue() == Math.rint(item.getDigitLiteralValue());
+    }
+
     private void addVariable(FormulaToken token, Set<Character> variables) {
         if (token.getItem().getType() == FormulaItem.Type.VARIABLE) {
             variables.add(token.getItem().getVariableName());
@@ -563,7 +1411,46 @@ public class FormulaTree implements Formula {
         removeBrackets(startNode.getRightNode());
     }
 
+    /*
+     * Value of node, which is shared by several parents, is calculated once per evaluation.
+     */
     private double calculate(Node node) {
+        if (incrementalEvaluation && !node.isLeaf()) {
+            return calculateIncrementally(node);
+        }
+
+        if (!node.isShared()) {
+            return calculateNode(node);
+        }
+
+        if (node.getEvaluation() != evaluation) {
+            node.setValue(calculateNode(node), evaluation);
+        }
+        return node.getValue();
+    }
+
+    /*
+     * Value of node is recalculated only in case if some of variables, that node depends on, are changed,
+     * or node depends on impure operation. Shared node is visited once per evaluation.
+     */
+    private double calculateIncrementally(Node node) {
+        if (node.getEvaluation() == evaluation) {
+            return node.getValue();
+        }
+
+        double value;
+        if ((node.getDependencyMask() & (changedVariablesMask | IMPURE_MASK)) != 0) {
+            value = calculateOperation(node);
+            recalculatedNodesCount++;
+        } else {
+            value = node.getValue();
+            reusedNodesCount++;
+        }
+        node.setValue(value, evaluation);
+        return value;
+    }
+
+    private double calculateNode(Node node) {
         switch (node.getFormulaItem().getType()) {
 
             case OPERATION:
@@ -580,6 +1467,231 @@ public class FormulaTree implements Formula {
         }
     }
 
+    /*
+     * Adds items of tree to program in postfix order : left subtree, right subtree and than node item.
+     * Value of shared operation node is stored to temporary slot by first usage and loaded by next usages.
+     */
+    private void compile(Node node, FormulaProgramBuilder programBuilder, Map<Node, Integer> temporaries) {
+        Integer temporary = temporaries.get(node);
+        if (temporary != null) {
+            programBuilder.loadTemporary(temporary);
+            return;
+        }
+
+        FormulaItem item = node.getFormulaItem();
+        if (item.isBinaryOperation()) {
+            compile(node.getLeftNode(), programBuilder, temporaries);
+            compile(node.getRightNode(), programBuilder, temporaries);
+        } else if (item.isUnaryOperation()) {
+            compile(node.getLeftNode(), programBuilder, temporaries);
+        } else if (!item.isArgument()) {
+            throw new IllegalStateException("Unknown item for compilation : " + item);
+        }
+        programBuilder.addItem(item);
+
+        if (node.isShared()) {
+            temporaries.put(node, programBuilder.storeTemporary());
+        }
+    }
+
+    /*
+     * Calculates value of node and writes it's tangent - derivatives by given variables - to tangents array
+     * starting from given offset. Tangent of left argument is calculated at the same offset and tangent of
+     * right argument after it, so node at depth 'd' uses not more than 'd + 1' tangents. Tangent of shared node
+     * is kept in node, so it's calculated once per evaluation.
+     */
+    private double differentiate(Node node, char[] variableNames, int offset) {
+        int count = variableNames.length;
+        FormulaItem item = node.getFormulaItem();
+        if (item.getType() == VARIABLE) {
+            for (int i = 0; i < count; i++) {
+                tangents[offset + i] = variableNames[i] == item.getVariableName() ? 1 : 0;
+            }
+            return getVariableValue(node);
+        }
+        if (item.getType() == DIGIT) {
+            Arrays.fill(tangents, offset, offset + count, 0);
+            return getLiteralValue(node);
+        }
+
+        if (node.isShared() && node.getEvaluation() == evaluation) {
+            System.arraycopy(node.getTangents(), 0, tangents, offset, count);
+            return node.getValue();
+        }
+
+        double value;
+        if (item.isBinaryOperation()) {
+            value = differentiateBinaryOperation(node, variableNames, offset);
+        } else {
+            value = differentiateUnaryOperation(node, variableNames, offset);
+        }
+        if (node.isShared()) {
+            node.setValue(value, evaluation);
+            node.setTangents(tangents, offset, count);
+        }
+        return value;
+    }
+
+    /*
+     * Derivative of operation is calculated only in case if argument depends on given variables, so formula
+     * with operation, which is not differentiable or has no finite derivative, could be differentiated
+     * by other variables.
+     */
+    private double differentiateBinaryOperation(Node node, char[] variableNames, int offset) {
+        int count = variableNames.length;
+        BinaryOperation operation = (BinaryOperation) node.getFormulaItem().getOperation();
+        double leftArgument = differentiate(node.getLeftNode(), variableNames, offset);
+        double rightArgument = differentiate(node.getRightNode(), variableNames, offset + count);
+
+        double leftDerivative = isZeroTangent(offset, count) ? 0 :
+                toDifferentiable(operation).derivativeByFirstArgument(leftArgument, rightArgument);
+        double rightDerivative = isZeroTangent(offset + count, count) ? 0 :
+                toDifferentiable(operation).derivativeBySecondArgument(leftArgument, rightArgument);
+        for (int i = offset; i < offset + count; i++) {
+            tangents[i] = chain(tangents[i], leftDerivative) + chain(tangents[i + count], rightDerivative);
+        }
+        return operation.operate(leftArgument, rightArgument);
+    }
+
+    private double differentiateUnaryOperation(Node node, char[] variableNames, int offset) {
+        int count = variableNames.length;
+        UnaryOperation operation = (UnaryOperation) node.getFormulaItem().getOperation();
+        double argument = differentiate(node.getLeftNode(), variableNames, offset);
+
+        if (!isZeroTangent(offset, count)) {
+            double derivative = toDifferentiable(operation).derivative(argument);
+            for (int i = offset; i < offset + count; i++) {
+                tangents[i] = chain(tangents[i], derivative);
+            }
+        }
+        return operation.operate(argument);
+    }
+
+    /*
+     * Records node and it's arguments to gradient tape, returns index of node entry. Shared node is recorded once
+     * per evaluation. Partial derivative by constant argument isn't needed, so it's not calculated.
+     */
+    private int record(Node node) {
+        FormulaItem item = node.getFormulaItem();
+        if (item.getType() == VARIABLE) {
+            return gradientTape.addVariable(node.getVariableSlot(), getVariableValue(node));
+        }
+        if (item.getType() == DIGIT) {
+            return gradientTape.addConstant(getLiteralValue(node));
+        }
+
+        if (node.isShared() && node.getEvaluation() == evaluation) {
+            return node.getTapeIndex();
+        }
+
+        int index;
+        if (item.isBinaryOperation()) {
+            index = recordBinaryOperation(node);
+        } else {
+            index = recordUnaryOperation(node);
+        }
+        if (node.isShared()) {
+            node.setValue(gradientTape.getValue(index), evaluation);
+            node.setTapeIndex(index);
+        }
+        return index;
+    }
+
+    private int recordBinaryOperation(Node node) {
+        BinaryOperation operation = (BinaryOperation) node.getFormulaItem().getOperation();
+        int leftIndex = record(node.getLeftNode());
+        int rightIndex = record(node.getRightNode());
+        double leftArgument = gradientTape.getValue(leftIndex);
+        double rightArgument = gradientTape.getValue(rightIndex);
+
+        double leftPartial = gradientTape.isConstant(leftIndex) ? 0 :
+                toDifferentiable(operation).derivativeByFirstArgument(leftArgument, rightArgument);
+        double rightPartial = gradientTape.isConstant(rightIndex) ? 0 :
+                toDifferentiable(operation).derivativeBySecondArgument(leftArgument, rightArgument);
+        return gradientTape.addOperation(operation.operate(leftArgument, rightArgument),
+                leftIndex, leftPartial, rightIndex, rightPartial);
+    }
+
+    private int recordUnaryOperation(Node node) {
+        UnaryOperation operation = (UnaryOperation) node.getFormulaItem().getOperation();
+        int argumentIndex = record(node.getLeftNode());
+        double argument = gradientTape.getValue(argumentIndex);
+
+        double partial = gradientTape.isConstant(argumentIndex) ? 0 : toDifferentiable(operation).derivative(argument);
+        return gradientTape.addOperation(operation.operate(argument), argumentIndex, partial,
+                GradientTape.NO_ARGUMENT, 0);
+    }
+
+    /*
+     * Writes interval of node to intervals array at given offset, interval of left argument is calculated at the same
+     * offset and interval of right argument after it. Interval of shared node is kept in node, so it's calculated
+     * once per evaluation.
+     */
+    private void enclose(Node node, double[] lowerBounds, double[] upperBounds, int offset) {
+        FormulaItem item = node.getFormulaItem();
+        if (item.getType() == VARIABLE) {
+            intervals[offset] = lowerBounds[node.getVariableSlot()];
+            intervals[offset + 1] = upperBounds[node.getVariableSlot()];
+            return;
+        }
+        if (item.getType() == DIGIT) {
+            intervals[offset] = getLiteralValue(node);
+            intervals[offset + 1] = getLiteralValue(node);
+            return;
+        }
+
+        if (node.isShared() && node.getEvaluation() == evaluation) {
+            intervals[offset] = node.getLowerBound();
+            intervals[offset + 1] = node.getUpperBound();
+            return;
+        }
+
+        enclose(node.getLeftNode(), lowerBounds, upperBounds, offset);
+        if (!item.isBinaryOperation()) {
+            IntervalArithmetic.operate((UnaryOperation) item.getOperation(), intervals, offset);
+        } else if (item.getOperation() == BinaryOperations.MULTIPLY && node.getLeftNode() == node.getRightNode()) {
+            IntervalArithmetic.square(intervals, offset);
+        } else {
+            enclose(node.getRightNode(), lowerBounds, upperBounds, offset + 2);
+            IntervalArithmetic.operate((BinaryOperation) item.getOperation(), intervals, offset);
+        }
+
+        if (node.isShared()) {
+            node.setInterval(intervals[offset], intervals[offset + 1], evaluation);
+        }
+    }
+
+    private boolean isZeroTangent(int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            if (tangents[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Derivative by variable, which argument doesn't depend on, is zero even if derivative of operation
+     * is infinite or NaN.
+     */
+    private static double chain(double argumentDerivative, double operationDerivative) {
+        return argumentDerivative == 0 ? 0 : argumentDerivative * operationDerivative;
+    }
+
+    private static DifferentiableBinaryOperation toDifferentiable(BinaryOperation operation) {
+        if (!(operation instanceof DifferentiableBinaryOperation)) {
+            throw new IllegalStateException("Operation is not differentiable : " + operation.getSigns()[0]);
+        }
+        return (DifferentiableBinaryOperation) operation;
+    }
+
+    private static DifferentiableUnaryOperation toDifferentiable(UnaryOperation operation) {
+        if (!(operation instanceof DifferentiableUnaryOperation)) {
+            throw new IllegalStateException("Operation is not differentiable : " + operation.getSigns()[0]);
+        }
+        return (DifferentiableUnaryOperation) operation;
+    }
+
     private double calculateOperation(Node node) {
         if (node.getFormulaItem().isBinaryOperation()) {
 
@@ -606,25 +1718,106 @@ public class FormulaTree implements Formula {
     }
 
     private double getVariableValue(Node node) {
-        char variableName = node.getFormulaItem().getVariableName();
-        Double value = variablesValues.get(variableName);
-        if (value == null) {
-            throw new IllegalArgumentException(String.format("No mapped value for %s variable", variableName));
+        int slot = node.getVariableSlot();
+        if (!assignedVariables[slot]) {
+            throw new IllegalArgumentException(String.format("No mapped value for %s variable", variableOrder[slot]));
         }
-        return value;
+        return variableValues[slot];
     }
 
-    private static class Node {
+    private static class Node implements FormulaExpression {
 
         private Node parentNode;
         private Node rightNode, leftNode;
         private FormulaItem formulaItem;
+        private int variableSlot;
+        private int usagesCount;
+        private long dependencyMask;
+        private long evaluation;
+        private double value;
+        private double[] tangents;
+        private int tapeIndex;
+        private double lowerBound;
+        private double upperBound;
 
         Node(FormulaItem item, Node parent) {
             formulaItem = item;
             parentNode = parent;
         }
 
+        void setVariableSlot(int slot) {
+            variableSlot = slot;
+        }
+
+        int getVariableSlot() {
+            return variableSlot;
+        }
+
+        void setDependencyMask(long mask) {
+            dependencyMask = mask;
+        }
+
+        long getDependencyMask() {
+            return dependencyMask;
+        }
+
+        void addUsage() {
+            usagesCount++;
+        }
+
+        /*
+         * Only operation node is shared, since leaf value is not calculated.
+         */
+        boolean isShared() {
+            return usagesCount > 1 && !isLeaf();
+        }
+
+        void setValue(double value, long evaluation) {
+            this.value = value;
+            this.evaluation = evaluation;
+        }
+
+        double getValue() {
+            return value;
+        }
+
+        void setTangents(double[] source, int offset, int count) {
+            if (tangents == null || tangents.length < count) {
+                tangents = new double[count];
+            }
+            System.arraycopy(source, offset, tangents, 0, count);
+        }
+
+        double[] getTangents() {
+            return tangents;
+        }
+
+        void setInterval(double lowerBound, double upperBound, long evaluation) {
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+            this.evaluation = evaluation;
+        }
+
+        double getLowerBound() {
+            return lowerBound;
+        }
+
+        double getUpperBound() {
+            return upperBound;
+        }
+
+        void setTapeIndex(int index) {
+            tapeIndex = index;
+        }
+
+        int getTapeIndex() {
+            return tapeIndex;
+        }
+
+        long getEvaluation() {
+            return evaluation;
+        }
+
         void setParentNode(Node node) {
             parentNode = node;
         }
@@ -645,10 +1838,21 @@ public class FormulaTree implements Formula {
             }
         }
 
-        FormulaItem getFormulaItem() {
+        @Override
+        public FormulaItem getFormulaItem() {
             return formulaItem;
         }
 
+        @Override
+        public FormulaExpression getLeftExpression() {
+            return isLeaf() ? null : leftNode;
+        }
+
+        @Override
+        public FormulaExpression getRightExpression() {
+            return formulaItem.isBinaryOperation() ? rightNode : null;
+        }
+
         Node getParentNode() {
             return parentNode;
         }
@@ -672,6 +1876,44 @@ public class FormulaTree implements Formula {
         }
     }
 
+    /*
+     * Key of node for hash-consing : item of node and identities of it's children.
+     */
+    private static class NodeKey {
+
+        private final FormulaItem item;
+        private final Node leftNode;
+        private final Node rightNode;
+
+        NodeKey(Node node) {
+            item = node.getFormulaItem();
+            leftNode = node.isLeaf() ? null : node.getLeftNode();
+            rightNode = item.isBinaryOperation() ? node.getRightNode() : null;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof NodeKey)) {
+                return false;
+            }
+
+            NodeKey another = (NodeKey) object;
+            return  item.equals(another.item) &&
+                    Double.doubleToLongBits(item.getDigitLiteralValue()) ==
+                            Double.doubleToLongBits(another.item.getDigitLiteralValue()) &&
+                    leftNode == another.leftNode &&
+                    rightNode == another.rightNode;
+        }
+
+        @Override
+        public int hashCode() {
+            int hashCode = item.hashCode();
+            hashCode = 31 * hashCode + System.identityHashCode(leftNode);
+            hashCode = 31 * hashCode + System.identityHashCode(rightNode);
+            return hashCode;
+        }
+    }
+
     private static class BracketsNode extends Node {
 
         private Node parentBracket;
@@ -694,7 +1936,7 @@ public class FormulaTree implements Formula {
         }
 
         @Override
-        FormulaItem getFormulaItem(){
+        public FormulaItem getFormulaItem(){
             return !hasClosedBracket() ? super.getFormulaItem() : closeBracket ;
         }
 
@@ -0,0 +1,114 @@
+package formula.parser.tree;
+
+import java.util.Arrays;
+
+/**
+ * <H1>General</H1>
+ * Tape of reverse mode automatic differentiation. Forward calculation of {@link FormulaTree} records each calculated
+ * node as tape entry : it's value, indexes of argument entries and partial derivatives of operation by
+ * arguments. Arguments are always recorded before operation, so gradient is calculated by single backward sweep
+ * over entries, where adjoint of each entry - derivative of formula by entry value - is propagated to it's arguments.
+ *
+ * <H1>Buffers</H1>
+ * Entries are stored in parallel primitive arrays, which grow by recording and are reused after {@link #clear()},
+ * so repeated calculation of gradient allocates nothing.
+ */
+/*package*/ final class GradientTape {
+
+    /*package*/ static final int NO_ARGUMENT = -1;
+
+    private static final int NO_VARIABLE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private double[] values = new double[INITIAL_CAPACITY];
+    private int[] variableSlots = new int[INITIAL_CAPACITY];
+    private int[] leftArguments = new int[INITIAL_CAPACITY];
+    private int[] rightArguments = new int[INITIAL_CAPACITY];
+    private double[] leftPartials = new double[INITIAL_CAPACITY];
+    private double[] rightPartials = new double[INITIAL_CAPACITY];
+    private double[] adjoints = new double[INITIAL_CAPACITY];
+    private int size;
+
+    /*package*/ void clear() {
+        size = 0;
+    }
+
+    /*package*/ int addConstant(double value) {
+        return add(value, NO_VARIABLE, NO_ARGUMENT, 0, NO_ARGUMENT, 0);
+    }
+
+    /*package*/ int addVariable(int slot, double value) {
+        return add(value, slot, NO_ARGUMENT, 0, NO_ARGUMENT, 0);
+    }
+
+    /*
+     * Operation over constant arguments is recorded as constant, so adjoint isn't propagated through it.
+     */
+    /*package*/ int addOperation(double value, int leftArgument, double leftPartial, int rightArgument,
+                                 double rightPartial) {
+        if (isConstant(leftArgument) && (rightArgument == NO_ARGUMENT || isConstant(rightArgument))) {
+            return addConstant(value);
+        }
+        return add(value, NO_VARIABLE, leftArgument, leftPartial, rightArgument, rightPartial);
+    }
+
+    /*package*/ double getValue(int index) {
+        return values[index];
+    }
+
+    /*package*/ boolean isConstant(int index) {
+        return variableSlots[index] == NO_VARIABLE && leftArguments[index] == NO_ARGUMENT;
+    }
+
+    /**
+     * Propagates adjoints from last recorded entry, which is formula result, to variables.
+     *
+     * @param gradient array for derivatives of formula in variable slot order.
+     * @param variableCount count of variables of formula.
+     */
+    /*package*/ void calculateGradient(double[] gradient, int variableCount) {
+        Arrays.fill(gradient, 0, variableCount, 0);
+        Arrays.fill(adjoints, 0, size, 0);
+        adjoints[size - 1] = 1;
+        for (int i = size - 1; i >= 0; i--) {
+            double adjoint = adjoints[i];
+            if (adjoint == 0) {
+                continue;
+            }
+
+            if (variableSlots[i] != NO_VARIABLE) {
+                gradient[variableSlots[i]] += adjoint;
+            } else if (leftArguments[i] != NO_ARGUMENT) {
+                adjoints[leftArguments[i]] += adjoint * leftPartials[i];
+                if (rightArguments[i] != NO_ARGUMENT) {
+                    adjoints[rightArguments[i]] += adjoint * rightPartials[i];
+                }
+            }
+        }
+    }
+
+    private int add(double value, int variableSlot, int leftArgument, double leftPartial, int rightArgument,
+                    double rightPartial) {
+        if (size == values.length) {
+            grow();
+        }
+        values[size] = value;
+        variableSlots[size] = variableSlot;
+        leftArguments[size] = leftArgument;
+        leftPartials[size] = leftPartial;
+        rightArguments[size] = rightArgument;
+        rightPartials[size] = rightPartial;
+        return size++;
+    }
+
+    private void grow() {
+        int capacity = values.length * 2;
+        values = Arrays.copyOf(values, capacity);
+        variableSlots = Arrays.copyOf(variableSlots, capacity);
+        leftArguments = Arrays.copyOf(leftArguments, capacity);
+        rightArguments = Arrays.copyOf(rightArguments, capacity);
+        leftPartials = Arrays.copyOf(leftPartials, capacity);
+        rightPartials = Arrays.copyOf(rightPartials, capacity);
+        adjoints = Arrays.copyOf(adjoints, capacity);
+    }
+}
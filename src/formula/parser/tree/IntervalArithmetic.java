@@ -0,0 +1,347 @@
+package formula.parser.tree;
+
+import formula.parser.operation.BinaryOperation;
+import formula.parser.operation.BinaryOperations;
+import formula.parser.operation.FastMathOperations;
+import formula.parser.operation.UnaryOperation;
+import formula.parser.operation.UnaryOperations;
+
+/**
+ * <H1>General</H1>
+ * Rules of interval arithmetic for built-in operations. Each rule takes intervals of arguments and returns interval,
+ * which contains result of operation for any values of arguments from their intervals (enclosure).
+ * Intervals are stored in double array as pairs of lower and upper bounds : argument of unary operation and left
+ * argument of binary operation at given offset, right argument after it. Result is written at given offset.
+ *
+ * <H1>Rounding</H1>
+ * Java has no directed rounding, so each calculated bound is moved outward by one ulp, which covers rounding of
+ * arithmetic operations and error of {@link Math} functions. Bounds, which are exact, like bounds of
+ * {@link UnaryOperations#SUBTRACTION} or extremes of sine, are not moved.
+ *
+ * <H1>Special values</H1>
+ * Values of arguments, where operation is not defined (for example negative argument of logarithm), are skipped,
+ * so enclosure contains only defined results. In case if operation is not defined for whole intervals of arguments,
+ * result is empty interval with NaN bounds. Enclosure of custom operation is unknown, so it's whole real line.
+ * Enclosure of {@link FastMathOperations} is enclosure of approximated operation widened by it's maximum error.
+ */
+/*package*/ final class IntervalArithmetic {
+
+    private static final double TWO_PI = 2 * Math.PI;
+
+    /*
+     * Minimum of gamma function on positive arguments, rounded down.
+     */
+    private static final double GAMMA_MINIMUM = 0.8856;
+
+    /*
+     * Extremes of periodic functions are searched with relative slack, so rounding of argument near extreme
+     * could only widen enclosure.
+     */
+    private static final double PERIOD_SLACK = 1e-9;
+
+    private IntervalArithmetic() {
+    }
+
+    /*package*/ static void operate(BinaryOperation operation, double[] intervals, int offset) {
+        double leftLower = intervals[offset];
+        double leftUpper = intervals[offset + 1];
+        double rightLower = intervals[offset + 2];
+        double rightUpper = intervals[offset + 3];
+        if (Double.isNaN(leftLower) || Double.isNaN(rightLower)) {
+            setEmpty(intervals, offset);
+            return;
+        }
+        if (!(operation instanceof BinaryOperations)) {
+            setWhole(intervals, offset);
+            return;
+        }
+
+        switch ((BinaryOperations) operation) {
+            case ADDITION:
+                set(intervals, offset, roundDown(leftLower + rightLower), roundUp(leftUpper + rightUpper));
+                break;
+
+            case MULTIPLY:
+                multiply(intervals, offset, leftLower, leftUpper, rightLower, rightUpper);
+                break;
+
+            case DIVISION:
+                divide(intervals, offset, leftLower, leftUpper, rightLower, rightUpper);
+                break;
+
+            case POWER:
+                power(intervals, offset, leftLower, leftUpper, rightLower, rightUpper);
+                break;
+
+            default:
+                setWhole(intervals, offset);
+        }
+    }
+
+    /*package*/ static void operate(UnaryOperation operation, double[] intervals, int offset) {
+        double lower = intervals[offset];
+        double upper = intervals[offset + 1];
+        if (Double.isNaN(lower)) {
+            return;
+        }
+        if (operation instanceof FastMathOperations) {
+            FastMathOperations fastMathOperation = (FastMathOperations) operation;
+            operate(fastMathOperation.getPreciseOperation(), intervals, offset);
+            widen(intervals, offset, fastMathOperation.getMaximumError());
+            return;
+        }
+        if (!(operation instanceof UnaryOperations)) {
+            setWhole(intervals, offset);
+            return;
+        }
+
+        switch ((UnaryOperations) operation) {
+            case SUBTRACTION:
+                set(intervals, offset, -upper, -lower);
+                break;
+
+            case FACTORIAL:
+                factorial(intervals, offset, lower, upper);
+                break;
+
+            case LN:
+            case LG:
+                if (upper < 0) {
+                    setEmpty(intervals, offset);
+                } else {
+                    set(intervals, offset, roundDown(operation.operate(Math.max(lower, 0))),
+                            roundUp(operation.operate(upper)));
+                }
+                break;
+
+            case SQRT:
+                if (upper < 0) {
+                    setEmpty(intervals, offset);
+                } else {
+                    set(intervals, offset, Math.max(0, roundDown(Math.sqrt(Math.max(lower, 0)))),
+                            roundUp(Math.sqrt(upper)));
+                }
+                break;
+
+            case SIN:
+                periodic(operation, intervals, offset, lower, upper, Math.PI / 2, -Math.PI / 2);
+                break;
+
+            case COS:
+                periodic(operation, intervals, offset, lower, upper, 0, Math.PI);
+                break;
+
+            case TAN:
+                if (upper - lower >= Math.PI || containsPeriodPoint(lower, upper, Math.PI / 2, Math.PI)) {
+                    setWhole(intervals, offset);
+                } else {
+                    set(intervals, offset, roundDown(Math.tan(lower)), roundUp(Math.tan(upper)));
+                }
+                break;
+
+            case ARC_SIN:
+                if (upper < -1 || lower > 1) {
+                    setEmpty(intervals, offset);
+                } else {
+                    set(intervals, offset, roundDown(Math.asin(Math.max(lower, -1))),
+                            roundUp(Math.asin(Math.min(upper, 1))));
+                }
+                break;
+
+            case ARC_TAN:
+                set(intervals, offset, roundDown(Math.atan(lower)), roundUp(Math.atan(upper)));
+                break;
+
+            case ARC_COS:
+                if (upper < -1 || lower > 1) {
+                    setEmpty(intervals, offset);
+                } else {
+                    set(intervals, offset, roundDown(Math.acos(Math.min(upper, 1))),
+                            roundUp(Math.acos(Math.max(lower, -1))));
+                }
+                break;
+
+            default:
+                setWhole(intervals, offset);
+        }
+    }
+
+    /*
+     * Square of interval is tighter than product of interval by itself, since both arguments have the same value.
+     */
+    /*package*/ static void square(double[] intervals, int offset) {
+        if (!Double.isNaN(intervals[offset])) {
+            integerPower(intervals, offset, intervals[offset], intervals[offset + 1], 2);
+        }
+    }
+
+    private static void multiply(double[] intervals, int offset, double leftLower, double leftUpper,
+                                 double rightLower, double rightUpper) {
+        double first = product(leftLower, rightLower);
+        double second = product(leftLower, rightUpper);
+        double third = product(leftUpper, rightLower);
+        double fourth = product(leftUpper, rightUpper);
+        set(intervals, offset, roundDown(Math.min(Math.min(first, second), Math.min(third, fourth))),
+                roundUp(Math.max(Math.max(first, second), Math.max(third, fourth))));
+    }
+
+    /*
+     * Bound of zero interval multiplied by infinite bound is zero, since product of zero and any finite value is zero.
+     */
+    private static double product(double left, double right) {
+        return left == 0 || right == 0 ? 0 : left * right;
+    }
+
+    private static void divide(double[] intervals, int offset, double leftLower, double leftUpper,
+                               double rightLower, double rightUpper) {
+        if (rightLower <= 0 && rightUpper >= 0) {
+            setWhole(intervals, offset);
+            return;
+        }
+
+        double first = leftLower / rightLower;
+        double second = leftLower / rightUpper;
+        double third = leftUpper / rightLower;
+        double fourth = leftUpper / rightUpper;
+        set(intervals, offset, roundDown(Math.min(Math.min(first, second), Math.min(third, fourth))),
+                roundUp(Math.max(Math.max(first, second), Math.max(third, fourth))));
+    }
+
+    /*
+     * Power of non-negative base is monotone by each argument, so it's extremes are in corners. Negative base is
+     * defined only for integer exponents, so only exponent, which is single integer, is supported for it.
+     */
+    private static void power(double[] intervals, int offset, double baseLower, double baseUpper,
+                              double exponentLower, double exponentUpper) {
+        boolean integerExponent = exponentLower == exponentUpper && exponentLower == Math.rint(exponentLower);
+        if (integerExponent && !Double.isInfinite(exponentLower)) {
+            integerPower(intervals, offset, baseLower, baseUpper, exponentLower);
+            return;
+        }
+        if (baseLower < 0) {
+            if (baseUpper < 0 && exponentLower == exponentUpper) {
+                setEmpty(intervals, offset);
+            } else {
+                setWhole(intervals, offset);
+            }
+            return;
+        }
+
+        double first = Math.pow(baseLower, exponentLower);
+        double second = Math.pow(baseLower, exponentUpper);
+        double third = Math.pow(baseUpper, exponentLower);
+        double fourth = Math.pow(baseUpper, exponentUpper);
+        set(intervals, offset, Math.max(0, roundDown(Math.min(Math.min(first, second), Math.min(third, fourth)))),
+                roundUp(Math.max(Math.max(first, second), Math.max(third, fourth))));
+    }
+
+    private static void integerPower(double[] intervals, int offset, double baseLower, double baseUpper,
+                                     double exponent) {
+        boolean evenExponent = exponent % 2 == 0;
+        boolean containsZero = baseLower <= 0 && baseUpper >= 0;
+        double lowerPower = Math.pow(baseLower, exponent);
+        double upperPower = Math.pow(baseUpper, exponent);
+        if (exponent == 0) {
+            set(intervals, offset, 1, 1);
+        } else if (exponent < 0 && containsZero) {
+            if (evenExponent) {
+                set(intervals, offset, roundDown(Math.min(lowerPower, upperPower)), Double.POSITIVE_INFINITY);
+            } else {
+                setWhole(intervals, offset);
+            }
+        } else if (evenExponent && containsZero) {
+            set(intervals, offset, 0, roundUp(Math.max(lowerPower, upperPower)));
+        } else {
+            set(intervals, offset, roundDown(Math.min(lowerPower, upperPower)),
+                    roundUp(Math.max(lowerPower, upperPower)));
+        }
+    }
+
+    /*
+     * Factorial is gamma function of shifted argument, it has poles at negative integers, so for argument interval
+     * reaching -1 enclosure is whole line. On (-1, 0] factorial decreases from infinity to one and it's bounded
+     * by 1 / (x + 1), as Gamma(x + 2) is not greater than one there. Greater arguments are bounded by factorials
+     * of nearest integers : factorial increases for arguments greater than one, and lies between minimum of gamma
+     * function and one for arguments between zero and one.
+     */
+    private static void factorial(double[] intervals, int offset, double lower, double upper) {
+        if (lower <= -1) {
+            set(intervals, offset, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+            return;
+        }
+        double factorialLower;
+        if (upper <= 0) {
+            factorialLower = 1;
+        } else if (lower < 1) {
+            factorialLower = GAMMA_MINIMUM;
+        } else {
+            factorialLower = roundDown(UnaryOperations.FACTORIAL.operate(Math.floor(lower)));
+        }
+        double factorialUpper = Math.max(roundUp(1 / (lower + 1)),
+                roundUp(UnaryOperations.FACTORIAL.operate(Math.ceil(upper))));
+        set(intervals, offset, factorialLower, factorialUpper);
+    }
+
+    /*
+     * Sine and cosine are monotone between extremes, so enclosure is calculated by bounds of argument, except
+     * case when argument interval contains maximum or minimum point of function.
+     */
+    private static void periodic(UnaryOperation operation, double[] intervals, int offset, double lower,
+                                 double upper, double maximumPoint, double minimumPoint) {
+        if (upper - lower >= TWO_PI || Double.isInfinite(lower) || Double.isInfinite(upper)) {
+            set(intervals, offset, -1, 1);
+            return;
+        }
+
+        double lowerValue = operation.operate(lower);
+        double upperValue = operation.operate(upper);
+        double periodicLower = containsPeriodPoint(lower, upper, minimumPoint, TWO_PI) ?
+                -1 : Math.max(-1, roundDown(Math.min(lowerValue, upperValue)));
+        double periodicUpper = containsPeriodPoint(lower, upper, maximumPoint, TWO_PI) ?
+                1 : Math.min(1, roundUp(Math.max(lowerValue, upperValue)));
+        set(intervals, offset, periodicLower, periodicUpper);
+    }
+
+    /*
+     * Return 'true' in case if interval contains point + k * period for some integer k.
+     */
+    private static boolean containsPeriodPoint(double lower, double upper, double point, double period) {
+        double slack = PERIOD_SLACK * Math.max(1, Math.max(Math.abs(lower), Math.abs(upper)));
+        double nearestPoint = point + Math.ceil((lower - slack - point) / period) * period;
+        return nearestPoint <= upper + slack;
+    }
+
+    /*
+     * Error of approximation is relative to maximum of one and absolute value of result, so it's bounded at each
+     * bound of enclosure by the same value.
+     */
+    private static void widen(double[] intervals, int offset, double maximumError) {
+        double lower = intervals[offset];
+        double upper = intervals[offset + 1];
+        if (!Double.isNaN(lower)) {
+            set(intervals, offset, roundDown(lower - maximumError * Math.max(1, Math.abs(lower))),
+                    roundUp(upper + maximumError * Math.max(1, Math.abs(upper))));
+        }
+    }
+
+    private static double roundDown(double value) {
+        return Double.isNaN(value) ? Double.NEGATIVE_INFINITY : Math.nextDown(value);
+    }
+
+    private static double roundUp(double value) {
+        return Double.isNaN(value) ? Double.POSITIVE_INFINITY : Math.nextUp(value);
+    }
+
+    private static void set(double[] intervals, int offset, double lower, double upper) {
+        intervals[offset] = lower;
+        intervals[offset + 1] = upper;
+    }
+
+    private static void setWhole(double[] intervals, int offset) {
+        set(intervals, offset, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    private static void setEmpty(double[] intervals, int offset) {
+        set(intervals, offset, Double.NaN, Double.NaN);
+    }
+}
@@ -0,0 +1,25 @@
+package formula.parser.tree;
+
+/**
+ * Rule that rewrites operation expression of formula tree to equal but cheaper expression.
+ * Rules are applied after constant folding from leaves to root, so arguments of given expression
+ * are already simplified. Rule should not return expression larger than given one, otherwise
+ * simplification may not finish.
+ *
+ * @see SimplificationRules
+ * @see FormulaExpressions
+ */
+public interface SimplificationRule {
+
+    /**
+     * Simplifies given operation expression.
+     * In strict IEEE mode rule should keep result of expression exactly the same for all argument values,
+     * including NaN, infinite values and sign of zero. Otherwise only result for finite arguments
+     * should be kept.
+     *
+     * @param expression operation expression with simplified arguments.
+     * @param strictIeee 'true' in case if strict IEEE semantics should be preserved.
+     * @return simplified expression or given expression in case if rule is not applicable.
+     */
+    public FormulaExpression simplify(FormulaExpression expression, boolean strictIeee);
+}
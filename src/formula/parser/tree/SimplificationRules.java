@@ -0,0 +1,287 @@
+package formula.parser.tree;
+
+import formula.parser.operation.BinaryOperation;
+import formula.parser.operation.BinaryOperations;
+import formula.parser.operation.UnaryOperations;
+
+import static formula.parser.tree.FormulaExpressions.*;
+
+/**
+ * Enum of specific {@link SimplificationRule} implementations for built-in operations.
+ * Rules marked as strict keep result of expression for all argument values, so they are applied
+ * in strict IEEE mode too.
+ */
+public enum SimplificationRules implements SimplificationRule {
+
+    /**
+     * Multiplication by one is removed. Strict.
+     * Example : x * 1 ---> x
+     *           1 * x ---> x
+     */
+    MULTIPLY_BY_ONE_RULE() {
+        @Override
+        public FormulaExpression simplify(FormulaExpression expression, boolean strictIeee) {
+            if (!isOperation(expression, BinaryOperations.MULTIPLY)) {
+                return expression;
+            }
+
+            if (isDigit(expression.getRightExpression(), 1)) {
+                return expression.getLeftExpression();
+            }
+            return isDigit(expression.getLeftExpression(), 1) ? expression.getRightExpression() : expression;
+        }
+    },
+
+    /**
+     * Division by one is removed. Strict.
+     * Example : x / 1 ---> x
+     */
+    DIVISION_BY_ONE_RULE() {
+        @Override
+        public FormulaExpression simplify(FormulaExpression expression, boolean strictIeee) {
+            return  isOperation(expression, BinaryOperations.DIVISION) && isDigit(expression.getRightExpression(), 1) ?
+                    expression.getLeftExpression() :
+                    expression;
+        }
+    },
+
+    /**
+     * Power with exponent one is removed. Strict.
+     * Example : x ^ 1 ---> x
+     */
+    POWER_OF_ONE_RULE() {
+        @Override
+        public FormulaExpression simplify(FormulaExpression expression, boolean strictIeee) {
+            return  isOperation(expression, BinaryOperations.POWER) && isDigit(expression.getRightExpression(), 1) ?
+                    expression.getLeftExpression() :
+                    expression;
+        }
+    },
+
+    /**
+     * Power with digit literal exponent is replaced by cheaper operations, since {@link Math#pow(double, double)}
+     * is much slower than multiplication :
+     *
+     * <p> - integer exponent from 2 to {@link #MAXIMUM_REDUCED_EXPONENT} is replaced by multiplications
+     *       (exponentiation by squaring). Each multiplication is correctly rounded, so result differs from
+     *       result of {@link Math#pow(double, double)} for not more than 'n' ulp, where 'n' is exponent. Strict.
+     *
+     * <p> - exponent 0 is replaced by 1 in case if base contains only pure operations. Strict.
+     *
+     * <p> - negative integer exponent is replaced by reciprocal of multiplications, so result differs for not
+     *       more than 'n + 1' ulp, where 'n' is absolute value of exponent. Not strict, because intermediate
+     *       power could overflow or underflow, while result of power is finite and non-zero, and even reciprocal
+     *       of exponent -1 is not guaranteed to be equal to result of {@link Math#pow(double, double)}.
+     *
+     * <p> - exponent 0.5 is replaced by square root. Not strict, because square root of -0 is -0 and
+     *       square root of -Infinity is NaN, but power gives 0 and Infinity.
+     *
+     * Example : x ^ 4   ---> (x * x) * (x * x)
+     *           x ^ -1  ---> 1 / x
+     *           x ^ 5   ---> (x * x) * (x * x) * x
+     *           x ^ -2  ---> 1 / (x * x)
+     *           x ^ 0.5 ---> sqrt(x)
+     */
+    POWER_REDUCTION_RULE() {
+        @Override
+        public FormulaExpression simplify(FormulaExpression expression, boolean strictIeee) {
+            if (!isOperation(expression, BinaryOperations.POWER) || !isDigit(expression.getRightExpression())) {
+                return expression;
+            }
+
+            FormulaExpression base = expression.getLeftExpression();
+            double exponent = expression.getRightExpression().getFormulaItem().getDigitLiteralValue();
+            if (exponent == 0.5) {
+                return strictIeee ? expression : newOperationExpression(UnaryOperations.SQRT, base);
+            }
+
+            if (exponent != Math.rint(exponent) || Math.abs(exponent) > MAXIMUM_REDUCED_EXPONENT) {
+                return expression;
+            }
+
+            int integerExponent = (int) exponent;
+            if (integerExponent == 0) {
+                return isPure(base) ? newDigitExpression(1) : expression;
+            }
+            if (integerExponent > 0) {
+                return multiply(base, integerExponent);
+            }
+            if (!strictIeee) {
+                return newOperationExpression(BinaryOperations.DIVISION, newDigitExpression(1),
+                        multiply(base, -integerExponent));
+            }
+            return expression;
+        }
+
+        /*
+         * base ^ 2k = (base ^ k) * (base ^ k) and base ^ (2k + 1) = (base ^ k) * (base ^ k) * base,
+         * where same expression is used for both arguments, so it's calculated once.
+         */
+        private FormulaExpression multiply(FormulaExpression base, int exponent) {
+            if (exponent == 1) {
+                return base;
+            }
+
+            FormulaExpression halfPower = multiply(base, exponent / 2);
+            FormulaExpression power = newOperationExpression(BinaryOperations.MULTIPLY, halfPower, halfPower);
+            return  exponent % 2 == 0 ?
+                    power :
+                    newOperationExpression(BinaryOperations.MULTIPLY, power, base);
+        }
+    },
+
+    /**
+     * Addition of zero is removed. Addition of negative zero is strict, but addition of positive zero
+     * is not, because -0 + 0 is 0.
+     * Example : x + 0 ---> x
+     *           0 + x ---> x
+     *           x - 0 ---> x + -0 ---> x
+     */
+    ADDITION_OF_ZERO_RULE() {
+        @Override
+        public FormulaExpression simplify(FormulaExpression expression, boolean strictIeee) {
+            if (!isOperation(expression, BinaryOperations.ADDITION)) {
+                return expression;
+            }
+
+            if (isRemovableZero(expression.getRightExpression(), strictIeee)) {
+                return expression.getLeftExpression();
+            }
+            return  isRemovableZero(expression.getLeftExpression(), strictIeee) ?
+                    expression.getRightExpression() :
+                    expression;
+        }
+
+        private boolean isRemovableZero(FormulaExpression expression, boolean strictIeee) {
+            return  isDigit(expression, 0) &&
+                    (!strictIeee || isNegativeZero(expression.getFormulaItem().getDigitLiteralValue()));
+        }
+
+        private boolean isNegativeZero(double value) {
+            return Double.doubleToRawLongBits(value) == Double.doubleToRawLongBits(-0.0);
+        }
+    },
+
+    /**
+     * Multiplication by zero is replaced by zero, in case if another argument contains only pure operations.
+     * Not strict, because result for NaN and infinite argument is NaN and sign of zero depends on argument.
+     * Example : 0 * x ---> 0
+     *           x * 0 ---> 0
+     */
+    MULTIPLY_BY_ZERO_RULE() {
+        @Override
+        public FormulaExpression simplify(FormulaExpression expression, boolean strictIeee) {
+            if (strictIeee || !isOperation(expression, BinaryOperations.MULTIPLY)) {
+                return expression;
+            }
+
+            FormulaExpression leftExpression = expression.getLeftExpression();
+            FormulaExpression rightExpression = expression.getRightExpression();
+            if (isDigit(leftExpression, 0) && isPure(rightExpression)) {
+                return leftExpression;
+            }
+            return isDigit(rightExpression, 0) && isPure(leftExpression) ? rightExpression : expression;
+        }
+    },
+
+    /**
+     * Double negation is removed. Strict.
+     * Example : --x ---> x
+     *           x - -y ---> x + --y ---> x + y
+     */
+    DOUBLE_NEGATION_RULE() {
+        @Override
+        public FormulaExpression simplify(FormulaExpression expression, boolean strictIeee) {
+            return  isOperation(expression, UnaryOperations.SUBTRACTION) &&
+                    isOperation(expression.getLeftExpression(), UnaryOperations.SUBTRACTION) ?
+                    expression.getLeftExpression().getLeftExpression() :
+                    expression;
+        }
+    },
+
+    /**
+     * Negation of argument of multiplication or division by digit literal is moved to literal,
+     * so subtraction of such expression does not need separate negation. Strict.
+     * Example : x - y * 2   ---> x + -y * 2    ---> x + y * -2
+     *           x - (y / 2) ---> x + -(y / 2)  ---> x + y / -2
+     */
+    NEGATION_TO_LITERAL_RULE() {
+        @Override
+        public FormulaExpression simplify(FormulaExpression expression, boolean strictIeee) {
+            if (isOperation(expression, UnaryOperations.SUBTRACTION)) {
+                FormulaExpression argument = expression.getLeftExpression();
+                return isScaling(argument) ? negateLiteral(argument, argument) : expression;
+            }
+
+            if (!isScaling(expression)) {
+                return expression;
+            }
+
+            FormulaExpression leftExpression = expression.getLeftExpression();
+            FormulaExpression rightExpression = expression.getRightExpression();
+            if (isOperation(leftExpression, UnaryOperations.SUBTRACTION)) {
+                return negateLiteral(expression, leftExpression.getLeftExpression(), rightExpression);
+            }
+            if (isOperation(rightExpression, UnaryOperations.SUBTRACTION)) {
+                return negateLiteral(expression, leftExpression, rightExpression.getLeftExpression());
+            }
+            return expression;
+        }
+
+        /*
+         * Multiplication or division with one digit literal argument.
+         */
+        private boolean isScaling(FormulaExpression expression) {
+            return  (isOperation(expression, BinaryOperations.MULTIPLY) ||
+                            isOperation(expression, BinaryOperations.DIVISION)) &&
+                    (isDigit(expression.getLeftExpression()) || isDigit(expression.getRightExpression()));
+        }
+
+        private FormulaExpression negateLiteral(FormulaExpression expression, FormulaExpression argument) {
+            return negateLiteral(expression, argument.getLeftExpression(), argument.getRightExpression());
+        }
+
+        private FormulaExpression negateLiteral(FormulaExpression expression, FormulaExpression leftArgument,
+                                                FormulaExpression rightArgument) {
+            BinaryOperation operation = (BinaryOperation) expression.getFormulaItem().getOperation();
+            return  isDigit(leftArgument) ?
+                    newOperationExpression(operation, negate(leftArgument), rightArgument) :
+                    newOperationExpression(operation, leftArgument, negate(rightArgument));
+        }
+
+        private FormulaExpression negate(FormulaExpression digitExpression) {
+            return newDigitExpression(-digitExpression.getFormulaItem().getDigitLiteralValue());
+        }
+    },
+
+    /**
+     * Addition of two negations is replaced by negation of addition. Not strict, because -0 + 0 is 0,
+     * but -(0 + -0) is -0.
+     * Example : -x - y ---> -x + -y ---> -(x + y)
+     */
+    NEGATION_OF_ADDITION_RULE() {
+        @Override
+        public FormulaExpression simplify(FormulaExpression expression, boolean strictIeee) {
+            if (strictIeee || !isOperation(expression, BinaryOperations.ADDITION)) {
+                return expression;
+            }
+
+            FormulaExpression leftExpression = expression.getLeftExpression();
+            FormulaExpression rightExpression = expression.getRightExpression();
+            if (!isOperation(leftExpression, UnaryOperations.SUBTRACTION) ||
+                    !isOperation(rightExpression, UnaryOperations.SUBTRACTION)) {
+                return expression;
+            }
+
+            return newOperationExpression(UnaryOperations.SUBTRACTION,
+                    newOperationExpression(BinaryOperations.ADDITION,
+                            leftExpression.getLeftExpression(),
+                            rightExpression.getLeftExpression()));
+        }
+    };
+
+    /**
+     * Maximum absolute value of integer exponent, that is replaced by multiplications.
+     */
+    public static final int MAXIMUM_REDUCED_EXPONENT = 16;
+}
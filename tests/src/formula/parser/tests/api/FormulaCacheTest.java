@@ -0,0 +1,329 @@
+package formula.parser.tests.api;
+
+import formula.parser.api.FormulaCache;
+import formula.parser.api.FormulaCacheKeyType;
+import formula.parser.api.FormulaParseException;
+import formula.parser.api.FormulaParser;
+import formula.parser.api.FormulaWeighers;
+import formula.parser.program.FormulaEngines;
+import formula.parser.program.ImmutableFormula;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class FormulaCacheTest {
+
+    private static final int THREADS_COUNT = 8;
+    private static final int FORMULAS_COUNT = 50;
+    private static final int CALLS_PER_THREAD = 5000;
+
+    @Test
+    public void cachedFormulaShouldBeShared() throws FormulaParseException {
+        FormulaCache cache = new FormulaCache(100);
+        FormulaParser parser = new FormulaParser().setFormulaCache(cache);
+
+        ImmutableFormula formula = parser.parseImmutable("x * 2 + y");
+        assertSame(formula, parser.parseImmutable("x * 2 + y"));
+        assertSame(formula, new FormulaParser().setFormulaCache(cache).parseImmutable("x * 2 + y"));
+        assertEquals(7.0, formula.newContext().setVariableValue('x', 3).setVariableValue('y', 1).calculate());
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void differentConfigurationShouldNotShareFormula() throws FormulaParseException {
+        FormulaCache cache = new FormulaCache(100);
+        ImmutableFormula formula = new FormulaParser().setFormulaCache(cache).parseImmutable("x * k");
+
+        assertNotSame(formula, new FormulaParser().setFormulaCache(cache).setStrictIeee(false).parseImmutable("x * k"));
+        assertNotSame(formula, new FormulaParser().setFormulaCache(cache).setFastMath(true).parseImmutable("x * k"));
+        assertNotSame(formula, new FormulaParser().setFormulaCache(cache).setFormulaEngine(FormulaEngines.CLOSURE)
+                .parseImmutable("x * k"));
+        assertEquals(6.0, new FormulaParser().setFormulaCache(cache).addConstant("k", 3).parseImmutable("x * k")
+                .newContext().setVariableValue('x', 2).calculate());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(5, cache.size());
+    }
+
+    @Test
+    public void structurallyIdenticalFormulasShouldShareProgram() throws FormulaParseException {
+        FormulaCache cache = new FormulaCache(100);
+        FormulaParser parser = new FormulaParser().setFormulaCache(cache)
+                .setCacheKeyType(FormulaCacheKeyType.CANONICAL_FORM);
+        ImmutableFormula formula = parser.parseImmutable("x+y");
+
+        assertSame(formula, parser.parseImmutable("y + x"));
+        assertSame(formula, parser.parseImmutable("(x)+(y)"));
+        assertSame(formula, parser.parseImmutable("y + x"));
+        assertNotSame(formula, parser.parseImmutable("x - y"));
+        // alias is cached by formula string, so it's found by parser with the same configuration
+        assertSame(formula, new FormulaParser().setFormulaCache(cache).parseImmutable("y + x"));
+        // shared formula with three aliases and "x - y" with alias
+        assertEquals(6, cache.size());
+    }
+
+    @Test
+    public void eachParsingShouldBeCountedOnce() throws FormulaParseException {
+        FormulaCache cache = new FormulaCache(100);
+        FormulaParser parser = new FormulaParser().setFormulaCache(cache)
+                .setCacheKeyType(FormulaCacheKeyType.CANONICAL_FORM);
+        parser.parseImmutable("x+y");
+        parser.parseImmutable("y + x");
+        parser.parseImmutable("y + x");
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        parser.setCacheKeyType(FormulaCacheKeyType.SKELETON);
+        parser.parseImmutable("2 * x");
+        parser.parseImmutable("3 * x");
+        try {
+            parser.parseImmutable("(2 * x");
+            fail();
+        } catch (FormulaParseException e) {
+            // expected
+        }
+        assertEquals(3, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void renamedFormulasShouldShareFunction() throws FormulaParseException {
+        FormulaParser parser = new FormulaParser().setFormulaCache(new FormulaCache(100))
+                .setCacheKeyType(FormulaCacheKeyType.RENAMED_CANONICAL_FORM);
+        ImmutableFormula formula = parser.parseImmutable("a / b + 1");
+        ImmutableFormula renamed = parser.parseImmutable("1 + x / y");
+        ImmutableFormula swapped = parser.parseImmutable("b / a + 1");
+
+        assertSame(formula.getFunction(), renamed.getFunction());
+        assertNotSame(formula.getFunction(), swapped.getFunction());
+        assertSame(renamed, parser.parseImmutable("1 + x / y"));
+        assertEquals(3.0, formula.newContext().setVariableValue('a', 4).setVariableValue('b', 2).calculate());
+        assertEquals(3.0, renamed.newContext().setVariableValue('x', 4).setVariableValue('y', 2).calculate());
+        assertEquals(1.5, swapped.newContext().setVariableValue('a', 4).setVariableValue('b', 2).calculate());
+    }
+
+    @Test
+    public void formulaShouldBeRenamed() throws FormulaParseException {
+        ImmutableFormula formula = new FormulaParser().parseImmutable("a - b");
+        assertSame(formula, formula.withVariableNames(new char[]{'a', 'b'}));
+        ImmutableFormula renamed = formula.withVariableNames(new char[]{'x', 'y'});
+        assertEquals(2.0, renamed.newContext().setVariableValue('x', 5).setVariableValue('y', 3).calculate());
+        try {
+            formula.withVariableNames(new char[]{'y', 'x'});
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            formula.withVariableNames(new char[]{'x'});
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void formulasDifferentByLiteralsShouldShareSkeleton() throws FormulaParseException {
+        FormulaCache cache = new FormulaCache(100);
+        FormulaParser parser = new FormulaParser().setFormulaCache(cache)
+                .setCacheKeyType(FormulaCacheKeyType.SKELETON);
+        ImmutableFormula first = parser.parseImmutable("0.35*x + 12.5");
+        ImmutableFormula second = parser.parseImmutable("0.4*x + 7");
+
+        assertEquals(first.getProgram().toString(), second.getProgram().toString());
+        assertEquals(16.0, first.newContext().setVariableValue('x', 10).calculate());
+        assertEquals(11.0, second.newContext().setVariableValue('x', 10).calculate());
+        assertSame(second, parser.parseImmutable("0.4*x + 7"));
+        // skeleton and two aliases
+        assertEquals(3, cache.size());
+        assertEquals(2, cache.getHitCount());
+
+        parser.parseImmutable("0.4*y + 7");
+        assertEquals(5, cache.size());
+    }
+
+    @Test
+    public void skeletonShouldKeepMeaningOfLiterals() throws FormulaParseException {
+        String[] formulas = {
+                "2x - 3", "5x - 1",
+                "x ^ 2 + 2 ^ 3", "x ^ 3 + 3 ^ 2",
+                "3! + x", "4! + x",
+                "2 * 3 * x", "4 * 5 * x",
+                "pi * x + 1", "2 * x + 2",
+                "sin(2) * x", "sin(0) * x"
+        };
+        for (FormulaEngines engine : FormulaEngines.values()) {
+            FormulaParser parser = new FormulaParser().setFormulaCache(new FormulaCache(100))
+                    .setCacheKeyType(FormulaCacheKeyType.SKELETON).setFormulaEngine(engine);
+            for (String formula : formulas) {
+                double expected = new FormulaParser().parseImmutable(formula).newContext().setVariableValue('x', 2)
+                        .calculate();
+                assertEquals(engine + " " + formula, expected, parser.parseImmutable(formula).newContext()
+                        .setVariableValue('x', 2).calculate());
+            }
+        }
+    }
+
+    @Test
+    public void skeletonFunctionShouldBeCompiledOnce() throws FormulaParseException {
+        FormulaParser parser = new FormulaParser().setFormulaCache(new FormulaCache(100))
+                .setCacheKeyType(FormulaCacheKeyType.SKELETON).setFormulaEngine(FormulaEngines.BYTECODE);
+        ImmutableFormula first = parser.parseImmutable("0.35*x + 12.5");
+        ImmutableFormula second = parser.parseImmutable("0.4*x + 7");
+        ImmutableFormula third = parser.parseImmutable("2*x + 1");
+
+        assertSame(first.getFunction(), second.getFunction());
+        assertSame(first.getFunction(), third.getFunction());
+        assertEquals(16.0, first.newContext().setVariableValue('x', 10).calculate());
+        assertEquals(11.0, second.newContext().setVariableValue('x', 10).calculate());
+        assertEquals(21.0, third.newContext().calculate(new double[]{10}));
+        double[] results = new double[2];
+        third.newContext().calculate(new double[][]{{1, 2}}, results);
+        assertEquals(3.0, results[0]);
+        assertEquals(5.0, results[1]);
+    }
+
+    @Test
+    public void changedParserShouldNotReuseFormula() throws FormulaParseException {
+        FormulaParser parser = new FormulaParser().setFormulaCache(new FormulaCache(100));
+        ImmutableFormula formula = parser.parseImmutable("a * x");
+        parser.addConstant("a", 2);
+        assertEquals(6.0, parser.parseImmutable("a * x").newContext().setVariableValue('x', 3).calculate());
+        assertNotSame(formula, parser.parseImmutable("a * x"));
+    }
+
+    @Test
+    public void leastRecentlyUsedFormulaShouldBeEvicted() throws FormulaParseException {
+        FormulaCache cache = new FormulaCache(2, FormulaWeighers.SINGLE, 1);
+        FormulaParser parser = new FormulaParser().setFormulaCache(cache);
+        ImmutableFormula first = parser.parseImmutable("x + 1");
+        ImmutableFormula second = parser.parseImmutable("x + 2");
+        parser.parseImmutable("x + 1");
+        parser.parseImmutable("x + 3");
+
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.size());
+        assertSame(first, parser.parseImmutable("x + 1"));
+        assertNotSame(second, parser.parseImmutable("x + 2"));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void totalWeightShouldNotExceedMaximumWeight() throws FormulaParseException {
+        FormulaCache cache = new FormulaCache(10, FormulaWeighers.PROGRAM_LENGTH, 1);
+        FormulaParser parser = new FormulaParser().setFormulaCache(cache);
+        // 3 instructions
+        parser.parseImmutable("x + y");
+        parser.parseImmutable("x * y");
+        parser.parseImmutable("x / y");
+        assertEquals(9, cache.getWeight());
+
+        parser.parseImmutable("x ^ y");
+        assertEquals(9, cache.getWeight());
+        assertEquals(1, cache.getEvictionCount());
+
+        // 23 instructions, heavier than cache
+        ImmutableFormula heavyFormula = parser.parseImmutable("x * y + y * z + z * u + u * v + v * w + w * x");
+        assertEquals(23, heavyFormula.getProgram().getLength());
+        assertEquals(2, cache.getEvictionCount());
+        assertEquals(3, cache.size());
+        assertNotSame(heavyFormula, parser.parseImmutable("x * y + y * z + z * u + u * v + v * w + w * x"));
+    }
+
+    @Test
+    public void failedParsingShouldNotBeCached() {
+        FormulaCache cache = new FormulaCache(100);
+        FormulaParser parser = new FormulaParser().setFormulaCache(cache);
+        for (int i = 0; i < 2; i++) {
+            try {
+                parser.parseImmutable("(x + 1");
+                fail();
+            } catch (FormulaParseException e) {
+                // expected
+            }
+        }
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void clearShouldRemoveFormulas() throws FormulaParseException {
+        FormulaCache cache = new FormulaCache(100);
+        FormulaParser parser = new FormulaParser().setFormulaCache(cache);
+        ImmutableFormula formula = parser.parseImmutable("x + 1");
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+        assertNotSame(formula, parser.parseImmutable("x + 1"));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void concurrentCallsShouldShareFormulas() throws Exception {
+        final FormulaCache cache = new FormulaCache(1000);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
+        try {
+            List<Future<ImmutableFormula[]>> futures = new ArrayList<Future<ImmutableFormula[]>>();
+            for (int thread = 0; thread < THREADS_COUNT; thread++) {
+                final int seed = thread;
+                futures.add(executor.submit(new Callable<ImmutableFormula[]>() {
+                    @Override
+                    public ImmutableFormula[] call() throws FormulaParseException {
+                        FormulaParser parser = new FormulaParser().setFormulaCache(cache);
+                        ImmutableFormula[] formulas = new ImmutableFormula[FORMULAS_COUNT];
+                        for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                            int index = (i * 7 + seed) % FORMULAS_COUNT;
+                            formulas[index] = parser.parseImmutable("x * " + index + " + y");
+                        }
+                        return formulas;
+                    }
+                }));
+            }
+            ImmutableFormula[] expected = futures.get(0).get();
+            for (Future<ImmutableFormula[]> future : futures) {
+                ImmutableFormula[] actual = future.get();
+                for (int i = 0; i < FORMULAS_COUNT; i++) {
+                    assertSame(expected[i], actual[i]);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(FORMULAS_COUNT, cache.size());
+        assertEquals((long) THREADS_COUNT * CALLS_PER_THREAD, cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.getMissCount() >= FORMULAS_COUNT);
+    }
+
+    @Test
+    public void parsingWithoutCacheShouldReturnNewFormula() throws FormulaParseException {
+        FormulaParser parser = new FormulaParser().setFormulaEngine(FormulaEngines.BYTECODE);
+        ImmutableFormula formula = parser.parseImmutable("x + 1");
+        assertSame(FormulaEngines.BYTECODE, formula.getEngine());
+        assertNotSame(formula, parser.parseImmutable("x + 1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeMaximumWeightShouldFail() {
+        new FormulaCache(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveConcurrencyLevelShouldFail() {
+        new FormulaCache(10, FormulaWeighers.SINGLE, 0);
+    }
+}
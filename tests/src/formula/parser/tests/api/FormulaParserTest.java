@@ -6,11 +6,13 @@ import formula.parser.api.FormulaParser;
 import formula.parser.tests.util.CustomTestOperations;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
 
 public class FormulaParserTest {
 
@@ -155,4 +157,27 @@ public class FormulaParserTest {
         Formula formula = parse("x");
         formula.getVariables().clear();
     }
+
+    @Test
+    public void variableOrderShouldBeSortedByName() throws FormulaParseException {
+        Formula formula = parse("z + x * y - x");
+        assertTrue(Arrays.equals(new char[]{'x', 'y', 'z'}, formula.getVariableOrder()));
+    }
+
+    @Test
+    public void calculationBySlotValuesShouldBeSameAsByNames() throws FormulaParseException {
+        Formula formula = parse("z + x * y - x / 2");
+        double expected = formula.setVariableValue('x', 1).setVariableValue('y', 2).setVariableValue('z', 3).calculate();
+        assertEquals(expected, parse("z + x * y - x / 2").calculate(new double[]{1, 2, 3}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void calculationBySlotValuesWithMissingValueShouldFail() throws FormulaParseException {
+        parse("x + y").calculate(new double[]{1});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void calculationWithoutVariableValueShouldFail() throws FormulaParseException {
+        parse("x + y").setVariableValue('x', 1).calculate();
+    }
 }
@@ -0,0 +1,69 @@
+package formula.parser.tests.benchmark;
+
+import formula.parser.api.Formula;
+import formula.parser.api.FormulaParseException;
+import formula.parser.api.FormulaParser;
+import formula.parser.program.FormulaEngines;
+
+import java.util.Arrays;
+
+/**
+ * Simple benchmark, that compares throughput of row-by-row calculation by compiled formula with batch calculation.
+ * Run it as a plain java application, optionally with formula string as first argument and rows count as second.
+ */
+public class FormulaBatchBenchmark {
+
+    private static final String DEFAULT_FORMULA = "x + sin(2) + y / 2.5 - z * (10 * 5 - 2) - z * (2 + x) + x ^ 2";
+    private static final int DEFAULT_ROWS_COUNT = 4096;
+    private static final int WARM_UP_ITERATIONS = 2000;
+    private static final int MEASURE_ITERATIONS = 5000;
+
+    public static void main(String[] args) throws FormulaParseException {
+        String formulaString = args.length > 0 ? args[0] : DEFAULT_FORMULA;
+        int rowsCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROWS_COUNT;
+        Formula formula = new FormulaParser().parse(formulaString).compile(FormulaEngines.BYTECODE);
+
+        double[][] variableColumns = new double[formula.getVariables().size()][rowsCount];
+        for (int i = 0; i < variableColumns.length; i++) {
+            for (int row = 0; row < rowsCount; row++) {
+                variableColumns[i][row] = row + i;
+            }
+        }
+        double[] results = new double[rowsCount];
+
+        report("SCALAR", formula, variableColumns, results, false);
+        report("BATCH", formula, variableColumns, results, true);
+    }
+
+    private static void report(String name, Formula formula, double[][] variableColumns, double[] results,
+                               boolean batch) {
+        run(formula, variableColumns, results, batch, WARM_UP_ITERATIONS);
+        long startTime = System.nanoTime();
+        double result = run(formula, variableColumns, results, batch, MEASURE_ITERATIONS);
+        long time = System.nanoTime() - startTime;
+        System.out.println(String.format("%-15s %8.2f ns/row  (checksum %s)", name,
+                (double) time / MEASURE_ITERATIONS / results.length, result));
+    }
+
+    private static double run(Formula formula, double[][] variableColumns, double[] results, boolean batch,
+                              int iterations) {
+        Character[] variables = formula.getVariables().toArray(new Character[0]);
+        Arrays.sort(variables);
+
+        double result = 0;
+        for (int i = 0; i < iterations; i++) {
+            if (batch) {
+                formula.calculate(variableColumns, results);
+            } else {
+                for (int row = 0; row < results.length; row++) {
+                    for (int slot = 0; slot < variables.length; slot++) {
+                        formula.setVariableValue(variables[slot], variableColumns[slot][row]);
+                    }
+                    results[row] = formula.calculate();
+                }
+            }
+            result += results[results.length - 1];
+        }
+        return result;
+    }
+}
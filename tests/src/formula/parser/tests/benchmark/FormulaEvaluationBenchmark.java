@@ -0,0 +1,48 @@
+package formula.parser.tests.benchmark;
+
+import formula.parser.api.Formula;
+import formula.parser.api.FormulaParseException;
+import formula.parser.api.FormulaParser;
+import formula.parser.program.FormulaEngine;
+import formula.parser.program.FormulaEngines;
+
+/**
+ * Simple benchmark, that compares calculation throughput of formula tree with compiled formula engines.
+ * Run it as a plain java application, optionally with formula string as first argument.
+ */
+public class FormulaEvaluationBenchmark {
+
+    private static final String DEFAULT_FORMULA = "x + sin(2) + y / 2.5 - z * (10 * 5 - 2) - z * (2 + x) + x ^ 2";
+    private static final int WARM_UP_ITERATIONS = 2000000;
+    private static final int MEASURE_ITERATIONS = 5000000;
+
+    public static void main(String[] args) throws FormulaParseException {
+        String formulaString = args.length > 0 ? args[0] : DEFAULT_FORMULA;
+        Formula formulaTree = new FormulaParser().parse(formulaString);
+
+        report("TREE", formulaTree);
+        for (FormulaEngine engine : FormulaEngines.values()) {
+            report(engine.toString(), formulaTree.compile(engine));
+        }
+    }
+
+    private static void report(String name, Formula formula) {
+        run(formula, WARM_UP_ITERATIONS);
+        long startTime = System.nanoTime();
+        double result = run(formula, MEASURE_ITERATIONS);
+        long time = System.nanoTime() - startTime;
+        System.out.println(String.format("%-15s %8.2f ns/op  (checksum %s)", name,
+                (double) time / MEASURE_ITERATIONS, result));
+    }
+
+    private static double run(Formula formula, int iterations) {
+        double result = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (Character variable : formula.getVariables()) {
+                formula.setVariableValue(variable, i);
+            }
+            result += formula.calculate();
+        }
+        return result;
+    }
+}
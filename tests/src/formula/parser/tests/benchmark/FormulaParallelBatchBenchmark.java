@@ -0,0 +1,68 @@
+package formula.parser.tests.benchmark;
+
+import formula.parser.api.FormulaParseException;
+import formula.parser.api.FormulaParser;
+import formula.parser.program.CompiledFormula;
+import formula.parser.program.FormulaProgram;
+import formula.parser.program.ParallelBatchCalculator;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Simple benchmark, that reports how throughput of parallel batch calculation scales with count of threads.
+ * Run it as a plain java application, optionally with formula string as first argument and rows count as second.
+ */
+public class FormulaParallelBatchBenchmark {
+
+    private static final String DEFAULT_FORMULA = "x + sin(2) + y / 2.5 - z * (10 * 5 - 2) - z * (2 + x) + x ^ 2";
+    private static final int DEFAULT_ROWS_COUNT = 4000000;
+    private static final int WARM_UP_ITERATIONS = 10;
+    private static final int MEASURE_ITERATIONS = 20;
+
+    public static void main(String[] args) throws FormulaParseException {
+        String formulaString = args.length > 0 ? args[0] : DEFAULT_FORMULA;
+        int rowsCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROWS_COUNT;
+        FormulaProgram program = ((CompiledFormula) new FormulaParser().parse(formulaString).compile()).getProgram();
+
+        double[][] variableColumns = new double[program.getVariables().length][rowsCount];
+        for (int i = 0; i < variableColumns.length; i++) {
+            for (int row = 0; row < rowsCount; row++) {
+                variableColumns[i][row] = row + i;
+            }
+        }
+        double[] results = new double[rowsCount];
+
+        double singleThreadThroughput = 0;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                ParallelBatchCalculator calculator = new ParallelBatchCalculator(program, pool);
+                double throughput = measure(calculator, variableColumns, results);
+                if (threads == 1) {
+                    singleThreadThroughput = throughput;
+                }
+                System.out.println(String.format("threads %3d  task size %8d  %10.2f Mrows/s  speedup %5.2f",
+                        threads, calculator.getTaskSize(rowsCount), throughput / 1e6, throughput / singleThreadThroughput));
+            } finally {
+                pool.shutdown();
+            }
+
+            if (threads == maxThreads) {
+                break;
+            }
+        }
+    }
+
+    private static double measure(ParallelBatchCalculator calculator, double[][] variableColumns, double[] results) {
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            calculator.calculate(variableColumns, results);
+        }
+        long startTime = System.nanoTime();
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            calculator.calculate(variableColumns, results);
+        }
+        long time = System.nanoTime() - startTime;
+        return (double) results.length * MEASURE_ITERATIONS / time * 1e9;
+    }
+}
@@ -0,0 +1,67 @@
+package formula.parser.tests.operation;
+
+import org.junit.Test;
+
+import static formula.parser.operation.UnaryOperations.FACTORIAL;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class FactorialTest {
+
+    private static final double EULER_GAMMA = 0.5772156649015329;
+
+    private static void assertRelativeEquals(double expected, double actual, double relativeDelta) {
+        assertEquals(expected, actual, Math.abs(expected) * relativeDelta);
+    }
+
+    @Test
+    public void integerFactorialShouldBeExact() {
+        double expected = 1;
+        assertEquals(1.0, FACTORIAL.operate(0));
+        for (int i = 1; i <= 170; i++) {
+            expected *= i;
+            assertEquals(expected, FACTORIAL.operate(i));
+        }
+        assertEquals(120.0, FACTORIAL.operate(5));
+        assertEquals(2432902008176640000.0, FACTORIAL.operate(20));
+    }
+
+    @Test
+    public void greatArgumentShouldGiveInfinity() {
+        assertEquals(Double.POSITIVE_INFINITY, FACTORIAL.operate(171));
+        assertEquals(Double.POSITIVE_INFINITY, FACTORIAL.operate(170.5));
+        assertEquals(Double.POSITIVE_INFINITY, FACTORIAL.operate(1e9));
+        assertEquals(Double.POSITIVE_INFINITY, FACTORIAL.operate(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void nonIntegerFactorialShouldBeGammaFunction() {
+        double sqrtPi = Math.sqrt(Math.PI);
+        assertRelativeEquals(sqrtPi / 2, FACTORIAL.operate(0.5), 1e-14);
+        assertRelativeEquals(3 * sqrtPi / 4, FACTORIAL.operate(1.5), 1e-14);
+        assertRelativeEquals(sqrtPi, FACTORIAL.operate(-0.5), 1e-14);
+        assertRelativeEquals(-2 * sqrtPi, FACTORIAL.operate(-1.5), 1e-14);
+        assertRelativeEquals(945 * sqrtPi / 32, FACTORIAL.operate(4.5), 1e-14);
+        assertRelativeEquals(FACTORIAL.operate(100), FACTORIAL.operate(100 + 1e-12), 1e-10);
+    }
+
+    @Test
+    public void negativeIntegerFactorialShouldBeNaN() {
+        assertTrue(Double.isNaN(FACTORIAL.operate(-1)));
+        assertTrue(Double.isNaN(FACTORIAL.operate(-3)));
+        assertTrue(Double.isNaN(FACTORIAL.operate(Double.NEGATIVE_INFINITY)));
+        assertTrue(Double.isNaN(FACTORIAL.operate(Double.NaN)));
+    }
+
+    @Test
+    public void derivativeShouldBeDerivativeOfGammaFunction() {
+        assertEquals(-EULER_GAMMA, FACTORIAL.derivative(0), 1e-14);
+        assertEquals(1 - EULER_GAMMA, FACTORIAL.derivative(1), 1e-14);
+        double step = 1e-6;
+        for (double argument : new double[]{-0.7, -0.2, 0.3, 2.5, 7.25, 30.5}) {
+            double expected = (FACTORIAL.operate(argument + step) - FACTORIAL.operate(argument - step)) / (2 * step);
+            assertRelativeEquals(expected, FACTORIAL.derivative(argument), 1e-7);
+        }
+        assertTrue(Double.isNaN(FACTORIAL.derivative(-2)));
+    }
+}
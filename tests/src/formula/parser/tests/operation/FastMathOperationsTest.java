@@ -0,0 +1,140 @@
+package formula.parser.tests.operation;
+
+import formula.parser.operation.FastMathOperations;
+import formula.parser.operation.UnaryOperations;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class FastMathOperationsTest {
+
+    private static final int TEST_VALUES_COUNT = 200000;
+    private static final long TEST_RANDOM_SEED = 42;
+
+    private static double exact(UnaryOperations operation, double argument) {
+        switch (operation) {
+            case SIN:
+                return StrictMath.sin(argument);
+
+            case COS:
+                return StrictMath.cos(argument);
+
+            case TAN:
+                return StrictMath.tan(argument);
+
+            case LN:
+                return StrictMath.log(argument);
+
+            case LG:
+                return StrictMath.log10(argument);
+
+            case ARC_SIN:
+                return StrictMath.asin(argument);
+
+            case ARC_COS:
+                return StrictMath.acos(argument);
+
+            case ARC_TAN:
+                return StrictMath.atan(argument);
+
+            default:
+                throw new IllegalArgumentException(operation.toString());
+        }
+    }
+
+    private static void assertWithinMaximumError(FastMathOperations operation, double argument) {
+        double expected = exact(operation.getPreciseOperation(), argument);
+        double actual = operation.operate(argument);
+        if (Double.isNaN(expected) || Double.isInfinite(expected)) {
+            assertEquals(String.format("%s(%s)", operation, argument), expected, actual);
+        } else {
+            double error = Math.abs(actual - expected) / Math.max(1, Math.abs(expected));
+            assertTrue(String.format("%s(%s) : expected %s, but was %s", operation, argument, expected, actual),
+                    error <= operation.getMaximumError());
+        }
+    }
+
+    private static void assertWithinMaximumError(FastMathOperations operation, double minimum, double maximum,
+                                                 boolean logarithmicScale) {
+        Random random = new Random(TEST_RANDOM_SEED);
+        for (int i = 0; i < TEST_VALUES_COUNT; i++) {
+            double value = minimum + random.nextDouble() * (maximum - minimum);
+            assertWithinMaximumError(operation, logarithmicScale ? Math.exp(value) : value);
+        }
+    }
+
+    @Test
+    public void trigonometricOperationsShouldBeWithinMaximumError() {
+        for (FastMathOperations operation : new FastMathOperations[]{FastMathOperations.SIN, FastMathOperations.COS,
+                FastMathOperations.TAN}) {
+            assertWithinMaximumError(operation, -10, 10, false);
+            assertWithinMaximumError(operation, -1e6, 1e6, false);
+            assertWithinMaximumError(operation, -1e-3, 1e-3, false);
+        }
+    }
+
+    @Test
+    public void logarithmsShouldBeWithinMaximumError() {
+        for (FastMathOperations operation : new FastMathOperations[]{FastMathOperations.LN, FastMathOperations.LG}) {
+            assertWithinMaximumError(operation, 0.5, 2, false);
+            assertWithinMaximumError(operation, -700, 700, true);
+            // subnormal arguments
+            assertWithinMaximumError(operation, -744, -709, true);
+        }
+    }
+
+    @Test
+    public void arcOperationsShouldBeWithinMaximumError() {
+        for (FastMathOperations operation : new FastMathOperations[]{FastMathOperations.ARC_SIN,
+                FastMathOperations.ARC_COS, FastMathOperations.ARC_TAN}) {
+            assertWithinMaximumError(operation, -1, 1, false);
+            assertWithinMaximumError(operation, 0.999, 1, false);
+            assertWithinMaximumError(operation, -1, -0.999, false);
+        }
+        assertWithinMaximumError(FastMathOperations.ARC_TAN, -700, 700, true);
+        assertWithinMaximumError(FastMathOperations.ARC_TAN, -1e3, 1e3, false);
+    }
+
+    @Test
+    public void specialValuesShouldBeSameAsOfPreciseOperation() {
+        double[] specialValues = {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0.0, -0.0, 1, -1,
+                2, -2, 1e300, -1e300, Double.MIN_VALUE, Math.PI / 2};
+        for (FastMathOperations operation : FastMathOperations.values()) {
+            for (double value : specialValues) {
+                assertWithinMaximumError(operation, value);
+            }
+        }
+        assertEquals(Double.NEGATIVE_INFINITY, FastMathOperations.LN.operate(0));
+        assertEquals(Double.POSITIVE_INFINITY, FastMathOperations.LG.operate(Double.POSITIVE_INFINITY));
+        assertEquals(Math.PI / 2, FastMathOperations.ARC_TAN.operate(Double.POSITIVE_INFINITY));
+        assertEquals(-Math.PI / 2, FastMathOperations.ARC_SIN.operate(-1));
+        assertEquals(0.0, FastMathOperations.ARC_COS.operate(1));
+    }
+
+    @Test
+    public void columnShouldBeCalculatedSameAsSingleValues() {
+        Random random = new Random(TEST_RANDOM_SEED);
+        double[] arguments = new double[1000];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = random.nextDouble() * 4 - 2;
+        }
+        for (FastMathOperations operation : FastMathOperations.values()) {
+            double[] results = new double[arguments.length + 1];
+            operation.operate(arguments, 1, results, 0, arguments.length - 1);
+            for (int i = 1; i < arguments.length; i++) {
+                assertEquals(operation.operate(arguments[i]), results[i - 1]);
+            }
+        }
+    }
+
+    @Test
+    public void signsShouldBeSameAsOfPreciseOperation() {
+        for (FastMathOperations operation : FastMathOperations.values()) {
+            assertEquals(operation.getPreciseOperation().getSigns(), operation.getSigns());
+            assertEquals(operation.getPreciseOperation().getPriority(), operation.getPriority());
+        }
+    }
+}
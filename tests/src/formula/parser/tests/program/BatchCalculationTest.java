@@ -0,0 +1,125 @@
+package formula.parser.tests.program;
+
+import formula.parser.api.Formula;
+import formula.parser.api.FormulaParseException;
+import formula.parser.program.BatchCalculator;
+import formula.parser.program.CompiledFormula;
+import formula.parser.program.FormulaEngines;
+import formula.parser.tests.api.FormulaCalculationTestChecker;
+import formula.parser.tests.api.FormulaCalculationTestCheckers;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static formula.parser.tests.util.CustomTestOperations.newParser;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class BatchCalculationTest {
+
+    private static final double TEST_CALCULATION_RANGE_MIN_VALUE = -10;
+    private static final double TEST_CALCULATION_STEP = 0.25;
+    private static final int TEST_ROWS_COUNT = 81;
+
+    private static void assertBatchCalculationSame(String formulaString) throws FormulaParseException {
+        Formula formulaTree = newParser().parse(formulaString);
+        assertBatchCalculationSame(formulaString, formulaTree);
+        assertBatchCalculationSame(formulaString, formulaTree.compile(FormulaEngines.BYTECODE));
+    }
+
+    private static void assertBatchCalculationSame(String formulaString, Formula formula) {
+        List<Character> variables = new ArrayList<Character>(formula.getVariables());
+        Collections.sort(variables);
+
+        double[][] variableColumns = new double[variables.size()][TEST_ROWS_COUNT];
+        for (int row = 0; row < TEST_ROWS_COUNT; row++) {
+            for (int i = 0; i < variables.size(); i++) {
+                variableColumns[i][row] = TEST_CALCULATION_RANGE_MIN_VALUE + (row + i) * TEST_CALCULATION_STEP;
+            }
+        }
+
+        double[] results = new double[TEST_ROWS_COUNT];
+        formula.calculate(variableColumns, results);
+
+        for (int row = 0; row < TEST_ROWS_COUNT; row++) {
+            for (int i = 0; i < variables.size(); i++) {
+                formula.setVariableValue(variables.get(i), variableColumns[i][row]);
+            }
+            assertEquals("Batch calculation failed for : " + formulaString + " at row " + row,
+                    formula.calculate(), results[row]);
+        }
+    }
+
+    @Test
+    public void batchCalculationShouldCalculateSameAsScalar() throws FormulaParseException {
+        for (FormulaCalculationTestChecker checker : FormulaCalculationTestCheckers.values()) {
+            assertBatchCalculationSame(checker.getFormulaString());
+        }
+    }
+
+    @Test
+    public void batchCalculationShouldSupportAllBuiltInOperations() throws FormulaParseException {
+        assertBatchCalculationSame("ln(x) + lg(x) - x ^ 2 / 3");
+        assertBatchCalculationSame("sin(x) * cos(x) - tan(x)");
+        assertBatchCalculationSame("asin(x / 10) + arccos(x / 10) - atan(x)");
+        assertBatchCalculationSame("3! - (2 + 2)! - -x");
+    }
+
+    @Test
+    public void batchCalculationShouldSupportCustomOperations() throws FormulaParseException {
+        assertBatchCalculationSame("exp(x mod 3) - exp(-y) % 2 * CONST");
+    }
+
+    @Test
+    public void batchCalculationShouldSupportFormulaWithoutOperations() throws FormulaParseException {
+        assertBatchCalculationSame("x");
+        assertBatchCalculationSame("2");
+    }
+
+    @Test
+    public void batchCalculatorShouldCalculateSeveralChunks() throws FormulaParseException {
+        Formula formula = newParser().parse("x * y - sin(x) / 2 + exp(y) mod 3");
+        int rowsCount = BatchCalculator.CHUNK_SIZE * 2 + 17;
+        double[][] variableColumns = new double[2][rowsCount];
+        for (int row = 0; row < rowsCount; row++) {
+            variableColumns[0][row] = row * TEST_CALCULATION_STEP;
+            variableColumns[1][row] = TEST_CALCULATION_RANGE_MIN_VALUE + row * TEST_CALCULATION_STEP;
+        }
+
+        BatchCalculator calculator = new BatchCalculator(((CompiledFormula) formula.compile()).getProgram());
+        double[] results = new double[rowsCount];
+        calculator.calculate(variableColumns, results);
+        for (int row = 0; row < rowsCount; row++) {
+            formula.setVariableValue('x', variableColumns[0][row]).setVariableValue('y', variableColumns[1][row]);
+            assertEquals(formula.calculate(), results[row]);
+        }
+    }
+
+    @Test
+    public void batchCalculatorShouldCalculateOnlyGivenRange() throws FormulaParseException {
+        Formula formula = newParser().parse("x + 1").compile();
+        BatchCalculator calculator = new BatchCalculator(((CompiledFormula) formula).getProgram());
+        double[] results = new double[5];
+        calculator.calculate(new double[][]{{1, 2, 3, 4, 5}}, results, 1, 3);
+        assertTrue(Arrays.equals(new double[]{0, 3, 4, 0, 0}, results));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchCalculationWithInvalidRangeShouldFail() throws FormulaParseException {
+        Formula formula = newParser().parse("x + 1").compile();
+        new BatchCalculator(((CompiledFormula) formula).getProgram()).calculate(new double[1][10], new double[10], 5, 11);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchCalculationWithMissingColumnShouldFail() throws FormulaParseException {
+        newParser().parse("x + y").calculate(new double[1][10], new double[10]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchCalculationWithShortColumnShouldFail() throws FormulaParseException {
+        newParser().parse("x + y").compile().calculate(new double[][]{new double[10], new double[5]}, new double[10]);
+    }
+}
@@ -0,0 +1,167 @@
+package formula.parser.tests.program;
+
+import formula.parser.api.AbstractUnaryOperation;
+import formula.parser.api.Formula;
+import formula.parser.api.FormulaParseException;
+import formula.parser.api.FormulaParser;
+import formula.parser.operation.PureOperation;
+import formula.parser.operation.UnaryOperation;
+import formula.parser.program.CompiledFormula;
+import formula.parser.program.FormulaEngine;
+import formula.parser.program.FormulaEngines;
+import formula.parser.program.MethodHandleFormulaFunction;
+import formula.parser.program.RegisterMachineFormulaFunction;
+import formula.parser.tests.api.FormulaCalculationTestChecker;
+import formula.parser.tests.api.FormulaCalculationTestCheckers;
+import org.junit.Test;
+
+import static formula.parser.tests.util.CustomTestOperations.newParser;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+public class CompiledFormulaTest {
+
+    private static final double TEST_CALCULATION_RANGE_MIN_VALUE = -10;
+    private static final double TEST_CALCULATION_RANGE_MAX_VALUE = 10;
+    private static final double TEST_CALCULATION_STEP = 0.25;
+
+    private static void assertCompiledCalculationSame(String formulaString) throws FormulaParseException {
+        for (FormulaEngine engine : FormulaEngines.values()) {
+            assertCompiledCalculationSame(formulaString, engine);
+        }
+    }
+
+    private static void assertCompiledCalculationSame(String formulaString, FormulaEngine engine)
+            throws FormulaParseException {
+        Formula expected = newParser().parse(formulaString);
+        Formula actual = expected.compile(engine);
+        assertEquals(expected.getVariables(), actual.getVariables());
+
+        char[] variableOrder = actual.getVariableOrder();
+        double[] variableValues = new double[variableOrder.length];
+        for (double i = TEST_CALCULATION_RANGE_MIN_VALUE; i <= TEST_CALCULATION_RANGE_MAX_VALUE; i += TEST_CALCULATION_STEP) {
+            double value = i;
+            for (int slot = 0; slot < variableOrder.length; slot++) {
+                expected.setVariableValue(variableOrder[slot], value);
+                actual.setVariableValue(variableOrder[slot], value);
+                variableValues[slot] = value;
+                value += TEST_CALCULATION_STEP;
+            }
+            assertEquals("Calculation failed for : " + formulaString + " by " + engine,
+                    expected.calculate(), actual.calculate());
+            assertEquals("Calculation by slots failed for : " + formulaString + " by " + engine,
+                    expected.calculate(), actual.calculate(variableValues));
+        }
+    }
+
+    @Test
+    public void compiledFormulaShouldCalculateSameAsTree() throws FormulaParseException {
+        for (FormulaCalculationTestChecker checker : FormulaCalculationTestCheckers.values()) {
+            assertCompiledCalculationSame(checker.getFormulaString());
+        }
+    }
+
+    @Test
+    public void compiledFormulaShouldSupportAllBuiltInOperations() throws FormulaParseException {
+        assertCompiledCalculationSame("ln(x) + lg(x) - x ^ 2 / 3");
+        assertCompiledCalculationSame("sin(x) * cos(x) - tan(x)");
+        assertCompiledCalculationSame("asin(x / 10) + arccos(x / 10) - atan(x)");
+        assertCompiledCalculationSame("3! - (2 + 2)! - -x");
+    }
+
+    @Test
+    public void compiledFormulaShouldSupportCustomOperations() throws FormulaParseException {
+        assertCompiledCalculationSame("exp(x mod 3) - exp(-y) % 2 * CONST");
+    }
+
+    @Test
+    public void compiledFormulaShouldCalculateDeepFormula() throws FormulaParseException {
+        StringBuilder formulaBuilder = new StringBuilder("x");
+        for (int i = 0; i < 100; i++) {
+            formulaBuilder.append(i % 2 == 0 ? " - y * " : " + sin(x) / ").append(i + 1);
+        }
+        assertCompiledCalculationSame(formulaBuilder.toString());
+    }
+
+    @Test
+    public void compilationOfCompiledFormulaShouldReturnSameInstance() throws FormulaParseException {
+        Formula compiled = newParser().parse("x + 1").compile();
+        assertSame(compiled, compiled.compile());
+    }
+
+    @Test
+    public void bytecodeEngineShouldGenerateHiddenClass() throws FormulaParseException {
+        Formula formula = newParser().parse("exp(x) mod 2 + 3!").compile(FormulaEngines.BYTECODE);
+        assertTrue(((CompiledFormula) formula).getFunction().getClass().isHidden());
+    }
+
+    @Test
+    public void methodHandleEngineShouldCombineFunctionHandle() throws Throwable {
+        Formula formula = newParser().parse("exp(y) mod 2 + x * 3!").compile(FormulaEngines.METHOD_HANDLE);
+        MethodHandleFormulaFunction function = (MethodHandleFormulaFunction) ((CompiledFormula) formula).getFunction();
+        double expected = formula.setVariableValue('x', 2).setVariableValue('y', 1).calculate();
+        assertEquals(expected, (double) function.getMethodHandle().invokeExact(new double[]{2, 1}));
+    }
+
+    @Test
+    public void sharedSubexpressionShouldBeCalculatedOnce() throws FormulaParseException {
+        for (FormulaEngine engine : FormulaEngines.values()) {
+            CountingOperation operation = new CountingOperation();
+            FormulaParser parser = new FormulaParser();
+            parser.addOperation(operation);
+            Formula formula = parser.parse("cnt(x * 2) * cnt(x * 2) + cnt(x * 2)").compile(engine);
+
+            assertEquals("Calculation failed by " + engine, 272.0, formula.setVariableValue('x', 2).calculate());
+            assertEquals("Calculation failed by " + engine, 1, operation.count);
+        }
+    }
+
+    @Test
+    public void registerMachineShouldReuseTemporaryRegisters() throws FormulaParseException {
+        Formula formula = newParser().parse("x * 2 + y / 3 - x ^ y + sin(y * 2) - 3").compile(FormulaEngines.REGISTER_MACHINE);
+        RegisterMachineFormulaFunction function =
+                (RegisterMachineFormulaFunction) ((CompiledFormula) formula).getFunction();
+
+        int variableAndConstantRegisters = formula.getVariables().size() + function.getConstants().length;
+        assertEquals(3, function.getConstants().length);
+        assertEquals(variableAndConstantRegisters + 2, function.getFrameSize());
+    }
+
+    @Test
+    public void parserShouldCompileFormulaByGivenEngine() throws FormulaParseException {
+        Formula formula = newParser().setFormulaEngine(FormulaEngines.BYTECODE).parse("x * 2");
+        assertTrue(formula instanceof CompiledFormula);
+        assertEquals(6.0, formula.setVariableValue('x', 3).calculate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void absentVariableSettingShouldFail() throws FormulaParseException {
+        newParser().parse("x + 1").compile().setVariableValue('y', 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void calculationWithoutVariableValueShouldFail() throws FormulaParseException {
+        newParser().parse("x + y").compile().setVariableValue('x', 1).calculate();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void variablesChangingShouldFail() throws FormulaParseException {
+        newParser().parse("x").compile().getVariables().clear();
+    }
+
+    private static final class CountingOperation extends AbstractUnaryOperation implements PureOperation {
+
+        private int count;
+
+        CountingOperation() {
+            super(UnaryOperation.Notation.PREFIX, "cnt");
+        }
+
+        @Override
+        public double operate(double argument) {
+            count++;
+            return argument * argument;
+        }
+    }
+}
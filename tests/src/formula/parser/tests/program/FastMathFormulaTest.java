@@ -0,0 +1,119 @@
+package formula.parser.tests.program;
+
+import formula.parser.api.Formula;
+import formula.parser.api.FormulaParseException;
+import formula.parser.api.FormulaParser;
+import formula.parser.operation.FastMathOperations;
+import formula.parser.program.CompiledFormula;
+import formula.parser.program.FormulaEngine;
+import formula.parser.program.FormulaEngines;
+import formula.parser.program.ParallelBatchCalculator;
+import formula.parser.tree.FormulaTree;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class FastMathFormulaTest {
+
+    private static final String TEST_FORMULA = "sin(x) * cos(y) + tan(x / 4) + ln(y + 11) + lg(x * x + 1) + " +
+            "asin(x / 10) + acos(y / 10) + atan(x * y)";
+    private static final int TEST_ROWS_COUNT = 1001;
+
+    private static double calculate(double x, double y) {
+        return FastMathOperations.SIN.operate(x) * FastMathOperations.COS.operate(y)
+                + FastMathOperations.TAN.operate(x / 4) + FastMathOperations.LN.operate(y + 11)
+                + FastMathOperations.LG.operate(x * x + 1) + FastMathOperations.ARC_SIN.operate(x / 10)
+                + FastMathOperations.ARC_COS.operate(y / 10) + FastMathOperations.ARC_TAN.operate(x * y);
+    }
+
+    private static double[][] newColumns() {
+        double[][] columns = new double[2][TEST_ROWS_COUNT];
+        for (int row = 0; row < TEST_ROWS_COUNT; row++) {
+            columns[0][row] = -10 + row * 0.02;
+            columns[1][row] = 10 - row * 0.015;
+        }
+        return columns;
+    }
+
+    @Test
+    public void fastMathFormulaShouldUseApproximations() throws FormulaParseException {
+        Formula formula = new FormulaParser().setFastMath(true).parse(TEST_FORMULA);
+        double[][] columns = newColumns();
+        for (int row = 0; row < TEST_ROWS_COUNT; row++) {
+            assertEquals(calculate(columns[0][row], columns[1][row]),
+                    formula.setVariableValue('x', columns[0][row]).setVariableValue('y', columns[1][row]).calculate());
+        }
+    }
+
+    @Test
+    public void fastMathFormulaShouldBeCalculatedSameByAllEngines() throws FormulaParseException {
+        Formula formula = new FormulaParser().setFastMath(true).parse(TEST_FORMULA);
+        double[][] columns = newColumns();
+        for (FormulaEngine engine : FormulaEngines.values()) {
+            Formula compiledFormula = formula.compile(engine);
+            double[] results = new double[TEST_ROWS_COUNT];
+            compiledFormula.calculate(columns, results);
+            double[] parallelResults = new double[TEST_ROWS_COUNT];
+            new ParallelBatchCalculator(((CompiledFormula) compiledFormula).getProgram())
+                    .calculate(columns, parallelResults);
+            for (int row = 0; row < TEST_ROWS_COUNT; row++) {
+                double expected = calculate(columns[0][row], columns[1][row]);
+                assertEquals(engine.toString(), expected, compiledFormula.setVariableValue('x', columns[0][row])
+                        .setVariableValue('y', columns[1][row]).calculate());
+                assertEquals("Batch of " + engine, expected, results[row]);
+                assertEquals("Parallel batch of " + engine, expected, parallelResults[row]);
+            }
+        }
+    }
+
+    @Test
+    public void fastMathFormulaShouldBeCloseToPreciseFormula() throws FormulaParseException {
+        Formula fastFormula = new FormulaParser().setFastMath(true).parse(TEST_FORMULA);
+        Formula preciseFormula = new FormulaParser().parse(TEST_FORMULA);
+        double[][] columns = newColumns();
+        for (int row = 0; row < TEST_ROWS_COUNT; row++) {
+            double expected = preciseFormula.setVariableValue('x', columns[0][row])
+                    .setVariableValue('y', columns[1][row]).calculate();
+            double actual = fastFormula.setVariableValue('x', columns[0][row])
+                    .setVariableValue('y', columns[1][row]).calculate();
+            assertEquals(expected, actual, 1e-13 * Math.max(1, Math.abs(expected)));
+        }
+    }
+
+    @Test
+    public void constantSubexpressionShouldBeFoldedByApproximation() throws FormulaParseException {
+        Formula formula = new FormulaParser().setFastMath(true).parse("sin(2) * x");
+        assertEquals("PUSH_CONSTANT 0\nLOAD_VARIABLE 0\nMULTIPLY\n",
+                ((CompiledFormula) formula.compile()).getProgram().toString());
+        assertEquals(FastMathOperations.SIN.operate(2) * 3, formula.setVariableValue('x', 3).calculate());
+    }
+
+    @Test
+    public void disabledFastMathShouldUsePreciseOperations() throws FormulaParseException {
+        Formula formula = new FormulaParser().setFastMath(true).setFastMath(false).parse("sin(x) + ln(x)");
+        assertEquals(Math.sin(0.7) + Math.log(0.7), formula.setVariableValue('x', 0.7).calculate());
+    }
+
+    @Test
+    public void fastMathFormulaShouldBeDifferentiable() throws FormulaParseException {
+        FormulaTree formula = (FormulaTree) new FormulaParser().setFastMath(true).parse("sin(x) * ln(x)");
+        double[] derivatives = new double[1];
+        formula.setVariableValue('x', 2);
+        formula.calculateDerivatives(new char[]{'x'}, derivatives);
+        assertEquals(Math.cos(2) * Math.log(2) + Math.sin(2) / 2, derivatives[0], 1e-14);
+    }
+
+    @Test
+    public void intervalShouldContainValuesOfFastMathFormula() throws FormulaParseException {
+        FormulaTree formula = (FormulaTree) new FormulaParser().setFastMath(true).parse("sin(x) + atan(x)");
+        double[] interval = new double[2];
+        formula.calculateInterval(new double[]{0}, new double[]{Math.PI / 2}, interval);
+        assertTrue(interval[0] <= 0 && interval[0] > -2e-14);
+        assertTrue(interval[1] >= 1 + Math.atan(Math.PI / 2) && interval[1] < 1 + Math.atan(Math.PI / 2) + 2e-14);
+        for (double x = 0; x <= Math.PI / 2; x += 0.001) {
+            double value = formula.setVariableValue('x', x).calculate();
+            assertTrue(interval[0] <= value && value <= interval[1]);
+        }
+    }
+}
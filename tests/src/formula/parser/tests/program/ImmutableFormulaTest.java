@@ -0,0 +1,161 @@
+package formula.parser.tests.program;
+
+import formula.parser.api.Formula;
+import formula.parser.api.FormulaParseException;
+import formula.parser.api.FormulaParser;
+import formula.parser.program.EvaluationContext;
+import formula.parser.program.FormulaEngine;
+import formula.parser.program.FormulaEngines;
+import formula.parser.program.FormulaProgram;
+import formula.parser.program.ImmutableFormula;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+public class ImmutableFormulaTest {
+
+    private static final String TEST_FORMULA = "x * y - sin(x) / 2 + y ^ 2 - 3!";
+    private static final int TEST_THREADS_COUNT = 8;
+    private static final int TEST_ITERATIONS_COUNT = 20000;
+
+    private static double calculateSum(EvaluationContext context, int threadIndex) {
+        double sum = 0;
+        for (int i = 0; i < TEST_ITERATIONS_COUNT; i++) {
+            sum += context.setVariableValue('x', i * 0.5).setVariableValue('y', threadIndex).calculate();
+        }
+        return sum;
+    }
+
+    private static void assertConcurrentCalculationSame(FormulaEngine engine) throws Exception {
+        final ImmutableFormula formula = new FormulaParser().parse(TEST_FORMULA).compile(engine).toImmutableFormula();
+
+        List<Callable<Double>> tasks = new ArrayList<Callable<Double>>();
+        for (int i = 0; i < TEST_THREADS_COUNT; i++) {
+            final int threadIndex = i;
+            tasks.add(new Callable<Double>() {
+                @Override
+                public Double call() {
+                    return calculateSum(formula.newContext(), threadIndex);
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(TEST_THREADS_COUNT);
+        try {
+            List<Future<Double>> futures = executor.invokeAll(tasks);
+            for (int i = 0; i < TEST_THREADS_COUNT; i++) {
+                double expected = calculateSum(formula.newContext(), i);
+                assertEquals("Concurrent calculation failed for " + engine, expected, futures.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void immutableFormulaShouldBeCalculatedConcurrently() throws Exception {
+        for (FormulaEngine engine : FormulaEngines.values()) {
+            assertConcurrentCalculationSame(engine);
+        }
+    }
+
+    @Test
+    public void contextsShouldNotShareVariableValues() throws FormulaParseException {
+        ImmutableFormula formula = new FormulaParser().parse("x + 1").toImmutableFormula();
+        EvaluationContext firstContext = formula.newContext().setVariableValue('x', 1);
+        EvaluationContext secondContext = formula.newContext().setVariableValue('x', 2);
+        assertEquals(2.0, firstContext.calculate());
+        assertEquals(3.0, secondContext.calculate());
+    }
+
+    @Test
+    public void compiledFormulaShouldKeepEngine() throws FormulaParseException {
+        Formula formula = new FormulaParser().parse("x + 1").compile(FormulaEngines.CLOSURE);
+        assertSame(FormulaEngines.CLOSURE, formula.toImmutableFormula().getEngine());
+        assertSame(formula.toImmutableFormula(), formula.toImmutableFormula());
+    }
+
+    @Test
+    public void leadingConstantsShouldBeReplaced() throws FormulaParseException {
+        ImmutableFormula formula = new FormulaParser().parse("x * 2 + 3").compile(FormulaEngines.CLOSURE)
+                .toImmutableFormula();
+        ImmutableFormula replaced = formula.withLeadingConstants(new double[]{4});
+
+        assertEquals(7.0, replaced.newContext().setVariableValue('x', 1).calculate());
+        assertEquals(5.0, formula.newContext().setVariableValue('x', 1).calculate());
+        assertSame(FormulaEngines.CLOSURE, replaced.getEngine());
+        assertEquals(formula.getProgram().toString(), replaced.getProgram().toString());
+        assertSame(formula, formula.withLeadingConstants(new double[]{2, 3}));
+    }
+
+    @Test
+    public void parameterizedConstantsShouldShareFunction() throws FormulaParseException {
+        FormulaProgram program = new FormulaParser().parse("x * 2 + 3").toImmutableFormula().getProgram();
+        ImmutableFormula formula = new ImmutableFormula(program, FormulaEngines.METHOD_HANDLE, 1);
+        ImmutableFormula replaced = formula.withLeadingConstants(new double[]{4});
+        ImmutableFormula recompiled = formula.withLeadingConstants(new double[]{4, 1});
+
+        assertSame(formula.getFunction(), replaced.getFunction());
+        assertTrue(formula.getFunction() != recompiled.getFunction());
+        assertEquals(5.0, formula.newContext().setVariableValue('x', 1).calculate());
+        assertEquals(7.0, replaced.newContext().setVariableValue('x', 1).calculate());
+        assertEquals(5.0, recompiled.newContext().setVariableValue('x', 1).calculate());
+        assertEquals(11.0, replaced.withVariableNames(new char[]{'y'}).newContext().setVariableValue('y', 2)
+                .calculate());
+    }
+
+    @Test
+    public void parameterizedProgramShouldKeepVariables() throws FormulaParseException {
+        FormulaProgram program = new FormulaParser().parse("x * 2 + y").toImmutableFormula().getProgram();
+        FormulaProgram function = (FormulaProgram) new ImmutableFormula(program, FormulaEngines.INTERPRETER, 1)
+                .getFunction();
+
+        assertTrue(Arrays.equals(new char[]{'x', 'y'}, function.getVariables()));
+        assertEquals(1, function.getVariableSlot('y'));
+        assertEquals(1, function.getParameterCount());
+        assertEquals(program.getFrameSize() + 1, function.getFrameSize());
+        assertEquals(9.0, function.calculate(new double[]{3, 0, 3, 0, 0, 0}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parameterizationOfAbsentConstantsShouldFail() throws FormulaParseException {
+        FormulaProgram program = new FormulaParser().parse("x * 2 + 3").toImmutableFormula().getProgram();
+        new ImmutableFormula(program, FormulaEngines.INTERPRETER, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void replacementOfAbsentConstantsShouldFail() throws FormulaParseException {
+        new FormulaParser().parse("x * 2 + 3").toImmutableFormula().withLeadingConstants(new double[]{2, 3, 4});
+    }
+
+    @Test
+    public void variablesShouldBeBoundToLeadingConstants() throws FormulaParseException {
+        FormulaProgram program = new FormulaParser().parse("a * x + b + 2").toImmutableFormula().getProgram();
+        FormulaProgram boundProgram = program.bindConstants(new char[]{'b', 'a'}, new double[]{5, 3});
+
+        assertTrue(Arrays.equals(new char[]{'x'}, boundProgram.getVariables()));
+        assertEquals(13.0, new ImmutableFormula(boundProgram).newContext().setVariableValue('x', 2).calculate());
+        assertEquals(23.0, new ImmutableFormula(boundProgram.withLeadingConstants(new double[]{1, 10}))
+                .newContext().setVariableValue('x', 2).calculate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void absentVariableSettingShouldFail() throws FormulaParseException {
+        new FormulaParser().parse("x + 1").toImmutableFormula().newContext().setVariableValue('y', 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void calculationWithoutVariableValueShouldFail() throws FormulaParseException {
+        new FormulaParser().parse("x + y").toImmutableFormula().newContext().setVariableValue('x', 1).calculate();
+    }
+}
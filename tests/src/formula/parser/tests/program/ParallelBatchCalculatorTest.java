@@ -0,0 +1,133 @@
+package formula.parser.tests.program;
+
+import formula.parser.api.FormulaParseException;
+import formula.parser.api.FormulaParser;
+import formula.parser.program.BatchCalculator;
+import formula.parser.program.CompiledFormula;
+import formula.parser.program.FormulaProgram;
+import formula.parser.program.ParallelBatchCalculator;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class ParallelBatchCalculatorTest {
+
+    private static final int TEST_ROWS_COUNT = 200000;
+
+    private static FormulaProgram compile(String formulaString) throws FormulaParseException {
+        return ((CompiledFormula) new FormulaParser().parse(formulaString).compile()).getProgram();
+    }
+
+    private static double[][] newVariableColumns(int variablesCount, int rowsCount) {
+        double[][] variableColumns = new double[variablesCount][rowsCount];
+        for (int i = 0; i < variablesCount; i++) {
+            for (int row = 0; row < rowsCount; row++) {
+                variableColumns[i][row] = (row % 1000) * 0.01 + i;
+            }
+        }
+        return variableColumns;
+    }
+
+    private static void assertParallelCalculationSame(ParallelBatchCalculator calculator) {
+        FormulaProgram program = calculator.getProgram();
+        double[][] variableColumns = newVariableColumns(program.getVariables().length, TEST_ROWS_COUNT);
+
+        double[] expected = new double[TEST_ROWS_COUNT];
+        new BatchCalculator(program).calculate(variableColumns, expected);
+        double[] actual = new double[TEST_ROWS_COUNT];
+        calculator.calculate(variableColumns, actual);
+
+        for (int row = 0; row < TEST_ROWS_COUNT; row++) {
+            assertEquals("Parallel calculation failed at row " + row, expected[row], actual[row]);
+        }
+    }
+
+    @Test
+    public void parallelCalculationShouldCalculateSameAsSequential() throws FormulaParseException {
+        assertParallelCalculationSame(new ParallelBatchCalculator(compile("x * y - sin(x) / 2 + y ^ 2")));
+    }
+
+    @Test
+    public void parallelCalculationShouldUseGivenExecutor() throws FormulaParseException {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertParallelCalculationSame(new ParallelBatchCalculator(compile("ln(x + 1) * cos(y)"), executor, 3));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void tasksShouldBeCalculatedBySeveralThreads() throws FormulaParseException {
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        ExecutorService executor = new ThreadPoolExecutor(3, 3, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>()) {
+            @Override
+            protected void beforeExecute(Thread thread, Runnable task) {
+                threads.add(thread);
+            }
+        };
+        try {
+            assertParallelCalculationSame(new ParallelBatchCalculator(compile("sin(x) ^ cos(y) / tan(x)"), executor, 3));
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(threads.size() > 1);
+    }
+
+    @Test
+    public void negativeZeroShouldBeReplacedAsBySequentialCalculation() throws FormulaParseException {
+        ParallelBatchCalculator calculator = new ParallelBatchCalculator(compile("-x"), new ForkJoinPool(8));
+        for (int rowsCount : new int[]{10, 10 * TEST_ROWS_COUNT}) {
+            assertTrue(rowsCount == 10 || calculator.getTaskSize(rowsCount) < rowsCount);
+            double[][] variableColumns = new double[1][rowsCount];
+            double[] expected = new double[rowsCount];
+            new FormulaParser().parse("-x").calculate(variableColumns, expected);
+            double[] actual = new double[rowsCount];
+            calculator.calculate(variableColumns, actual);
+
+            for (int row = 0; row < rowsCount; row++) {
+                assertEquals("Parallel calculation failed at row " + row, expected[row], actual[row]);
+                assertEquals(0.0, actual[row]);
+            }
+        }
+    }
+
+    @Test
+    public void taskSizeShouldBeMultipleOfChunkSize() throws FormulaParseException {
+        ParallelBatchCalculator calculator = new ParallelBatchCalculator(compile("sin(x) * cos(y)"), new ForkJoinPool(8));
+        for (int rowsCount = 1; rowsCount < 10000000; rowsCount *= 7) {
+            assertEquals(0, calculator.getTaskSize(rowsCount) % BatchCalculator.CHUNK_SIZE);
+        }
+    }
+
+    @Test
+    public void taskSizeShouldDependOnFormulaCost() throws FormulaParseException {
+        ForkJoinPool pool = new ForkJoinPool(8);
+        ParallelBatchCalculator cheapCalculator = new ParallelBatchCalculator(compile("x + y"), pool);
+        ParallelBatchCalculator expensiveCalculator = new ParallelBatchCalculator(compile("sin(x) ^ cos(y) / tan(x)"), pool);
+        assertTrue(cheapCalculator.getTaskSize(TEST_ROWS_COUNT) > expensiveCalculator.getTaskSize(TEST_ROWS_COUNT));
+        assertTrue(expensiveCalculator.getTaskSize(TEST_ROWS_COUNT) < TEST_ROWS_COUNT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parallelCalculationWithShortColumnShouldFail() throws FormulaParseException {
+        new ParallelBatchCalculator(compile("x + y")).calculate(new double[][]{new double[10], new double[5]}, new double[10]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveParallelismShouldFail() throws FormulaParseException {
+        new ParallelBatchCalculator(compile("x + y"), ForkJoinPool.commonPool(), 0);
+    }
+}
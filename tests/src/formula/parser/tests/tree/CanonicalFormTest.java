@@ -0,0 +1,72 @@
+package formula.parser.tests.tree;
+
+import formula.parser.api.FormulaParseException;
+import formula.parser.api.FormulaParser;
+import formula.parser.operation.BinaryOperations;
+import formula.parser.tree.FormulaExpression;
+import formula.parser.tree.FormulaExpressions;
+import formula.parser.tree.FormulaTree;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+
+public class CanonicalFormTest {
+
+    private static String canonicalForm(String formulaString, boolean renameVariables)
+            throws FormulaParseException {
+        return ((FormulaTree) new FormulaParser().parse(formulaString)).getCanonicalForm(renameVariables);
+    }
+
+    @Test
+    public void formulasDifferentByBracketsAndOrderShouldHaveEqualForm() throws FormulaParseException {
+        String form = canonicalForm("x+y", false);
+        assertEquals(form, canonicalForm("y + x", false));
+        assertEquals(form, canonicalForm("(x)+(y)", false));
+        assertEquals(canonicalForm("sin(x) * (y + 2) + 1", false), canonicalForm("(2 + y) * sin(x) + 1", false));
+    }
+
+    @Test
+    public void literalsShouldBeNormalized() throws FormulaParseException {
+        assertEquals(canonicalForm("2.0 * x", false), canonicalForm("x * 2", false));
+        assertEquals(canonicalForm("x + 0.50", false), canonicalForm("x + 0.500", false));
+    }
+
+    @Test
+    public void nonCommutativeOperationShouldKeepOrder() throws FormulaParseException {
+        assertFalse(canonicalForm("x / y", false).equals(canonicalForm("y / x", false)));
+        assertFalse(canonicalForm("x ^ y", false).equals(canonicalForm("y ^ x", false)));
+        assertFalse(canonicalForm("x - y", false).equals(canonicalForm("y - x", false)));
+    }
+
+    @Test
+    public void groupingShouldBeKept() throws FormulaParseException {
+        assertFalse(canonicalForm("(x + y) + z", false).equals(canonicalForm("x + (y + z)", false)));
+    }
+
+    @Test
+    public void variablesShouldBeRenamedInSlotOrder() throws FormulaParseException {
+        String form = canonicalForm("a * b + 1", true);
+        assertEquals(form, canonicalForm("x * y + 1", true));
+        assertEquals(form, canonicalForm("1 + q * p", true));
+        assertFalse(form.equals(canonicalForm("a * b + 1", false)));
+        assertFalse(canonicalForm("a / b", true).equals(canonicalForm("b / a", true)));
+    }
+
+    @Test
+    public void variablesShouldBePartOfForm() throws FormulaParseException {
+        assertFalse(canonicalForm("x", false).equals(canonicalForm("y", false)));
+        assertFalse(canonicalForm("x + x", true).equals(canonicalForm("x + y", true)));
+    }
+
+    @Test
+    public void expressionFormShouldNotDependOnOrder() {
+        FormulaExpression x = FormulaExpressions.newVariableExpression('x');
+        FormulaExpression y = FormulaExpressions.newVariableExpression('y');
+        FormulaExpression two = FormulaExpressions.newDigitExpression(2);
+        FormulaExpression sum = FormulaExpressions.newOperationExpression(BinaryOperations.ADDITION, y, x);
+        FormulaExpression product = FormulaExpressions.newOperationExpression(BinaryOperations.MULTIPLY, two, sum);
+        assertEquals("*(+(x,y),2.0)", FormulaExpressions.canonicalForm(product, false));
+        assertEquals("*(+($0,$1),2.0)", FormulaExpressions.canonicalForm(product, true));
+    }
+}
@@ -0,0 +1,63 @@
+package formula.parser.tests.tree;
+
+import formula.parser.api.FormulaParseException;
+import formula.parser.api.FormulaParser;
+import formula.parser.program.FormulaEngine;
+import formula.parser.program.FormulaEngines;
+import formula.parser.tree.FormulaTree;
+import org.junit.Test;
+
+import static formula.parser.tests.util.CustomTestOperations.compileProgram;
+import static formula.parser.tests.util.CustomTestOperations.SQUARE_PURE_UNARY_OPERATION;
+import static formula.parser.tests.util.CustomTestOperations.newParser;
+import static junit.framework.Assert.assertEquals;
+
+public class CommonSubexpressionEliminationTest {
+
+    private static final String TEST_FORMULA = "sin(x * y) + sin(x * y) ^ 2 + exp(x * y) * cos(x * y)";
+
+    @Test
+    public void equalSubtreesShouldBeMerged() throws FormulaParseException {
+        FormulaTree formula = (FormulaTree) newParser().parse("sin(x * y) + sin(x * y)");
+        assertEquals(4, formula.getEliminatedNodesCount());
+    }
+
+    @Test
+    public void sharedSubtreeShouldBeCompiledOnce() throws FormulaParseException {
+        assertEquals("LOAD_VARIABLE 0\nLOAD_VARIABLE 1\nMULTIPLY\nSIN\nSTORE_TEMPORARY 0\nLOAD_TEMPORARY 0\nADDITION\n",
+                compileProgram(newParser(), "sin(x * y) + sin(x * y)"));
+    }
+
+    @Test
+    public void subtreeWithImpureOperationShouldNotBeMerged() throws FormulaParseException {
+        FormulaParser parser = newParser().addOperation(SQUARE_PURE_UNARY_OPERATION);
+        parser.parse("exp(x) + exp(x)");
+        assertEquals(1, parser.getEliminatedNodesCount());
+        parser.parse("sqr(x) + sqr(x)");
+        assertEquals(3, parser.getEliminatedNodesCount());
+    }
+
+    @Test
+    public void mergedFormulaShouldCalculateSameValue() throws FormulaParseException {
+        double x = 0.5;
+        double y = 3;
+        double expected = Math.sin(x * y) + Math.pow(Math.sin(x * y), 2) + Math.pow(Math.E, x * y) * Math.cos(x * y);
+
+        assertEquals(expected, newParser().parse(TEST_FORMULA).setVariableValue('x', x).setVariableValue('y', y).calculate());
+        for (FormulaEngine engine : FormulaEngines.values()) {
+            assertEquals("Calculation failed by " + engine, expected, newParser().parse(TEST_FORMULA).compile(engine)
+                    .setVariableValue('x', x).setVariableValue('y', y).calculate());
+        }
+    }
+
+    @Test
+    public void mergedFormulaShouldBeCalculatedByBatch() throws FormulaParseException {
+        double[] results = new double[3];
+        newParser().parse(TEST_FORMULA).compile().calculate(new double[][]{{0, 0.5, 1}, {1, 3, -2}}, results);
+        for (int i = 0; i < results.length; i++) {
+            double x = new double[]{0, 0.5, 1}[i];
+            double y = new double[]{1, 3, -2}[i];
+            assertEquals(newParser().parse(TEST_FORMULA).calculate(new double[]{x, y}), results[i]);
+        }
+    }
+}
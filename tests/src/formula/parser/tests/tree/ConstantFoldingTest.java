@@ -0,0 +1,48 @@
+package formula.parser.tests.tree;
+
+import formula.parser.api.Formula;
+import formula.parser.api.FormulaParseException;
+import org.junit.Test;
+
+import static formula.parser.tests.util.CustomTestOperations.compileProgram;
+import static formula.parser.tests.util.CustomTestOperations.SQUARE_PURE_UNARY_OPERATION;
+import static formula.parser.tests.util.CustomTestOperations.newParser;
+import static junit.framework.Assert.assertEquals;
+
+public class ConstantFoldingTest {
+
+    @Test
+    public void literalSubtreeShouldBeFolded() throws FormulaParseException {
+        assertEquals("PUSH_CONSTANT 0\nLOAD_VARIABLE 0\nMULTIPLY\n", compileProgram(newParser(), "2 * pi / 360 * x"));
+    }
+
+    @Test
+    public void wholeLiteralFormulaShouldBeFolded() throws FormulaParseException {
+        assertEquals("PUSH_CONSTANT 0\n", compileProgram(newParser(), "(10 - 5)! + sin(2) ^ 2"));
+        assertEquals(120.0, newParser().parse("(10 - 5)!").calculate());
+    }
+
+    @Test
+    public void subtreeWithVariableShouldNotBeFolded() throws FormulaParseException {
+        assertEquals("LOAD_VARIABLE 0\nPUSH_CONSTANT 0\nADDITION\nPUSH_CONSTANT 1\nMULTIPLY\n",
+                compileProgram(newParser(), "(x + 2 * 3) * 4"));
+    }
+
+    @Test
+    public void pureCustomOperationShouldBeFolded() throws FormulaParseException {
+        assertEquals("PUSH_CONSTANT 0\nLOAD_VARIABLE 0\nADDITION\n", compileProgram(newParser()
+                .addOperation(SQUARE_PURE_UNARY_OPERATION), "sqr(3) + x"));
+    }
+
+    @Test
+    public void impureCustomOperationShouldNotBeFolded() throws FormulaParseException {
+        assertEquals("PUSH_CONSTANT 0\nCUSTOM\nLOAD_VARIABLE 0\nADDITION\n", compileProgram(newParser(), "exp(3) + x"));
+    }
+
+    @Test
+    public void foldedFormulaShouldCalculateSameValue() throws FormulaParseException {
+        Formula formula = newParser().addOperation(SQUARE_PURE_UNARY_OPERATION)
+                .parse("2 * pi / 360 * x + sqr(2 + 1)");
+        assertEquals(2 * Math.PI / 360 * 90 + 9, formula.setVariableValue('x', 90).calculate());
+    }
+}
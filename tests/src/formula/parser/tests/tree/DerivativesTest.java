@@ -0,0 +1,143 @@
+package formula.parser.tests.tree;
+
+import formula.parser.api.FormulaParseException;
+import formula.parser.tree.FormulaTree;
+import org.junit.Test;
+
+import static formula.parser.tests.util.CustomTestOperations.parseTree;
+import static junit.framework.Assert.assertEquals;
+
+public class DerivativesTest {
+
+    private static final double FINITE_DIFFERENCE_STEP = 1e-6;
+    private static final double FINITE_DIFFERENCE_DELTA = 1e-6;
+
+    /*
+     * Central finite difference of formula by given variable.
+     */
+    private static double finiteDifference(FormulaTree formula, char variable, double value) {
+        double nextValue = formula.setVariableValue(variable, value + FINITE_DIFFERENCE_STEP).calculate();
+        double previousValue = formula.setVariableValue(variable, value - FINITE_DIFFERENCE_STEP).calculate();
+        formula.setVariableValue(variable, value);
+        return (nextValue - previousValue) / (2 * FINITE_DIFFERENCE_STEP);
+    }
+
+    @Test
+    public void unaryOperationsShouldBeDifferentiated() throws FormulaParseException {
+        String[] formulaStrings = {"-x", "ln(x)", "lg(x)", "sin(x)", "cos(x)", "tan(x)", "asin(x)", "acos(x)",
+                "atan(x)", "sqrt(x)", "cube(x)"};
+        for (String formulaString : formulaStrings) {
+            FormulaTree formula = parseTree(formulaString);
+            formula.setVariableValue('x', 0.3);
+            double[] derivatives = new double[1];
+
+            assertEquals(formulaString, formula.calculate(), formula.calculateDerivatives(new char[]{'x'}, derivatives));
+            assertEquals(formulaString, finiteDifference(formula, 'x', 0.3), derivatives[0], FINITE_DIFFERENCE_DELTA);
+        }
+    }
+
+    @Test
+    public void binaryOperationsShouldBeDifferentiated() throws FormulaParseException {
+        String[] formulaStrings = {"x + y", "x * y", "x / y", "x ^ y"};
+        for (String formulaString : formulaStrings) {
+            FormulaTree formula = parseTree(formulaString);
+            formula.setVariableValue('x', 1.5).setVariableValue('y', 2.5);
+            double[] derivatives = new double[2];
+
+            assertEquals(formulaString, formula.calculate(),
+                    formula.calculateDerivatives(new char[]{'x', 'y'}, derivatives));
+            assertEquals(formulaString, finiteDifference(formula, 'x', 1.5), derivatives[0], FINITE_DIFFERENCE_DELTA);
+            assertEquals(formulaString, finiteDifference(formula, 'y', 2.5), derivatives[1], FINITE_DIFFERENCE_DELTA);
+        }
+    }
+
+    @Test
+    public void gradientShouldBeCalculatedInSinglePass() throws FormulaParseException {
+        FormulaTree formula = parseTree("a * b + sin(c) * d - u / v");
+        formula.setVariableValue('a', 1).setVariableValue('b', 2).setVariableValue('c', 3)
+                .setVariableValue('d', 4).setVariableValue('u', 5).setVariableValue('v', 6);
+        double[] derivatives = new double[6];
+
+        assertEquals(2 + Math.sin(3) * 4 - 5.0 / 6,
+                formula.calculateDerivatives(new char[]{'a', 'b', 'c', 'd', 'u', 'v'}, derivatives), 1e-15);
+        assertEquals(2.0, derivatives[0]);
+        assertEquals(1.0, derivatives[1]);
+        assertEquals(Math.cos(3) * 4, derivatives[2], 1e-15);
+        assertEquals(Math.sin(3), derivatives[3], 1e-15);
+        assertEquals(-1.0 / 6, derivatives[4], 1e-15);
+        assertEquals(5.0 / 36, derivatives[5], 1e-15);
+    }
+
+    @Test
+    public void derivativesShouldBeCalculatedInGivenOrder() throws FormulaParseException {
+        FormulaTree formula = parseTree("x * y ^ 2");
+        formula.setVariableValue('x', 3).setVariableValue('y', 2);
+        double[] derivatives = new double[3];
+
+        formula.calculateDerivatives(new char[]{'y', 'x', 'y'}, derivatives);
+        assertEquals(12.0, derivatives[0]);
+        assertEquals(4.0, derivatives[1]);
+        assertEquals(12.0, derivatives[2]);
+    }
+
+    @Test
+    public void sharedSubexpressionShouldBeDifferentiated() throws FormulaParseException {
+        FormulaTree formula = parseTree("sin(x * y) + sin(x * y) ^ 3");
+        formula.setVariableValue('x', 0.5).setVariableValue('y', 2);
+        double[] derivatives = new double[2];
+
+        formula.calculateDerivatives(new char[]{'x', 'y'}, derivatives);
+        double derivative = Math.cos(1) * (1 + 3 * Math.sin(1) * Math.sin(1));
+        assertEquals(derivative * 2, derivatives[0], 1e-14);
+        assertEquals(derivative * 0.5, derivatives[1], 1e-14);
+    }
+
+    @Test
+    public void repeatedCalculationShouldUseNewValues() throws FormulaParseException {
+        FormulaTree formula = parseTree("x ^ 3 + y");
+        double[] derivatives = new double[1];
+        for (int x = -3; x <= 3; x++) {
+            formula.setVariableValue('x', x).setVariableValue('y', 1);
+            assertEquals(x * x * x + 1.0, formula.calculateDerivatives(new char[]{'x'}, derivatives));
+            assertEquals(3.0 * x * x, derivatives[0]);
+        }
+    }
+
+    @Test
+    public void operationOfOtherVariablesShouldNotBeDifferentiated() throws FormulaParseException {
+        FormulaTree formula = parseTree("sqrt(y) * x + exp(y)");
+        formula.setVariableValue('x', 2).setVariableValue('y', 0);
+        double[] derivatives = new double[1];
+
+        formula.calculateDerivatives(new char[]{'x'}, derivatives);
+        assertEquals(0.0, derivatives[0]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void notDifferentiableOperationShouldFail() throws FormulaParseException {
+        FormulaTree formula = parseTree("exp(x) * y");
+        formula.setVariableValue('x', 1).setVariableValue('y', 1);
+        formula.calculateDerivatives(new char[]{'x'}, new double[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void absentVariableShouldFail() throws FormulaParseException {
+        FormulaTree formula = parseTree("x * y");
+        formula.setVariableValue('x', 1).setVariableValue('y', 1);
+        formula.calculateDerivatives(new char[]{'z'}, new double[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unassignedVariableShouldFail() throws FormulaParseException {
+        FormulaTree formula = parseTree("x * y");
+        formula.setVariableValue('x', 1);
+        formula.calculateDerivatives(new char[]{'x'}, new double[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shortDerivativesArrayShouldFail() throws FormulaParseException {
+        FormulaTree formula = parseTree("x * y");
+        formula.setVariableValue('x', 1).setVariableValue('y', 1);
+        formula.calculateDerivatives(new char[]{'x', 'y'}, new double[1]);
+    }
+}
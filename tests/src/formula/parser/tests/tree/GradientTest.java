@@ -0,0 +1,111 @@
+package formula.parser.tests.tree;
+
+import formula.parser.api.FormulaParseException;
+import formula.parser.tree.FormulaTree;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static formula.parser.tests.util.CustomTestOperations.parseTree;
+import static junit.framework.Assert.assertEquals;
+
+public class GradientTest {
+
+    private static void setAll(FormulaTree formula, Random random) {
+        for (char variable : formula.getVariableOrder()) {
+            formula.setVariableValue(variable, random.nextDouble() + 0.1);
+        }
+    }
+
+    @Test
+    public void gradientShouldBeEqualToForwardDerivatives() throws FormulaParseException {
+        String[] formulaStrings = {"a * b + sin(c) * d - u / v", "x ^ y + ln(x) * cube(y)", "sqrt(x * y) / (x + y)",
+                "sin(x * y) + sin(x * y) ^ 3 + cos(x * y) * z", "atan(x) - acos(y / 2) * lg(z)"};
+        Random random = new Random(42);
+        for (String formulaString : formulaStrings) {
+            FormulaTree formula = parseTree(formulaString);
+            char[] variables = formula.getVariableOrder();
+            double[] gradient = new double[variables.length];
+            double[] derivatives = new double[variables.length];
+            for (int i = 0; i < 10; i++) {
+                setAll(formula, random);
+                double value = formula.calculateGradient(gradient);
+                assertEquals(formulaString, formula.calculateDerivatives(variables, derivatives), value);
+                for (int slot = 0; slot < variables.length; slot++) {
+                    assertEquals(formulaString + " by " + variables[slot], derivatives[slot], gradient[slot],
+                            1e-12 * Math.max(1, Math.abs(derivatives[slot])));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void gradientByManyVariablesShouldBeCalculated() throws FormulaParseException {
+        char[] variables = "abcdfghijklmnopqrstu".toCharArray();
+        StringBuilder formulaString = new StringBuilder();
+        for (int i = 0; i < variables.length; i += 2) {
+            formulaString.append(i == 0 ? "" : " + ").append(variables[i]).append(" * ").append(variables[i + 1]);
+        }
+        FormulaTree formula = parseTree(formulaString.toString());
+        for (int slot = 0; slot < variables.length; slot++) {
+            formula.setVariableValue(variables[slot], slot);
+        }
+
+        double[] gradient = new double[variables.length];
+        formula.calculateGradient(gradient);
+        for (int slot = 0; slot < variables.length; slot++) {
+            assertEquals(String.valueOf(variables[slot]), (double) (slot ^ 1), gradient[slot]);
+        }
+    }
+
+    @Test
+    public void repeatedCalculationShouldUseNewValues() throws FormulaParseException {
+        FormulaTree formula = parseTree("x ^ 3 + x * y");
+        double[] gradient = new double[2];
+        for (int x = -3; x <= 3; x++) {
+            formula.setVariableValue('x', x).setVariableValue('y', 2);
+            assertEquals(x * x * x + x * 2.0, formula.calculateGradient(gradient));
+            assertEquals(3.0 * x * x + 2, gradient[0]);
+            assertEquals((double) x, gradient[1]);
+        }
+    }
+
+    @Test
+    public void variableFormulaShouldHaveUnitGradient() throws FormulaParseException {
+        double[] gradient = new double[1];
+        assertEquals(5.0, parseTree("x").setVariableValue('x', 5).calculate());
+        assertEquals(5.0, ((FormulaTree) parseTree("x").setVariableValue('x', 5)).calculateGradient(gradient));
+        assertEquals(1.0, gradient[0]);
+    }
+
+    @Test
+    public void impureOperationOverConstantsShouldNotBeDifferentiated() throws FormulaParseException {
+        FormulaTree formula = parseTree("exp(2) ^ 2 * x");
+        formula.setVariableValue('x', 1);
+        double[] gradient = new double[1];
+
+        assertEquals(formula.calculate(), formula.calculateGradient(gradient));
+        assertEquals(formula.calculate(), gradient[0]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void notDifferentiableOperationShouldFail() throws FormulaParseException {
+        FormulaTree formula = parseTree("exp(x) * y");
+        formula.setVariableValue('x', 1).setVariableValue('y', 1);
+        formula.calculateGradient(new double[2]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unassignedVariableShouldFail() throws FormulaParseException {
+        FormulaTree formula = parseTree("x * y");
+        formula.setVariableValue('x', 1);
+        formula.calculateGradient(new double[2]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shortGradientArrayShouldFail() throws FormulaParseException {
+        FormulaTree formula = parseTree("x * y");
+        formula.setVariableValue('x', 1).setVariableValue('y', 1);
+        formula.calculateGradient(new double[1]);
+    }
+}
@@ -0,0 +1,165 @@
+package formula.parser.tests.tree;
+
+import formula.parser.api.AbstractUnaryOperation;
+import formula.parser.api.Formula;
+import formula.parser.api.FormulaParseException;
+import formula.parser.api.FormulaParser;
+import formula.parser.operation.UnaryOperation;
+import formula.parser.tree.FormulaTree;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static formula.parser.tests.util.CustomTestOperations.newParser;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class IncrementalEvaluationTest {
+
+    /*
+     * Operation nodes : a * b, sin(c), sin(c) * d, u / v and two additions : (a * b + sin(c) * d) + u / v.
+     */
+    private static final String TEST_FORMULA = "a * b + sin(c) * d + u / v";
+    private static final char[] TEST_VARIABLES = {'a', 'b', 'c', 'd', 'u', 'v'};
+
+    private static FormulaTree parseIncremental(String formulaString) throws FormulaParseException {
+        return (FormulaTree) newParser().setIncrementalEvaluation(true).parse(formulaString);
+    }
+
+    private static double calculate(double a, double b, double c, double d, double u, double v) {
+        return a * b + Math.sin(c) * d + u / v;
+    }
+
+    private static void setAll(Formula formula, double value) {
+        for (char variable : TEST_VARIABLES) {
+            formula.setVariableValue(variable, value);
+        }
+    }
+
+    @Test
+    public void firstCalculationShouldCalculateAllNodes() throws FormulaParseException {
+        FormulaTree formula = parseIncremental(TEST_FORMULA);
+        setAll(formula, 2);
+
+        assertEquals(calculate(2, 2, 2, 2, 2, 2), formula.calculate());
+        assertEquals(6, formula.getRecalculatedNodesCount());
+        assertEquals(0, formula.getReusedNodesCount());
+    }
+
+    @Test
+    public void onlyDependentNodesShouldBeRecalculated() throws FormulaParseException {
+        FormulaTree formula = parseIncremental(TEST_FORMULA);
+        setAll(formula, 2);
+        formula.calculate();
+
+        formula.setVariableValue('d', 3);
+        assertEquals(calculate(2, 2, 2, 3, 2, 2), formula.calculate());
+
+        // sin(c) * d and two additions are recalculated, a * b, sin(c) and u / v are reused
+        assertEquals(6 + 3, formula.getRecalculatedNodesCount());
+        assertEquals(3, formula.getReusedNodesCount());
+    }
+
+    @Test
+    public void sameValueShouldNotMarkVariableChanged() throws FormulaParseException {
+        FormulaTree formula = parseIncremental(TEST_FORMULA);
+        setAll(formula, 2);
+        formula.calculate();
+
+        setAll(formula, 2);
+        assertEquals(calculate(2, 2, 2, 2, 2, 2), formula.calculate());
+        assertEquals(6, formula.getRecalculatedNodesCount());
+        assertEquals(1, formula.getReusedNodesCount());
+    }
+
+    @Test
+    public void slotValuesShouldMarkOnlyChangedVariables() throws FormulaParseException {
+        FormulaTree formula = parseIncremental(TEST_FORMULA);
+        formula.calculate(new double[]{1, 2, 3, 4, 5, 6});
+
+        // u / v and root addition are recalculated, left addition is reused
+        assertEquals(calculate(1, 2, 3, 4, 5, 7), formula.calculate(new double[]{1, 2, 3, 4, 5, 7}));
+        assertEquals(6 + 2, formula.getRecalculatedNodesCount());
+        assertEquals(1, formula.getReusedNodesCount());
+    }
+
+    @Test
+    public void impureOperationShouldBeAlwaysRecalculated() throws FormulaParseException {
+        FormulaTree formula = parseIncremental("exp(2) * x + y");
+        formula.setVariableValue('x', 1).setVariableValue('y', 1).calculate();
+
+        formula.setVariableValue('y', 2);
+        assertEquals(Math.exp(2) + 2, formula.calculate(), 1e-12);
+        assertEquals(3 + 3, formula.getRecalculatedNodesCount());
+    }
+
+    @Test
+    public void impureOperationShouldBeRecalculatedWithoutChangedVariables() throws FormulaParseException {
+        FormulaParser parser = new FormulaParser().setIncrementalEvaluation(true);
+        parser.addOperation(new AbstractUnaryOperation(UnaryOperation.Notation.PREFIX, "cnt") {
+            private int count;
+
+            @Override
+            public double operate(double argument) {
+                return ++count;
+            }
+        });
+        FormulaTree formula = (FormulaTree) parser.parse("cnt(x) * 2 + y");
+        formula.setVariableValue('x', 1).setVariableValue('y', 0);
+
+        assertEquals(2.0, formula.calculate());
+        assertEquals(4.0, formula.calculate());
+        assertEquals(6.0, formula.calculate());
+        formula.setVariableValue('y', 1);
+        assertEquals(9.0, formula.calculate());
+        assertEquals(0, formula.getReusedNodesCount());
+    }
+
+    @Test
+    public void sharedNodeShouldBeReusedOncePerCalculation() throws FormulaParseException {
+        FormulaTree formula = parseIncremental("sin(x * y) + sin(x * y) ^ 3 + z");
+        formula.setVariableValue('x', 1).setVariableValue('y', 2).setVariableValue('z', 3).calculate();
+        long recalculatedNodesCount = formula.getRecalculatedNodesCount();
+
+        formula.setVariableValue('z', 4);
+        assertEquals(Math.sin(2) + Math.pow(Math.sin(2), 3) + 4, formula.calculate(), 1e-15);
+        assertEquals(recalculatedNodesCount + 1, formula.getRecalculatedNodesCount());
+        assertEquals(1, formula.getReusedNodesCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unassignedVariableShouldFail() throws FormulaParseException {
+        parseIncremental(TEST_FORMULA).setVariableValue('a', 1).calculate();
+    }
+
+    @Test
+    public void incrementalCalculationShouldCalculateSameValue() throws FormulaParseException {
+        Formula expected = newParser().parse(TEST_FORMULA);
+        FormulaTree actual = parseIncremental(TEST_FORMULA);
+        setAll(expected, 1);
+        setAll(actual, 1);
+
+        int calculationsCount = 1000;
+        Random random = new Random(42);
+        for (int i = 0; i < calculationsCount; i++) {
+            char variable = TEST_VARIABLES[random.nextInt(TEST_VARIABLES.length)];
+            double value = random.nextDouble() * 10 - 5;
+            expected.setVariableValue(variable, value);
+            actual.setVariableValue(variable, value);
+            assertEquals(expected.calculate(), actual.calculate());
+        }
+        // single changed variable never affects more than 4 of 6 nodes
+        assertTrue(actual.getRecalculatedNodesCount() <= 6 + 4 * calculationsCount);
+    }
+
+    @Test
+    public void enablingShouldRecalculateAllNodes() throws FormulaParseException {
+        FormulaTree formula = (FormulaTree) newParser().parse(TEST_FORMULA);
+        setAll(formula, 2);
+        formula.calculate();
+
+        formula.setIncrementalEvaluation(true);
+        assertEquals(calculate(2, 2, 2, 2, 2, 2), formula.calculate());
+        assertEquals(6, formula.getRecalculatedNodesCount());
+    }
+}
@@ -0,0 +1,159 @@
+package formula.parser.tests.tree;
+
+import formula.parser.api.FormulaParseException;
+import formula.parser.tree.FormulaTree;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static formula.parser.tests.util.CustomTestOperations.parseTree;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class IntervalEvaluationTest {
+
+    private static final int BOXES_COUNT = 200;
+    private static final int SAMPLES_COUNT = 50;
+
+    private static double[] interval(String formulaString, double... bounds) throws FormulaParseException {
+        FormulaTree formula = parseTree(formulaString);
+        int count = formula.getVariableOrder().length;
+        double[] lowerBounds = new double[count];
+        double[] upperBounds = new double[count];
+        for (int slot = 0; slot < count; slot++) {
+            lowerBounds[slot] = bounds[2 * slot];
+            upperBounds[slot] = bounds[2 * slot + 1];
+        }
+        double[] interval = new double[2];
+        formula.calculateInterval(lowerBounds, upperBounds, interval);
+        return interval;
+    }
+
+    private static void assertEnclosure(String formulaString, double[] interval, double value) {
+        assertTrue(String.format("%s : %s is out of [%s, %s]", formulaString, value, interval[0], interval[1]),
+                Double.isNaN(value) || (interval[0] <= value && value <= interval[1]));
+    }
+
+    @Test
+    public void intervalShouldContainValuesOfFormula() throws FormulaParseException {
+        String[] formulaStrings = {"x * y - x / y", "x ^ y + y ^ 3", "sin(x) * cos(y) + tan(x * y)",
+                "ln(x) + lg(y) - sqrt(x * y)", "asin(x / 10) + acos(y / 10) * atan(x - y)", "x ^ 2 - 3 * x * y ^ -2",
+                "sin(x * y) + sin(x * y) ^ 2", "x ^ 0.5 - -y", "x! - y!"};
+        Random random = new Random(42);
+        for (String formulaString : formulaStrings) {
+            FormulaTree formula = parseTree(formulaString);
+            double[] lowerBounds = new double[2];
+            double[] upperBounds = new double[2];
+            double[] interval = new double[2];
+            for (int box = 0; box < BOXES_COUNT; box++) {
+                for (int slot = 0; slot < 2; slot++) {
+                    lowerBounds[slot] = random.nextDouble() * 20 - 10;
+                    upperBounds[slot] = lowerBounds[slot] + random.nextDouble() * (random.nextBoolean() ? 0.1 : 5);
+                }
+                formula.calculateInterval(lowerBounds, upperBounds, interval);
+                for (int sample = 0; sample < SAMPLES_COUNT; sample++) {
+                    double x = lowerBounds[0] + random.nextDouble() * (upperBounds[0] - lowerBounds[0]);
+                    double y = lowerBounds[1] + random.nextDouble() * (upperBounds[1] - lowerBounds[1]);
+                    assertEnclosure(formulaString, interval,
+                            formula.setVariableValue('x', x).setVariableValue('y', y).calculate());
+                }
+                assertEnclosure(formulaString, interval, formula.setVariableValue('x', lowerBounds[0])
+                        .setVariableValue('y', upperBounds[1]).calculate());
+            }
+        }
+    }
+
+    @Test
+    public void monotoneOperationsShouldBeBoundedByEndpoints() throws FormulaParseException {
+        double[] interval = interval("x + y", 1, 2, 3, 4);
+        assertEquals(4.0, interval[0], 1e-15);
+        assertEquals(6.0, interval[1], 1e-15);
+
+        interval = interval("x * y", -1, 2, 3, 4);
+        assertEquals(-4.0, interval[0], 1e-14);
+        assertEquals(8.0, interval[1], 1e-14);
+    }
+
+    @Test
+    public void squareShouldBeNonNegative() throws FormulaParseException {
+        double[] interval = interval("x ^ 2", -1, 2);
+        assertEquals(0.0, interval[0]);
+        assertEquals(4.0, interval[1], 1e-15);
+    }
+
+    @Test
+    public void periodicOperationShouldContainExtremes() throws FormulaParseException {
+        double[] interval = interval("sin(x)", 0, Math.PI);
+        assertEquals(1.0, interval[1]);
+        assertEquals(0.0, interval[0], 1e-15);
+
+        interval = interval("cos(x)", 1, 4);
+        assertEquals(-1.0, interval[0]);
+        assertEquals(Math.cos(1), interval[1], 1e-15);
+
+        interval = interval("sin(x)", 0, 10);
+        assertEquals(-1.0, interval[0]);
+        assertEquals(1.0, interval[1]);
+    }
+
+    @Test
+    public void poleShouldGiveInfiniteInterval() throws FormulaParseException {
+        double[] interval = interval("tan(x)", 1, 2);
+        assertEquals(Double.NEGATIVE_INFINITY, interval[0]);
+        assertEquals(Double.POSITIVE_INFINITY, interval[1]);
+
+        interval = interval("1 / x", -1, 1);
+        assertEquals(Double.NEGATIVE_INFINITY, interval[0]);
+        assertEquals(Double.POSITIVE_INFINITY, interval[1]);
+    }
+
+    @Test
+    public void factorialShouldBeBoundedByIntegerFactorials() throws FormulaParseException {
+        double[] interval = interval("x!", 3, 5);
+        assertEquals(6.0, interval[0], 1e-14);
+        assertEquals(120.0, interval[1], 1e-13);
+
+        interval = interval("x!", -0.5, 0.5);
+        assertTrue(interval[0] <= 0.8856 && interval[0] > 0.88);
+        assertEquals(2.0, interval[1], 1e-15);
+
+        interval = interval("x!", -0.75, -0.25);
+        assertEquals(1.0, interval[0]);
+        assertEquals(4.0, interval[1], 1e-14);
+
+        interval = interval("x!", -3, 0.5);
+        assertEquals(Double.NEGATIVE_INFINITY, interval[0]);
+        assertEquals(Double.POSITIVE_INFINITY, interval[1]);
+
+        interval = interval("x!", 100, 1000);
+        assertEquals(Double.POSITIVE_INFINITY, interval[1]);
+    }
+
+    @Test
+    public void undefinedOperationShouldGiveEmptyInterval() throws FormulaParseException {
+        double[] interval = interval("ln(x) + y", -2, -1, 0, 1);
+        assertTrue(Double.isNaN(interval[0]));
+        assertTrue(Double.isNaN(interval[1]));
+
+        interval = interval("sqrt(x)", -1, 4);
+        assertEquals(0.0, interval[0]);
+        assertEquals(2.0, interval[1], 1e-15);
+    }
+
+    @Test
+    public void customOperationShouldGiveWholeLine() throws FormulaParseException {
+        double[] interval = interval("exp(x)", 0, 1);
+        assertEquals(Double.NEGATIVE_INFINITY, interval[0]);
+        assertEquals(Double.POSITIVE_INFINITY, interval[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invertedBoundsShouldFail() throws FormulaParseException {
+        interval("x + y", 1, 2, 4, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingBoundsShouldFail() throws FormulaParseException {
+        parseTree("x + y").calculateInterval(new double[1], new double[2], new double[2]);
+    }
+}
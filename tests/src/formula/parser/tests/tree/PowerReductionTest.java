@@ -0,0 +1,138 @@
+package formula.parser.tests.tree;
+
+import formula.parser.api.Formula;
+import formula.parser.api.FormulaParseException;
+import formula.parser.program.FormulaEngine;
+import formula.parser.program.FormulaEngines;
+import formula.parser.tree.SimplificationRules;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static formula.parser.tests.util.CustomTestOperations.compileProgram;
+import static formula.parser.tests.util.CustomTestOperations.newParser;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class PowerReductionTest {
+
+    private static final int TEST_VALUES_COUNT = 1000;
+    private static final long TEST_RANDOM_SEED = 42;
+
+    private static String compile(String formulaString) throws FormulaParseException {
+        return compileProgram(newParser().setStrictIeee(false), formulaString);
+    }
+
+    private static String compileStrict(String formulaString) throws FormulaParseException {
+        return compileProgram(newParser(), formulaString);
+    }
+
+    private static double[] newTestValues() {
+        Random random = new Random(TEST_RANDOM_SEED);
+        double[] values = new double[TEST_VALUES_COUNT];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (random.nextBoolean() ? 1 : -1) * Math.exp(random.nextDouble() * 10 - 5);
+        }
+        return values;
+    }
+
+    @Test
+    public void integerExponentShouldBeReplacedByMultiplications() throws FormulaParseException {
+        assertEquals("LOAD_VARIABLE 0\nLOAD_VARIABLE 0\nMULTIPLY\n", compile("x ^ 2"));
+        assertEquals("LOAD_VARIABLE 0\nLOAD_VARIABLE 0\nMULTIPLY\nSTORE_TEMPORARY 0\nLOAD_TEMPORARY 0\nMULTIPLY\n" +
+                "LOAD_VARIABLE 0\nMULTIPLY\n", compile("x ^ 5"));
+        assertEquals("LOAD_VARIABLE 0\nLOAD_VARIABLE 0\nMULTIPLY\n", compileStrict("x ^ 2"));
+    }
+
+    @Test
+    public void sharedBaseShouldBeCalculatedOnce() throws FormulaParseException {
+        assertEquals("LOAD_VARIABLE 0\nSIN\nSTORE_TEMPORARY 0\nLOAD_TEMPORARY 0\nMULTIPLY\n", compile("sin(x) ^ 2"));
+    }
+
+    @Test
+    public void specialExponentsShouldBeReplaced() throws FormulaParseException {
+        assertEquals("PUSH_CONSTANT 0\n", compile("x ^ 0"));
+        assertEquals("PUSH_CONSTANT 0\nLOAD_VARIABLE 0\nDIVISION\n", compile("x ^ -1"));
+        assertEquals("PUSH_CONSTANT 0\nLOAD_VARIABLE 0\nLOAD_VARIABLE 0\nMULTIPLY\nDIVISION\n", compile("x ^ -2"));
+        assertEquals("LOAD_VARIABLE 0\nSQRT\n", compile("x ^ 0.5"));
+    }
+
+    @Test
+    public void notStrictExponentsShouldBeKeptInStrictMode() throws FormulaParseException {
+        assertEquals("LOAD_VARIABLE 0\nPUSH_CONSTANT 0\nPOWER\n", compileStrict("x ^ -1"));
+        assertEquals("LOAD_VARIABLE 0\nPUSH_CONSTANT 0\nPOWER\n", compileStrict("x ^ -2"));
+        assertEquals("LOAD_VARIABLE 0\nPUSH_CONSTANT 0\nPOWER\n", compileStrict("x ^ 0.5"));
+    }
+
+    @Test
+    public void otherExponentsShouldBeKept() throws FormulaParseException {
+        assertEquals("LOAD_VARIABLE 0\nPUSH_CONSTANT 0\nPOWER\n", compile("x ^ 2.5"));
+        assertEquals("LOAD_VARIABLE 0\nPUSH_CONSTANT 0\nPOWER\n",
+                compile("x ^ " + (SimplificationRules.MAXIMUM_REDUCED_EXPONENT + 1)));
+        assertEquals("LOAD_VARIABLE 0\nLOAD_VARIABLE 1\nPOWER\n", compile("x ^ y"));
+    }
+
+    @Test
+    public void zeroExponentShouldKeepImpureBase() throws FormulaParseException {
+        assertEquals("LOAD_VARIABLE 0\nCUSTOM\nPUSH_CONSTANT 0\nPOWER\n", compile("exp(x) ^ 0"));
+    }
+
+    @Test
+    public void integerPowerShouldBeWithinUlpBound() throws FormulaParseException {
+        double[] values = newTestValues();
+        int maximumExponent = SimplificationRules.MAXIMUM_REDUCED_EXPONENT;
+        for (int exponent = -maximumExponent; exponent <= maximumExponent; exponent++) {
+            Formula formula = newParser().parse("x ^ " + exponent);
+            double ulpBound = exponent < 0 ? -exponent + 1 : Math.max(exponent, 1);
+            for (double value : values) {
+                double expected = Math.pow(value, exponent);
+                double actual = formula.setVariableValue('x', value).calculate();
+                assertTrue(String.format("%s ^ %d : expected %s, but was %s", value, exponent, expected, actual),
+                        Math.abs(expected - actual) <= ulpBound * Math.ulp(expected));
+            }
+        }
+    }
+
+    @Test
+    public void squareRootShouldBeWithinUlpBound() throws FormulaParseException {
+        Formula formula = newParser().parse("x ^ 0.5");
+        for (double value : newTestValues()) {
+            double expected = Math.pow(Math.abs(value), 0.5);
+            double actual = formula.setVariableValue('x', Math.abs(value)).calculate();
+            assertTrue(Math.abs(expected - actual) <= Math.ulp(expected));
+        }
+        assertTrue(Double.isNaN(formula.setVariableValue('x', -1).calculate()));
+    }
+
+    @Test
+    public void specialValuesShouldBeKept() throws FormulaParseException {
+        assertTrue(Double.isNaN(newParser().parse("x ^ 3").setVariableValue('x', Double.NaN).calculate()));
+        assertEquals(1.0, newParser().parse("x ^ 0").setVariableValue('x', Double.NaN).calculate());
+        assertEquals(Double.NEGATIVE_INFINITY,
+                newParser().parse("x ^ 3").setVariableValue('x', Double.NEGATIVE_INFINITY).calculate());
+        assertEquals(Double.NEGATIVE_INFINITY,
+                newParser().parse("x ^ -1").setVariableValue('x', -0.0).calculate());
+        assertEquals(Double.POSITIVE_INFINITY,
+                newParser().parse("x ^ 0.5").setVariableValue('x', Double.NEGATIVE_INFINITY).calculate());
+        assertEquals(0.0, newParser().parse("x ^ 0.5").setVariableValue('x', -0.0).calculate());
+    }
+
+    @Test
+    public void reducedPowerShouldBeCalculatedSameByAllEngines() throws FormulaParseException {
+        double[] values = newTestValues();
+        for (String formulaString : new String[]{"x ^ 7 + sin(x) ^ 4", "x ^ -3", "x ^ 0.5 + x ^ 2"}) {
+            Formula formula = newParser().parse(formulaString);
+            for (FormulaEngine engine : FormulaEngines.values()) {
+                Formula compiledFormula = formula.compile(engine);
+                double[] results = new double[values.length];
+                compiledFormula.calculate(new double[][]{values}, results);
+                for (int i = 0; i < values.length; i++) {
+                    double expected = formula.setVariableValue('x', values[i]).calculate();
+                    assertEquals(formulaString + " by " + engine, expected,
+                            compiledFormula.setVariableValue('x', values[i]).calculate());
+                    assertEquals(formulaString + " by batch of " + engine, expected, results[i]);
+                }
+            }
+        }
+    }
+}
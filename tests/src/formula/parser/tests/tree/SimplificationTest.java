@@ -0,0 +1,170 @@
+package formula.parser.tests.tree;
+
+import formula.parser.api.Formula;
+import formula.parser.api.FormulaParseException;
+import formula.parser.api.FormulaParser;
+import formula.parser.operation.UnaryOperations;
+import formula.parser.tests.util.CustomTestOperations;
+import formula.parser.tree.FormulaExpression;
+import formula.parser.tree.SimplificationRule;
+import formula.parser.tree.SimplificationRules;
+import org.junit.Test;
+
+import static formula.parser.tests.util.CustomTestOperations.compileProgram;
+import static formula.parser.tests.util.CustomTestOperations.newParser;
+import static formula.parser.tree.FormulaExpressions.*;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+public class SimplificationTest {
+
+    private static final double[] TEST_VALUES = {-2.5, -1, 0, 0.5, 1, 3};
+
+    /*
+     * sqr(-x) ---> sqr(x)
+     */
+    private static final SimplificationRule SQUARE_OF_NEGATION_RULE = new SimplificationRule() {
+        @Override
+        public FormulaExpression simplify(FormulaExpression expression, boolean strictIeee) {
+            return  isOperation(expression, CustomTestOperations.SQUARE_PURE_UNARY_OPERATION) &&
+                    isOperation(expression.getLeftExpression(), UnaryOperations.SUBTRACTION) ?
+                    newOperationExpression(CustomTestOperations.SQUARE_PURE_UNARY_OPERATION,
+                            expression.getLeftExpression().getLeftExpression()) :
+                    expression;
+        }
+    };
+
+    private static String compileNonStrict(String formulaString) throws FormulaParseException {
+        return compileProgram(newParser().setStrictIeee(false), formulaString);
+    }
+
+    private static String compileStrict(String formulaString) throws FormulaParseException {
+        return compileProgram(newParser(), formulaString);
+    }
+
+    @Test
+    public void identitiesShouldBeRemoved() throws FormulaParseException {
+        assertEquals("LOAD_VARIABLE 0\nLOAD_VARIABLE 1\nADDITION\n", compileNonStrict("x * 1 + 1 * y"));
+        assertEquals("LOAD_VARIABLE 0\nLOAD_VARIABLE 1\nADDITION\n", compileNonStrict("x / 1 + y ^ 1"));
+        assertEquals("LOAD_VARIABLE 0\n", compileNonStrict("x + 0"));
+        assertEquals("LOAD_VARIABLE 0\n", compileNonStrict("0 + x"));
+    }
+
+    @Test
+    public void strictIdentitiesShouldBeRemovedInStrictMode() throws FormulaParseException {
+        assertEquals("LOAD_VARIABLE 0\nLOAD_VARIABLE 1\nADDITION\n", compileStrict("x * 1 + 1 * y"));
+        assertEquals("LOAD_VARIABLE 0\nLOAD_VARIABLE 1\nADDITION\n", compileStrict("x / 1 + y ^ 1"));
+        assertEquals("LOAD_VARIABLE 0\n", compileStrict("x - 0"));
+    }
+
+    @Test
+    public void additionOfPositiveZeroShouldBeKeptInStrictMode() throws FormulaParseException {
+        assertEquals("LOAD_VARIABLE 0\nPUSH_CONSTANT 0\nADDITION\n", compileStrict("x + 0"));
+    }
+
+    @Test
+    public void multiplyByZeroShouldBeReplacedByZero() throws FormulaParseException {
+        assertEquals("PUSH_CONSTANT 0\n", compileNonStrict("0 * x"));
+        assertEquals("PUSH_CONSTANT 0\n", compileNonStrict("sin(x) * 0"));
+
+        Formula formula = newParser().setStrictIeee(false).parse("0 * x");
+        assertEquals(0.0, formula.setVariableValue('x', Double.NaN).calculate());
+    }
+
+    @Test
+    public void multiplyByZeroShouldBeKeptInStrictMode() throws FormulaParseException {
+        assertEquals("PUSH_CONSTANT 0\nLOAD_VARIABLE 0\nMULTIPLY\n", compileStrict("0 * x"));
+
+        Formula formula = newParser().setStrictIeee(true).parse("0 * x");
+        assertTrue(Double.isNaN(formula.setVariableValue('x', Double.NaN).calculate()));
+        assertTrue(Double.isNaN(formula.setVariableValue('x', Double.POSITIVE_INFINITY).calculate()));
+    }
+
+    @Test
+    public void defaultParserShouldKeepSpecialValues() throws FormulaParseException {
+        Formula formula = new FormulaParser().parse("0 * x + (y + 0)");
+        assertTrue(Double.isNaN(formula.setVariableValue('x', Double.NaN).setVariableValue('y', 1).calculate()));
+        assertTrue(Double.isNaN(formula.setVariableValue('x', Double.POSITIVE_INFINITY).calculate()));
+        assertTrue(Double.isNaN(formula.setVariableValue('x', Double.NEGATIVE_INFINITY).calculate()));
+        assertEquals(Double.POSITIVE_INFINITY, new FormulaParser().parse("x + 0")
+                .setVariableValue('x', Double.POSITIVE_INFINITY).calculate());
+        double result = new FormulaParser().parse("x + 0").setVariableValue('x', -0.0).calculate();
+        assertEquals(0.0, result);
+        assertEquals(Double.doubleToRawLongBits(0.0), Double.doubleToRawLongBits(result));
+    }
+
+    @Test
+    public void multiplyByZeroShouldKeepImpureOperation() throws FormulaParseException {
+        assertEquals("PUSH_CONSTANT 0\nLOAD_VARIABLE 0\nCUSTOM\nMULTIPLY\n", compileNonStrict("0 * exp(x)"));
+    }
+
+    @Test
+    public void negationShouldBeMovedToLiteral() throws FormulaParseException {
+        assertEquals("LOAD_VARIABLE 0\nLOAD_VARIABLE 1\nPUSH_CONSTANT 0\nMULTIPLY\nADDITION\n",
+                compileStrict("x - y * 2"));
+        assertEquals("LOAD_VARIABLE 0\nLOAD_VARIABLE 1\nPUSH_CONSTANT 0\nDIVISION\nADDITION\n",
+                compileStrict("x - (y / 2)"));
+
+        Formula formula = newParser().parse("x - y * 2");
+        assertEquals(-3.0, formula.setVariableValue('x', 3).setVariableValue('y', 3).calculate());
+    }
+
+    @Test
+    public void additionOfNegationsShouldBeNegated() throws FormulaParseException {
+        assertEquals("LOAD_VARIABLE 0\nLOAD_VARIABLE 1\nADDITION\nSUBTRACTION\n", compileNonStrict("-x - y"));
+        assertEquals("LOAD_VARIABLE 0\nSUBTRACTION\nLOAD_VARIABLE 1\nSUBTRACTION\nADDITION\n", compileStrict("-x - y"));
+    }
+
+    @Test
+    public void doubleNegationShouldBeRemoved() {
+        FormulaExpression argument = newDigitExpression(2);
+        FormulaExpression expression = newOperationExpression(UnaryOperations.SUBTRACTION,
+                newOperationExpression(UnaryOperations.SUBTRACTION, argument));
+
+        assertSame(argument, SimplificationRules.DOUBLE_NEGATION_RULE.simplify(expression, true));
+    }
+
+    @Test
+    public void simplifiedSubtreeShouldBeFolded() throws FormulaParseException {
+        assertEquals("PUSH_CONSTANT 0\n", compileNonStrict("(0 * x + 2) * 3"));
+        assertEquals(6.0, newParser().setStrictIeee(false).parse("(0 * x + 2) * 3").setVariableValue('x', 1)
+                .calculate());
+    }
+
+    @Test
+    public void customRuleShouldBeApplied() throws FormulaParseException {
+        FormulaParser parser = newParser().addOperation(CustomTestOperations.SQUARE_PURE_UNARY_OPERATION)
+                .addSimplificationRule(SQUARE_OF_NEGATION_RULE);
+        assertEquals("LOAD_VARIABLE 0\nCUSTOM\n", compileProgram(parser, "sqr(-x)"));
+        assertEquals(4.0, parser.parse("sqr(-x)").setVariableValue('x', 2).calculate());
+    }
+
+    @Test
+    public void simplifiedFormulaShouldCalculateSameValue() throws FormulaParseException {
+        String[] formulaStrings = {"x * 1 + 1 * y", "x - y * 2", "x - (y / 2) + 0", "-x - y", "x ^ 1 / 1 - 0 * y",
+                "sin(x * 1) + cos(y) * 3"};
+        for (String formulaString : formulaStrings) {
+            Formula formula = newParser().setStrictIeee(false).parse(formulaString);
+            Formula strictFormula = newParser().parse(formulaString);
+            for (double x : TEST_VALUES) {
+                for (double y : TEST_VALUES) {
+                    double expected = calculate(formulaString, x, y);
+                    assertEquals(formulaString, expected, formula.setVariableValue('x', x).setVariableValue('y', y)
+                            .calculate(), 1e-12);
+                    assertEquals(formulaString, expected, strictFormula.setVariableValue('x', x)
+                            .setVariableValue('y', y).calculate(), 1e-12);
+                }
+            }
+        }
+    }
+
+    private static double calculate(String formulaString, double x, double y) {
+        if (formulaString.equals("x * 1 + 1 * y")) return x + y;
+        if (formulaString.equals("x - y * 2")) return x - y * 2;
+        if (formulaString.equals("x - (y / 2) + 0")) return x - y / 2;
+        if (formulaString.equals("-x - y")) return -x - y;
+        if (formulaString.equals("x ^ 1 / 1 - 0 * y")) return x;
+        return Math.sin(x) + Math.cos(y) * 3;
+    }
+}
@@ -0,0 +1,153 @@
+package formula.parser.tests.tree;
+
+import formula.parser.api.Formula;
+import formula.parser.api.FormulaParseException;
+import formula.parser.program.CompiledFormula;
+import formula.parser.program.FormulaEngine;
+import formula.parser.program.FormulaEngines;
+import formula.parser.program.ImmutableFormula;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static formula.parser.tests.util.CustomTestOperations.newParser;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+public class SpecializationTest {
+
+    private static final double[] TEST_VALUES = {-2.5, -1, 0, 0.5, 1, 3};
+
+    private static Map<Character, Double> bindings(Object... namesAndValues) {
+        Map<Character, Double> bindings = new HashMap<Character, Double>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            bindings.put((Character) namesAndValues[i], ((Number) namesAndValues[i + 1]).doubleValue());
+        }
+        return bindings;
+    }
+
+    private static String program(Formula formula) {
+        return ((CompiledFormula) formula).getProgram().toString();
+    }
+
+    @Test
+    public void boundSubexpressionsShouldBeFolded() throws FormulaParseException {
+        Formula formula = newParser().parse("a * x ^ 3 + sin(b) * x + c");
+        Formula specializedFormula = formula.specialize(bindings('a', 2, 'b', 1, 'c', 4));
+
+        assertEquals(Collections.singleton('x'), specializedFormula.getVariables());
+        assertEquals("PUSH_CONSTANT 0\nLOAD_VARIABLE 0\nLOAD_VARIABLE 0\nMULTIPLY\nLOAD_VARIABLE 0\nMULTIPLY\n" +
+                "MULTIPLY\nPUSH_CONSTANT 1\nLOAD_VARIABLE 0\nMULTIPLY\nADDITION\nPUSH_CONSTANT 2\nADDITION\n",
+                program(specializedFormula));
+        for (double x : TEST_VALUES) {
+            assertEquals(2 * x * x * x + Math.sin(1) * x + 4, specializedFormula.setVariableValue('x', x).calculate(),
+                    1e-12);
+        }
+    }
+
+    @Test
+    public void specializedFormulaShouldBeSimplified() throws FormulaParseException {
+        Formula formula = newParser().setStrictIeee(false).parse("x * y + z");
+        assertEquals("LOAD_VARIABLE 0\n", program(formula.specialize(bindings('y', 1, 'z', 0))));
+        assertEquals("PUSH_CONSTANT 0\n", program(formula.specialize(bindings('y', 0, 'z', 5))));
+    }
+
+    @Test
+    public void specializedStrictFormulaShouldBeSimplifiedInStrictMode() throws FormulaParseException {
+        Formula formula = newParser().setStrictIeee(true).parse("x * y + z");
+        assertEquals("LOAD_VARIABLE 0\nPUSH_CONSTANT 0\nADDITION\n",
+                program(formula.specialize(bindings('y', 1, 'z', 0))));
+    }
+
+    @Test
+    public void specializedCompiledFormulaShouldKeepEngine() throws FormulaParseException {
+        for (FormulaEngine engine : FormulaEngines.values()) {
+            Formula formula = newParser().parse("x * y + sin(x * y) / z").compile(engine);
+            Formula specializedFormula = formula.specialize(bindings('x', 2));
+
+            assertSame(engine, specializedFormula.toImmutableFormula().getEngine());
+            for (double y : TEST_VALUES) {
+                double expected = formula.setVariableValue('x', 2).setVariableValue('y', y).setVariableValue('z', 3)
+                        .calculate();
+                assertEquals(engine.toString(), expected,
+                        specializedFormula.setVariableValue('y', y).setVariableValue('z', 3).calculate(), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void specializedCompiledFormulaShouldBeSimplifiedInStrictMode() throws FormulaParseException {
+        Formula formula = newParser().parse("x * y + z").compile();
+        assertEquals("LOAD_VARIABLE 0\nPUSH_CONSTANT 0\nADDITION\n",
+                program(formula.specialize(bindings('y', 1, 'z', 0))));
+    }
+
+    @Test
+    public void commonSubexpressionsShouldStayShared() throws FormulaParseException {
+        Formula formula = newParser().parse("sin(x * y) + sin(x * y) ^ 3 + z").compile();
+        assertEquals("LOAD_VARIABLE 0\nLOAD_VARIABLE 1\nMULTIPLY\nSIN\nSTORE_TEMPORARY 0\nLOAD_TEMPORARY 0\n" +
+                "LOAD_TEMPORARY 0\nMULTIPLY\nLOAD_TEMPORARY 0\nMULTIPLY\nADDITION\nPUSH_CONSTANT 0\nADDITION\n",
+                program(formula.specialize(bindings('z', 1))));
+    }
+
+    @Test
+    public void impureOperationShouldNotBeFolded() throws FormulaParseException {
+        Formula formula = newParser().parse("exp(a) * x");
+        assertEquals("PUSH_CONSTANT 0\nCUSTOM\nLOAD_VARIABLE 0\nMULTIPLY\n",
+                program(formula.specialize(bindings('a', 1))));
+    }
+
+    @Test
+    public void fullySpecializedFormulaShouldBeConstant() throws FormulaParseException {
+        Formula formula = newParser().parse("x + sin(y) / 2").specialize(bindings('x', 1, 'y', 2));
+
+        assertTrue(formula.getVariables().isEmpty());
+        assertEquals(1 + Math.sin(2) / 2, formula.calculate());
+    }
+
+    @Test
+    public void sourceFormulaShouldNotBeChanged() throws FormulaParseException {
+        Formula formula = newParser().parse("x * y + 1");
+        formula.specialize(bindings('y', 2));
+
+        assertEquals(2, formula.getVariables().size());
+        assertEquals(7.0, formula.setVariableValue('x', 2).setVariableValue('y', 3).calculate());
+    }
+
+    @Test
+    public void immutableFormulaShouldBeSpecialized() throws FormulaParseException {
+        ImmutableFormula formula = newParser().parse("x * y + 1").compile(FormulaEngines.CLOSURE).toImmutableFormula();
+        ImmutableFormula specializedFormula = formula.specialize(bindings('y', 2));
+
+        assertSame(FormulaEngines.CLOSURE, specializedFormula.getEngine());
+        assertEquals(7.0, specializedFormula.newContext().setVariableValue('x', 3).calculate());
+    }
+
+    @Test
+    public void simplifiedOutVariableShouldBeKept() throws FormulaParseException {
+        Formula formula = newParser().parse("x * z ^ 0 + y");
+        Formula specializedFormula = formula.specialize(bindings('y', 1));
+        assertEquals(formula.getVariables().size() - 1, specializedFormula.getVariables().size());
+        assertEquals(4.0, specializedFormula.setVariableValue('x', 3).setVariableValue('z', 5).calculate());
+        assertEquals(4.0, formula.compile().specialize(bindings('y', 1)).setVariableValue('x', 3)
+                .setVariableValue('z', 5).calculate());
+
+        ImmutableFormula specializedImmutableFormula = formula.toImmutableFormula().specialize(bindings('y', 1));
+        assertEquals(2, specializedImmutableFormula.getVariables().size());
+        assertEquals(4.0, specializedImmutableFormula.newContext().setVariableValue('x', 3).setVariableValue('z', 5)
+                .calculate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void absentVariableShouldFail() throws FormulaParseException {
+        newParser().parse("x * y").specialize(bindings('z', 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void absentVariableOfCompiledFormulaShouldFail() throws FormulaParseException {
+        newParser().parse("x * y").compile().specialize(bindings('z', 1));
+    }
+}
@@ -0,0 +1,136 @@
+package formula.parser.tests.tree;
+
+import formula.parser.api.FormulaParseException;
+import formula.parser.api.FormulaParser;
+import formula.parser.api.VariableRange;
+import formula.parser.tree.FormulaTree;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class TabulationTest {
+
+    private static FormulaTree parse(String formulaString) throws FormulaParseException {
+        return (FormulaTree) new FormulaParser().parse(formulaString);
+    }
+
+    private static void assertTabulatedDirectly(String formulaString, VariableRange outerRange,
+                                                VariableRange innerRange, double[] results, double delta)
+            throws FormulaParseException {
+        FormulaTree formula = parse(formulaString);
+        int index = 0;
+        for (int i = 0; i < outerRange.getPointsCount(); i++) {
+            for (int j = 0; j < innerRange.getPointsCount(); j++) {
+                double expected = formula.setVariableValue(outerRange.getVariableName(), outerRange.getValue(i))
+                        .setVariableValue(innerRange.getVariableName(), innerRange.getValue(j)).calculate();
+                assertEquals(formulaString + " at " + index, expected, results[index++], delta);
+            }
+        }
+    }
+
+    @Test
+    public void rangeShouldContainMaximum() {
+        assertEquals(401, new VariableRange('x', -100, 100, 0.5).getPointsCount());
+        assertEquals(11, new VariableRange('x', 0, 1, 0.1).getPointsCount());
+        assertEquals(1, new VariableRange('x', 2, 2, 1).getPointsCount());
+        assertEquals(3, new VariableRange('x', 0, 2.5, 1).getPointsCount());
+        assertEquals(1.0, new VariableRange('x', 0, 1, 0.1).getValue(10), 1e-15);
+    }
+
+    @Test
+    public void gridShouldBeOrderedByLastRange() throws FormulaParseException {
+        FormulaTree formula = parse("x * 10 + y");
+        double[] results = new double[12];
+        formula.tabulate(new VariableRange[]{new VariableRange('x', 0, 2, 1), new VariableRange('y', 0, 3, 1)},
+                results);
+        for (int i = 0; i < results.length; i++) {
+            assertEquals((double) (i / 4 * 10 + i % 4), results[i]);
+        }
+    }
+
+    @Test
+    public void gridShouldBeCalculatedSameAsDirectly() throws FormulaParseException {
+        String formulaString = "sin(x) * cos(y) + x ^ 3 / y - ln(x)";
+        VariableRange outerRange = new VariableRange('x', 0.5, 3, 0.25);
+        VariableRange innerRange = new VariableRange('y', 1, 10, 0.5);
+        double[] results = new double[outerRange.getPointsCount() * innerRange.getPointsCount()];
+        parse(formulaString).tabulate(new VariableRange[]{outerRange, innerRange}, results);
+
+        assertTabulatedDirectly(formulaString, outerRange, innerRange, results, 0);
+    }
+
+    @Test
+    public void subtreesOfOuterVariablesShouldBeReused() throws FormulaParseException {
+        FormulaTree formula = parse("sin(x) * cos(x) + y");
+        double[] results = new double[100];
+        formula.tabulate(new VariableRange[]{new VariableRange('x', 0, 9, 1), new VariableRange('y', 0, 9, 1)},
+                results);
+
+        // "sin(x) * cos(x)" is calculated once per line, root addition is recalculated for each point
+        assertEquals(10 * 3 + 100, formula.getRecalculatedNodesCount());
+        assertFalse(formula.isIncrementalEvaluation());
+    }
+
+    @Test
+    public void polynomialShouldBeTabulatedByDifferences() throws FormulaParseException {
+        String formulaString = "x ^ 3 - 2 * x * y + sin(y) * x ^ 2 - 5";
+        VariableRange outerRange = new VariableRange('y', -1, 1, 0.5);
+        VariableRange innerRange = new VariableRange('x', -10, 10, 0.01);
+        double[] results = new double[outerRange.getPointsCount() * innerRange.getPointsCount()];
+        FormulaTree formula = parse(formulaString);
+        formula.tabulate(new VariableRange[]{outerRange, innerRange}, results, true);
+        FormulaTree directFormula = parse(formulaString);
+        directFormula.tabulate(new VariableRange[]{outerRange, innerRange}, new double[results.length]);
+
+        // rounding error of differences is relative to values of polynomial on line, which are about 1000
+        assertTabulatedDirectly(formulaString, outerRange, innerRange, results, 1e-8);
+        // only few first points of each segment are calculated
+        assertTrue(formula.getRecalculatedNodesCount() * 4 < directFormula.getRecalculatedNodesCount());
+    }
+
+    @Test
+    public void notPolynomialFormulaShouldBeTabulatedDirectly() throws FormulaParseException {
+        String formulaString = "sin(x) + x / y";
+        VariableRange outerRange = new VariableRange('x', 0, 1, 0.5);
+        VariableRange innerRange = new VariableRange('y', 1, 10, 1);
+        double[] results = new double[outerRange.getPointsCount() * innerRange.getPointsCount()];
+        parse(formulaString).tabulate(new VariableRange[]{outerRange, innerRange}, results, true);
+
+        assertTabulatedDirectly(formulaString, outerRange, innerRange, results, 0);
+    }
+
+    @Test
+    public void fixedVariablesShouldBeKept() throws FormulaParseException {
+        FormulaTree formula = parse("x + z");
+        formula.setVariableValue('z', 100);
+        double[] results = new double[3];
+        formula.tabulate(new VariableRange[]{new VariableRange('x', 1, 3, 1)}, results, true);
+
+        assertEquals(101.0, results[0]);
+        assertEquals(102.0, results[1]);
+        assertEquals(103.0, results[2]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void absentVariableShouldFail() throws FormulaParseException {
+        parse("x + y").tabulate(new VariableRange[]{new VariableRange('z', 0, 1, 1)}, new double[2]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void repeatedVariableShouldFail() throws FormulaParseException {
+        parse("x + y").tabulate(new VariableRange[]{new VariableRange('x', 0, 1, 1), new VariableRange('x', 0, 1, 1)},
+                new double[4]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shortResultsArrayShouldFail() throws FormulaParseException {
+        parse("x").tabulate(new VariableRange[]{new VariableRange('x', 0, 2, 1)}, new double[2]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notPositiveStepShouldFail() {
+        new VariableRange('x', 0, 1, 0);
+    }
+}
@@ -2,8 +2,15 @@ package formula.parser.tests.util;
 
 import formula.parser.api.AbstractBinaryOperation;
 import formula.parser.api.AbstractUnaryOperation;
+import formula.parser.api.FormulaParseException;
+import formula.parser.api.FormulaParser;
 import formula.parser.operation.BinaryOperation;
+import formula.parser.operation.DifferentiableUnaryOperation;
+import formula.parser.operation.PureOperation;
 import formula.parser.operation.UnaryOperation;
+import formula.parser.program.CompiledFormula;
+import formula.parser.tests.api.FormulaParserTest;
+import formula.parser.tree.FormulaTree;
 
 public class CustomTestOperations {
 
@@ -20,4 +27,57 @@ public class CustomTestOperations {
             return firstArgument % secondArgument;
         }
     };
+
+    public static final UnaryOperation SQUARE_PURE_UNARY_OPERATION = new SquareOperation();
+
+    public static final UnaryOperation CUBE_DIFFERENTIABLE_UNARY_OPERATION = new CubeOperation();
+
+    /*
+     * Square operation is not added, since "sqr" is prefix of built-in "sqrt".
+     */
+    public static FormulaParser newParser() {
+        FormulaParser parser = new FormulaParser();
+        parser.addConstant(FormulaParserTest.TEST_CUSTOM_CONSTANT_NAME, FormulaParserTest.TEST_CUSTOM_CONSTANT_VALUE);
+        parser.addOperation(EXP_UNARY_OPERATION);
+        parser.addOperation(MOD_BINARY_OPERATION);
+        parser.addOperation(CUBE_DIFFERENTIABLE_UNARY_OPERATION);
+        return parser;
+    }
+
+    public static FormulaTree parseTree(String formulaString) throws FormulaParseException {
+        return (FormulaTree) newParser().parse(formulaString);
+    }
+
+    public static String compileProgram(FormulaParser parser, String formulaString) throws FormulaParseException {
+        return ((CompiledFormula) parser.parse(formulaString).compile()).getProgram().toString();
+    }
+
+    private static class SquareOperation extends AbstractUnaryOperation implements PureOperation {
+
+        SquareOperation() {
+            super(UnaryOperation.Notation.PREFIX, "sqr");
+        }
+
+        @Override
+        public double operate(double argument) {
+            return argument * argument;
+        }
+    }
+
+    private static class CubeOperation extends AbstractUnaryOperation implements DifferentiableUnaryOperation {
+
+        CubeOperation() {
+            super(UnaryOperation.Notation.PREFIX, "cube");
+        }
+
+        @Override
+        public double operate(double argument) {
+            return argument * argument * argument;
+        }
+
+        @Override
+        public double derivative(double argument) {
+            return 3 * argument * argument;
+        }
+    }
 }